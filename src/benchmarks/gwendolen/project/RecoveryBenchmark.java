@@ -0,0 +1,188 @@
+package gwendolen.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ail.semantics.AILAgent;
+import ail.syntax.Literal;
+import ail.util.AILConfig;
+
+/**
+ * Benchmarks of planning based recovery on synthetic domains: writing problems, planning alone, and whole
+ * recoveries of a failed action by several agents at once, planning online or with FF.
+ * Run with "ant benchmark"; the default arguments add JMH's GC profiler, which reports the allocation rate.
+ * Parameters can be narrowed as usual, for example -Djmh.args="-p planner=online -p agents=1 -prof gc".
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecoveryBenchmark {
+    // Number of beliefs of each agent
+    @Param({"10", "1000"})
+    public int beliefs;
+
+    // Number of actions of the domain which have nothing to do with the recovery
+    @Param({"10", "200"})
+    public int domainSize;
+
+    // Number of steps of the recovery plan
+    @Param({"2", "16"})
+    public int planLength;
+
+    // Number of agents recovering at the same time
+    @Param({"1", "8"})
+    public int agents;
+
+    @Param({"online", "offline"})
+    public String planner;
+
+    private SyntheticDomain synthetic;
+    private StateEncoder encoder;
+    private BitSet state;
+    private BitSet goal;
+    private PlannerBackend backend;
+    private ExternalPlannerPool pool;
+    private ExecutorService executor;
+    private PrintStream out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Every action and recovery prints, which would only measure the console
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+        synthetic = new SyntheticDomain(planLength, domainSize);
+        File file = synthetic.write();
+        AILConfig config = new AILConfig();
+        config.setProperty(RunPlanner.DOMAIN, file.getPath());
+        RunPlanner.configure(config);
+
+        encoder = RunPlanner.encoder();
+        state = encoder.encode(synthetic.beliefs(beliefs));
+        goal = encoder.encodeGoal(Arrays.asList(new Literal("done")));
+        if (planner.equals("offline")) {
+            pool = new ExternalPlannerPool(RunPlanner.ffCommand(file.getPath()), 2, 10000);
+            backend = pool;
+        } else {
+            backend = new InProcessPlanner();
+        }
+        executor = Executors.newFixedThreadPool(agents);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        if (pool != null) {
+            pool.close();
+        }
+        RunPlanner.configure(new AILConfig());
+        System.setOut(out);
+    }
+
+    /**
+     * Agents about to fail, made again for every recovery since recovering changes their beliefs.
+     */
+    @State(Scope.Benchmark)
+    public static class Agents {
+        List<AILAgent> failing;
+
+        @Setup(Level.Invocation)
+        public void newAgents(RecoveryBenchmark benchmark) {
+            failing = new ArrayList<>();
+            List<Literal> base = benchmark.synthetic.beliefs(benchmark.beliefs);
+            for (int i = 0; i < benchmark.agents; i++) {
+                failing.add(SyntheticDomain.agent("agent" + i, base));
+            }
+        }
+    }
+
+    /**
+     * Writes the problem of a recovery as PDDL, as given to FF.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void problemGeneration() throws IOException {
+        PDDLGenerator.write(new Writer() {
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        }, encoder.getDomain(), state, goal);
+    }
+
+    /**
+     * Plans a recovery without the cache and other front ends, so every search is done in full.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> planning() {
+        return backend.plan(encoder.getDomain(), state, goal, Deadline.none());
+    }
+
+    /**
+     * Every agent fails the action finish at the same time and recovers through the planner configured for
+     * agents, from encoding its beliefs to executing the plan and the action. As in a running system, recoveries
+     * after the first are answered from the plan cache.
+     */
+    @Benchmark
+    @BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int recovery(Agents agents) throws Exception {
+        final int typeOfPlanning = planner.equals("offline") ? 1 : 2;
+        List<Future<Boolean>> recoveries = new ArrayList<>();
+        for (final AILAgent ag : agents.failing) {
+            recoveries.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    ActionClass action = new ActionClass();
+                    action.typeOfPlanning = typeOfPlanning;
+                    return action.startAction(ag, SyntheticDomain.ACTION);
+                }
+            }));
+        }
+        int recovered = 0;
+        for (Future<Boolean> recovery : recoveries) {
+            if (recovery.get()) {
+                recovered++;
+            }
+        }
+        if (recovered != agents.failing.size()) {
+            throw new IllegalStateException(recovered + " of " + agents.failing.size() + " agents recovered");
+        }
+        return recovered;
+    }
+}
@@ -0,0 +1,117 @@
+package gwendolen.project;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import ail.semantics.AILAgent;
+import ail.syntax.Literal;
+
+/**
+ * Writes planning domains following the pattern of domain.pddl, sized for benchmarks: actions without
+ * parameters over propositions, a chain of actions which a recovery has to plan through, and actions which
+ * have nothing to do with it.
+ * The chain runs from step1, which needs only the dummy predicate, to stepN, which makes sN true; the action
+ * finish needs sN, so a recovery of finish plans the whole chain. Each distractor noiseJ makes nJ true.
+ */
+public class SyntheticDomain {
+    // The action whose failure is recovered
+    public static final String ACTION = "finish";
+
+    private final int planLength;
+    private final int distractors;
+
+    /**
+     * Describes a domain.
+     *
+     * @param planLength The number of steps of the chain, which is the length of the recovery plan.
+     * @param distractors The number of actions which are not part of the chain.
+     */
+    public SyntheticDomain(int planLength, int distractors) {
+        this.planLength = planLength;
+        this.distractors = distractors;
+    }
+
+    /**
+     * Writes the domain to a temporary file, deleted when the JVM exits.
+     *
+     * @return The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public File write() throws IOException {
+        File file = File.createTempFile("synthetic" + planLength + "x" + distractors, ".pddl");
+        file.deleteOnExit();
+        try (Writer writer = new FileWriter(file)) {
+            write(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Writes the domain.
+     *
+     * @param writer Where to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write("(define (domain synthetic" + planLength + "x" + distractors + ")\n");
+        writer.write("    (:requirements :strips)\n");
+        writer.write("    (:predicates\n        (dummyPredicate)\n        (done)\n");
+        for (int i = 1; i <= planLength; i++) {
+            writer.write("        (s" + i + ")\n");
+        }
+        for (int j = 0; j < distractors; j++) {
+            writer.write("        (n" + j + ")\n");
+        }
+        writer.write("    )\n");
+        for (int i = 1; i <= planLength; i++) {
+            action(writer, "step" + i, i == 1 ? "dummyPredicate" : "s" + (i - 1), "s" + i);
+        }
+        action(writer, ACTION, planLength == 0 ? "dummyPredicate" : "s" + planLength, "done");
+        for (int j = 0; j < distractors; j++) {
+            action(writer, "noise" + j, "dummyPredicate", "n" + j);
+        }
+        writer.write(")\n");
+    }
+
+    private static void action(Writer writer, String name, String precondition, String effect) throws IOException {
+        writer.write("\n    (:action " + name + "\n");
+        writer.write("        :parameters ()\n");
+        writer.write("        :precondition (" + precondition + ")\n");
+        writer.write("        :effect (" + effect + ")\n");
+        writer.write("    )\n");
+    }
+
+    /**
+     * Makes the beliefs of an agent about to fail finish: distractor facts of the domain, up to half of them,
+     * and beliefs the domain does not mention for the rest.
+     *
+     * @param count The number of beliefs.
+     * @return The beliefs.
+     */
+    public List<Literal> beliefs(int count) {
+        List<Literal> beliefs = new ArrayList<>();
+        for (int j = 0; j < count; j++) {
+            beliefs.add(new Literal(j < distractors && j < count / 2 ? "n" + j : "unrelated" + j));
+        }
+        return beliefs;
+    }
+
+    /**
+     * Creates an agent holding some beliefs.
+     *
+     * @param name The agent's name.
+     * @param beliefs The beliefs.
+     * @return The agent.
+     */
+    public static AILAgent agent(String name, List<Literal> beliefs) {
+        AILAgent ag = new AILAgent(name);
+        for (Literal belief : beliefs) {
+            ag.addBel(belief, AILAgent.refertoself());
+        }
+        return ag;
+    }
+}
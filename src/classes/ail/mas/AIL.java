@@ -27,6 +27,7 @@ package ail.mas;
 import ail.util.AILConfig;
 import ail.util.AILexception;
 import ail.semantics.AILAgent;
+import ail.syntax.Unifier;
 import ail.syntax.ast.GroundPredSets;
 import ajpf.MCAPLcontroller;
 import ajpf.util.AJPFException;
@@ -91,6 +92,9 @@ public class AIL {
 			print_version_info();
 		}
 
+		// Unifiers hash their bindings outside JPF unless asked to keep the canonical form
+		Unifier.setHashedBindings(! config.getProperty("ail.unifier.hashed", "true").trim().equals("false"));
+
 		// First we need to build the multi-agent system
 		MAS mas = buildMAS(config);
 		mas.setController(control);
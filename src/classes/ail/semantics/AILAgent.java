@@ -39,10 +39,12 @@ import ail.mas.MAS;
 import ail.semantics.heuristics.SelectIntentionHeuristic;
 import ail.syntax.AILAnnotation;
 import ail.syntax.Action;
+import ail.syntax.ApplicabilityNetwork;
 import ail.syntax.ApplicablePlan;
 import ail.syntax.BeliefBase;
 import ail.syntax.Capability;
 import ail.syntax.CapabilityLibrary;
+import ail.syntax.CompiledGuard;
 import ail.syntax.Deed;
 import ail.syntax.Event;
 import ail.syntax.GBelief;
@@ -79,6 +81,7 @@ import ajpf.psl.MCAPLPredicate;
 import ajpf.util.AJPFLogger;
 import ajpf.util.VerifyMap;
 import gov.nasa.jpf.annotation.FilterField;
+import gov.nasa.jpf.vm.Verify;
 
 /**
  * Workhorse class that implements AIL Agent State. We expect this to be
@@ -299,6 +302,10 @@ public class AILAgent implements MCAPLLanguageAgent, AgentMentalState {
 	/* Should a record be kept of sent messages */
 	public boolean store_sent_messages = true;
 
+	/* Solutions of plan guards kept between cycles, if wanted (never in JPF) */
+	@FilterField
+	protected ApplicabilityNetwork network = null;
+
 	/* -Vincent */
 	protected EventStorage trace = null;
 	
@@ -1242,6 +1249,31 @@ public class AILAgent implements MCAPLLanguageAgent, AgentMentalState {
 		return store_sent_messages;
 	}
 
+	/**
+	 * Setter for keeping the solutions of plan guards between cycles.  Ignored
+	 * in JPF.
+	 * 
+	 * @param value
+	 */
+	public void setApplicabilityNetwork(boolean value) {
+		if (value && !Verify.isRunningInJPF()) {
+			if (network == null) {
+				network = new ApplicabilityNetwork();
+			}
+		} else {
+			network = null;
+		}
+	}
+
+	/**
+	 * Getter for the solutions of plan guards kept between cycles.
+	 * 
+	 * @return null unless setApplicabilityNetwork(true) was called.
+	 */
+	public ApplicabilityNetwork getApplicabilityNetwork() {
+		return network;
+	}
+
 	/**
 	 * Add a new sent message to the agent's outbox.
 	 * 
@@ -1968,6 +2000,9 @@ public class AILAgent implements MCAPLLanguageAgent, AgentMentalState {
 	}
 
 	public Iterator<Unifier> believes(Guard g, Unifier un, SelectionOrder so) {
+		if (so == SelectionOrder.LINEAR && ! Verify.isRunningInJPF()) {
+			return CompiledGuard.of(g).solutions(this, un, g.getVarNames());
+		}
 		return g.logicalConsequence(this, un, g.getVarNames(), so);
 	}
 
@@ -2332,5 +2367,11 @@ public class AILAgent implements MCAPLLanguageAgent, AgentMentalState {
 	 * @param c
 	 */
 	public void configure(AILConfig c) {
+		if (c.containsKey("ail.plans.network")) {
+			setApplicabilityNetwork(c.getProperty("ail.plans.network").trim().equals("true"));
+		}
+		if (c.containsKey("ail.rules.tabled")) {
+			getRuleBase().setTabled(c.getProperty("ail.rules.tabled").trim().equals("true"));
+		}
 	}
 }
\ No newline at end of file
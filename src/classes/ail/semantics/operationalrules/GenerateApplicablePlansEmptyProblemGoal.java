@@ -30,10 +30,21 @@ import ail.tracing.events.GeneratePlansEvent;
 
 import ajpf.util.AJPFLogger;
 import gwendolen.project.ActionClass;
+import gwendolen.project.Deadline;
+import gwendolen.project.HierarchicalRecovery;
+import gwendolen.project.IncrementalReplanner;
+import gwendolen.project.LiftedDomain;
+import gwendolen.project.LiftedRecovery;
+import gwendolen.project.PlanningDomain;
+import gwendolen.project.RecoveryTelemetry;
 import gwendolen.project.RunPlanner;
+import gwendolen.project.StateEncoder;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * What do do if there are no applicable plans - note there is a problem with the goal
@@ -46,6 +57,8 @@ public class GenerateApplicablePlansEmptyProblemGoal extends GenerateApplicableP
 	private static final String name = "Generate Applicable Plans Empty with Problem Goal";
 
 	private static final String logname = "ail.semantics.operationalrules.GenerateApplicablePlansEmptyProblemGoal";
+	// Log of recoveries, shared with the planning project's own classes
+	private static final String recoveryLogname = "t1.Recovery";
 
 	/*
 	 * (non-Javadoc)
@@ -77,7 +90,13 @@ public class GenerateApplicablePlansEmptyProblemGoal extends GenerateApplicableP
 
 			//System.out.println(a.getAgName() + " has no applicable plan for the goal" + I.hdE().getContent());
 
-			recoveryOperation(I.hdE(), a);
+			String previous = RecoveryTelemetry.enter(a.getAgName());
+			boolean recovered = false;
+			try {
+				recovered = recoveryOperation(I.hdE(), a);
+			} finally {
+				RecoveryTelemetry.leave(previous, recovered);
+			}
 
 			if (a.shouldTrace()) {
 				a.trace(new GeneratePlansEvent(Plp, GeneratePlansEvent.NO_APPLICABLE_PLANS_FOR_GOAL, a.getIntention().getID()));
@@ -111,8 +130,53 @@ public class GenerateApplicablePlansEmptyProblemGoal extends GenerateApplicableP
 		contextString.add(planToFix.getContext().toString());
 		List<String> context = preProcessPredicates(contextString);
 
-		List<String> beliefs = action.extractBeliefs(ag);
-		List<String> goalStates = findPredicates(beliefs, context);
+		if (RunPlanner.isLifted()) {
+			// Parameterised domains are planned over their schemas, with the objects the beliefs mention
+			LiftedDomain lifted;
+			try {
+				lifted = RunPlanner.liftedDomain();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+			Set<String> liftedContext = lifted.encodeGoalStrings(context);
+			if (liftedContext == null) {
+				System.out.println("Plan context " + context + " is not part of the planning domain... Cannot recover context");
+				return false;
+			}
+			if (!LiftedRecovery.recover(ag, action, lifted, liftedContext, typeOfPlanning, goalName(goal), "Context Not Fulfilled")) {
+				return false;
+			}
+			super.apply(ag);
+			return true;
+		}
+
+		// Encode the beliefs and the context
+		StateEncoder encoder;
+		try {
+			encoder = RunPlanner.encoder();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		if (RunPlanner.isHierarchical() && goal.getContent() instanceof Goal) {
+			// The goal's own plans say which contexts would do, and the agent's other plans how to reach them
+			Goal failed = ((Goal) goal.getContent()).clone();
+			failed.apply(ag.getIntention().hdU());
+			if (!HierarchicalRecovery.enable(ag, action, encoder, failed, typeOfPlanning, goalName(goal), "Context Not Fulfilled")) {
+				return false;
+			}
+			super.apply(ag);
+			return true;
+		}
+		PlanningDomain domain = encoder.getDomain();
+		BitSet contextFacts = encoder.encodeGoalStrings(context);
+		if (contextFacts == null) {
+			System.out.println("Plan context " + context + " is not part of the planning domain... Cannot recover context");
+			return false;
+		}
+		BitSet state = encoder.encode(ag.getBB());
+		BitSet goalStates = StateEncoder.missing(state, contextFacts);
 
 		// If Type of planning selected is invalid... Default to Online
 		if (typeOfPlanning != 1 && typeOfPlanning != 2) {
@@ -122,44 +186,52 @@ public class GenerateApplicablePlansEmptyProblemGoal extends GenerateApplicableP
 
 		// Offline Planning
 		if (typeOfPlanning == 1) {
-			List<String> plan = RunPlanner.run(ag.getAgName(), beliefs, goalStates, 1);
+			Deadline deadline = RunPlanner.newDeadline();
+			List<String> plan = RunPlanner.run(ag.getAgName(), domain, state, goalStates, 1, deadline);
+			if (plan.isEmpty() && deadline.expired()) {
+				RunPlanner.reportNoPlanWithinBudget(ag, goalName(goal));
+				return false;
+			}
 			if(plan.isEmpty()){
-				System.out.println("An error occured with the planner");
-				System.out.println("To debug: Go to RunPlanner.java and print the output.");
+				RunPlanner.reportNoPlan(ag, goalName(goal));
 				return false;
 			}
 			System.out.println(ag.getAgName()+" --> Context Not Fulfilled, Running Action --> "+plan);
-			for (String act : plan) {
-				boolean success = action.startAction(ag, act.toLowerCase());
-				if (!success) {
-					System.out.println("Recovery failure");}
+			// Each step is checked before it runs, and the plan repaired where it stops working
+			if (!RunPlanner.monitor(ag, encoder, 1).execute(ag, action, plan, contextFacts, deadline)) {
+				// The context still does not hold, so no plan for the goal applies
+				AJPFLogger.info(recoveryLogname, "Recovery failure");
+				return false;
 			}
 		}
 
 
 		// Online
 		if (typeOfPlanning==2) {
+			// The plan is kept between steps and only searched for again once it stops working
+			IncrementalReplanner replanner = RunPlanner.startOnlineRecovery(ag.getAgName(), domain);
 			// While all goalStates have not been achieved... Continue Recovery
-			while (goalStates.size() != 0) {
-				// Run the planner to find actions to fulfill the context
-				List<String> plan = RunPlanner.run(ag.getAgName(), beliefs, goalStates, 2);
-				// Debugging information if plan produced by planner is empty...
-				if(plan.isEmpty()){
-					System.out.println("An error occured with the planner");
-					System.out.println("To debug: Go to RunPlanner.java and print the output.");
+			while (!goalStates.isEmpty()) {
+				// Ask for the next action to fulfill the context
+				String step = replanner.nextStep(domain, state, goalStates);
+				if (step == null && replanner.isOutOfTime()) {
+					RunPlanner.reportNoPlanWithinBudget(ag, goalName(goal));
 					return false;
 				}
-
-				// If plan is not empty... Execute the action returned by the planner
-				if(!plan.isEmpty()) {
-					System.out.println(ag.getAgName()+" --> Context Not Fulfilled, Running Action --> "+plan.get(0));
-					boolean success = action.startAction(ag, plan.get(0).toLowerCase()); // check output of bool
-					if (!success) {System.out.println("Recovery failure");}
+				// The planner found nothing although it had time left
+				if(step == null){
+					RunPlanner.reportNoPlan(ag, goalName(goal));
+					return false;
 				}
 
+				// Execute the action returned by the planner
+				System.out.println(ag.getAgName()+" --> Context Not Fulfilled, Running Action --> "+step);
+				boolean success = action.executeStep(ag, step); // check output of bool
+				if (!success) {AJPFLogger.info(recoveryLogname, "Recovery failure");}
+
 				// Recheck Beliefs
-				beliefs = action.extractBeliefs(ag);
-				goalStates = findPredicates(beliefs, context); //goalstates just fancy word for relevant predicates
+				state = encoder.encode(ag.getBB());
+				goalStates = StateEncoder.missing(state, contextFacts); //goalstates just fancy word for relevant predicates
 			}
 		}
 
@@ -168,15 +240,13 @@ public class GenerateApplicablePlansEmptyProblemGoal extends GenerateApplicableP
 		return true;
 	}
 
-	private static List<String> findPredicates(List<String> beliefs, List<String> predicates) {
-		List<String> missingPredicates = new ArrayList<>();
-		for (String pred : predicates) {
-			pred = pred.replaceAll("\\[source\\((self|percepts)\\)]", "");
-			if (!beliefs.contains(pred)) {
-				missingPredicates.add(pred);
-			}
-		}
-		return missingPredicates;
+	/**
+	 * The name of a goal, as reported to the agent when its recovery runs out of time.
+	 * @param goal the goal event.
+	 * @return the functor of the goal.
+	 */
+	private static String goalName(Event goal) {
+		return goal.getContent() instanceof PredicateTerm ? ((PredicateTerm) goal.getContent()).getFunctor() : "context";
 	}
 
 	private static List<String> preProcessPredicates (List<String> predicates) {
@@ -0,0 +1,223 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher 
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+// 
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+// 
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+// 
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import ail.semantics.AILAgent;
+
+/**
+ * Remembers the solutions of plan guards between reasoning cycles, so that a
+ * guard is only evaluated again once a belief it reads has changed.
+ * 
+ * Each plan's guard is compiled into the names and arities of the beliefs it
+ * reads, in which belief bases.  Its solutions for a unifier stay current for as
+ * long as the belief bases report no changes to those beliefs (see
+ * BeliefBase.getChanges).  Guards which also read goals, messages, belief bases
+ * named by variables or beliefs defined by rules are evaluated every time.
+ * 
+ * Solutions are generated lazily, as by AILAgent.believes, and copied as they
+ * are handed out.
+ * 
+ */
+public class ApplicabilityNetwork {
+	// The node of each plan, by the plan in the library
+	private IdentityHashMap<Plan, Node> nodes = new IdentityHashMap<Plan, Node>();
+	// The rule base the nodes were compiled against, and its changes then
+	private RuleBase rules = null;
+	private long ruleChanges = -1;
+	// The number of guards evaluated, rather than answered from a node
+	private int evaluations = 0;
+	
+	/**
+	 * The solutions of a plan's guard.
+	 * 
+	 * @param a  The agent.
+	 * @param p  The plan, as it is in the plan library.
+	 * @param g  The guard, as it is to be evaluated.
+	 * @param un The unifier to evaluate it under.
+	 * @return   An iterator over the solutions, as given by a.believes(g, un).
+	 */
+	public Iterator<Unifier> solutions(AILAgent a, Plan p, Guard g, Unifier un) {
+		RuleBase rb = a.getRuleBase();
+		long changes = rb == null ? 0 : rb.getChanges();
+		if (rb != rules || changes != ruleChanges) {
+			nodes.clear();
+			rules = rb;
+			ruleChanges = changes;
+		}
+		
+		Node n = nodes.get(p);
+		if (n == null) {
+			n = new Node();
+			if (! compile(g, rb, n)) {
+				n.beliefs = null;
+			}
+			nodes.put(p, n);
+		}
+		
+		if (n.beliefs == null) {
+			evaluations++;
+			return a.believes(g, un, AILAgent.SelectionOrder.LINEAR);
+		}
+		
+		String key = un.toString();
+		if (! n.current(a, key)) {
+			evaluations++;
+			n.reset(a, key, a.believes(g, un.clone(), AILAgent.SelectionOrder.LINEAR));
+		}
+		return n.iterator();
+	}
+	
+	/**
+	 * The number of guards evaluated so far.
+	 * @return
+	 */
+	public int getEvaluations() {
+		return evaluations;
+	}
+	
+	/**
+	 * Find the beliefs a guard reads.
+	 * @param f
+	 * @param rb
+	 * @param n
+	 * @return false if the guard reads anything else.
+	 */
+	private boolean compile(GLogicalFormula f, RuleBase rb, Node n) {
+		if (f == null || f instanceof AILComparison) {
+			return true;
+		}
+		if (f instanceof Guard) {
+			Guard g = (Guard) f;
+			return compile(g.getLHS(), rb, n) && compile(g.getRHS(), rb, n);
+		}
+		if (f instanceof GBelief) {
+			GBelief gb = (GBelief) f;
+			if (gb.isTrue()) {
+				return true;
+			}
+			if (gb.isVar() || gb.getEB() instanceof VarTerm || (rb != null && rb.getRelevant(gb) != null)) {
+				return false;
+			}
+			n.ebs.add(gb.getEB());
+			n.beliefs.add(new PredicateIndicator(gb.getFunctor(), gb.getTermsSize()));
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * The beliefs one guard reads and its solutions for the last unifier it was
+	 * evaluated under.
+	 */
+	private static class Node {
+		// The belief bases and beliefs read, or beliefs is null if the guard reads something else
+		List<StringTerm> ebs = new ArrayList<StringTerm>();
+		List<PredicateIndicator> beliefs = new ArrayList<PredicateIndicator>();
+		// The state the solutions hold in
+		String unifier;
+		BeliefBase[] bbs;
+		long[] changes;
+		// The solutions found so far and the evaluation still finding more
+		List<Unifier> solutions;
+		Iterator<Unifier> source;
+		
+		/**
+		 * Do the solutions hold for this unifier and the agent's beliefs?
+		 * @param a
+		 * @param key
+		 * @return
+		 */
+		boolean current(AILAgent a, String key) {
+			if (solutions == null || ! key.equals(unifier)) {
+				return false;
+			}
+			for (int i = 0; i < bbs.length; i++) {
+				BeliefBase bb = a.getBB(ebs.get(i));
+				if (bb != bbs[i] || (bb != null && bb.getChanges(beliefs.get(i)) != changes[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Start again from a new evaluation of the guard.
+		 * @param a
+		 * @param key
+		 * @param evaluation
+		 */
+		void reset(AILAgent a, String key, Iterator<Unifier> evaluation) {
+			unifier = key;
+			bbs = new BeliefBase[beliefs.size()];
+			changes = new long[beliefs.size()];
+			for (int i = 0; i < bbs.length; i++) {
+				bbs[i] = a.getBB(ebs.get(i));
+				changes[i] = bbs[i] == null ? 0 : bbs[i].getChanges(beliefs.get(i));
+			}
+			solutions = new ArrayList<Unifier>();
+			source = evaluation;
+		}
+		
+		/**
+		 * Iterate over the solutions, evaluating further as needed.
+		 * @return
+		 */
+		Iterator<Unifier> iterator() {
+			final List<Unifier> found = solutions;
+			return new Iterator<Unifier>() {
+				int i = 0;
+				
+				public boolean hasNext() {
+					if (i < found.size()) {
+						return true;
+					}
+					if (found == solutions && source != null) {
+						if (source.hasNext()) {
+							found.add(source.next());
+							return true;
+						}
+						source = null;
+					}
+					return false;
+				}
+				
+				public Unifier next() {
+					if (! hasNext()) {
+						return null;
+					}
+					return found.get(i++).clone();
+				}
+				
+				public void remove() {
+				}
+			};
+		}
+	}
+}
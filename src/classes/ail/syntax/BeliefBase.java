@@ -28,7 +28,9 @@
 package ail.syntax;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +44,7 @@ import ail.semantics.AILAgent;
 import ail.syntax.annotation.SourceAnnotation;
 import ail.syntax.ast.GroundPredSets;
 import gov.nasa.jpf.annotation.FilterField;
+import gov.nasa.jpf.vm.Verify;
 
 /**
  * Default implementation and AIL Belief Base.  Based on the Jason BeliefBase
@@ -88,6 +91,13 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
     @FilterField
     private int size = 0;
 
+    /**
+     * The number of changes made to the beliefs with each name and arity,
+     * whether negated or not.  Outside JPF only.
+     */
+    @FilterField
+    private HashMap<PredicateIndicator, Long> changes = Verify.isRunningInJPF() ? null : new HashMap<PredicateIndicator, Long>();
+
     /** set of beliefs with percept annot, used to improve performance of buf
     /* this is a list of things the agents "expects" to be able to perceive. 
      */ 
@@ -198,6 +208,7 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
                     // Collections.sort(percepts);
                 }
                 
+                changed(bl);
                 return true;
             }
         } else {
@@ -220,6 +231,7 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
             }
             
             size++;
+            changed(l);
             return true;
         }
         return false; 
@@ -245,6 +257,7 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
         		belsMap.remove(key);
         	}
         	size--;
+        	changed(bl);
             boolean  result = true;
             return result;
         } 
@@ -256,6 +269,39 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
      */
     public void clear() {
     	belsMap = new VerifyMap<PredicateIndicator, BelEntry>();
+    	if (changes != null) {
+    		for (Map.Entry<PredicateIndicator, Long> e: changes.entrySet()) {
+    			e.setValue(e.getValue() + 1);
+    		}
+    	}
+    }
+    
+    /**
+     * Count a change to the beliefs with the name and arity of l.
+     * @param l
+     */
+    private void changed(Literal l) {
+    	if (changes != null) {
+    		PredicateIndicator pi = new PredicateIndicator(l.getFunctor(), l.getTermsSize());
+    		Long c = changes.get(pi);
+    		changes.put(pi, c == null ? 1 : c + 1);
+    	}
+    }
+    
+    /**
+     * The number of beliefs with some name and arity, negated or not, that
+     * have been added or removed so far.  While it stays the same so does
+     * anything concluded from those beliefs.  Always 0 in JPF.
+     * 
+     * @param pi  The name and arity, without negation.
+     * @return    The number of changes.
+     */
+    public long getChanges(PredicateIndicator pi) {
+    	if (changes == null) {
+    		return 0;
+    	}
+    	Long c = changes.get(pi);
+    	return c == null ? 0 : c;
     }
     
 
@@ -333,6 +379,9 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
      * same predicate name and arity.  Presumably you can then check for
      * unifiability.
      * 
+     * Outside JPF beliefs whose first argument can not unify with that of
+     * the literal are left out.
+     * 
      * @param l  The literal to search against.
      * @return	An iterators of literals in the belief base with the same
      *          predicate name and arity.
@@ -345,8 +394,7 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
         } else {
             BelEntry entry = belsMap.get(l.getPredicateIndicator());
             if (entry != null) {
-                List<PredicateTerm> entrylist = new ArrayList<PredicateTerm>();
-                entrylist.addAll(entry.list);
+                final List<PredicateTerm> entrylist = entry.relevant(l);
                 if (so == AILAgent.SelectionOrder.RANDOM) {
                 	return new Iterator<PredicateTerm>() {
                 		int size = entrylist.size();
@@ -388,6 +436,21 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
         
      }
 
+    /**
+     * The key by which beliefs are indexed on their first argument (see
+     * Unifier.unificationKey).
+     * 
+     * @param p  A belief or a literal to search against.
+     * @return   The key, or null if the first argument could unify with
+     *           anything (a variable, for instance) or there is none.
+     */
+    static Object firstArgKey(PredicateTerm p) {
+    	if (! (p instanceof Predicate) || p.getTermsSize() == 0) {
+    		return null;
+    	}
+    	return Unifier.unificationKey(((Predicate) p).getTerm(0));
+    }
+
     /**
      * Convert the belief base into a string for printing.
      *
@@ -409,6 +472,14 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
         
         final private VerifyList<Literal> list = new VerifyList<Literal>(); // maintains the order of the bels
         
+        // Outside JPF, the literals in order by the key of their first argument.  The arrays are replaced rather
+        // than changed, so that getRelevant can hand them out without a copy.  Literals without a key are in
+        // every array as well as in open.
+        final private HashMap<Object, Literal[]> byFirstArg = Verify.isRunningInJPF() ? null : new HashMap<Object, Literal[]>();
+        private Literal[] open = new Literal[0];
+        // All the literals, from the last time they were asked for until the entry changes.
+        private Literal[] all;
+        
         /**
          * Add a literal to the belEntry.
          * 
@@ -416,6 +487,19 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
          */
         public void add(Literal l) {
             list.put(l);
+            if (byFirstArg != null) {
+            	all = null;
+            	Object key = firstArgKey(l);
+            	if (key == null) {
+            		open = insert(open, l);
+            		for (Map.Entry<Object, Literal[]> e: byFirstArg.entrySet()) {
+            			e.setValue(insert(e.getValue(), l));
+            		}
+            	} else {
+            		Literal[] bucket = byFirstArg.get(key);
+            		byFirstArg.put(key, insert(bucket == null ? open : bucket, l));
+            	}
+            }
         }
         
         /**
@@ -423,8 +507,37 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
          * @param l
          */
         public void remove(Literal l) {
-        	if (list.contains(l)) {
-        		list.remove(l);
+        	if (byFirstArg == null) {
+        		if (list.contains(l)) {
+        			list.remove(l);
+        		}
+        		return;
+        	}
+        	
+        	Literal stored = find(l);
+        	if (stored == null) {
+        		return;
+        	}
+        	for (int i = 0; i < list.size(); i++) {
+        		if (list.get(i) == stored) {
+        			list.remove(i);
+        			break;
+        		}
+        	}
+        	all = null;
+        	Object key = firstArgKey(stored);
+        	if (key == null) {
+        		open = delete(open, stored);
+        		for (Map.Entry<Object, Literal[]> e: byFirstArg.entrySet()) {
+        			e.setValue(delete(e.getValue(), stored));
+        		}
+        	} else {
+        		Literal[] bucket = delete(byFirstArg.get(key), stored);
+        		if (bucket.length == open.length) {
+        			byFirstArg.remove(key);
+        		} else {
+        			byFirstArg.put(key, bucket);
+        		}
         	}
        }
         
@@ -443,13 +556,102 @@ public class BeliefBase implements Iterable<PredicateTerm>, EvaluationBase<Predi
          * @return
          */
         public Literal contains(Literal l) {
-        	if (list.contains(l)) {
+        	if (byFirstArg == null ? list.contains(l) : find(l) != null) {
         		return l;
         	} else {
         		return	null;
         	}
         }
         
+        /**
+         * The literals which could unify with l, in order.  Outside JPF
+         * the list is shared and must not be changed.
+         * 
+         * @param l
+         * @return
+         */
+        public List<PredicateTerm> relevant(PredicateTerm l) {
+        	if (byFirstArg == null) {
+        		List<PredicateTerm> entrylist = new ArrayList<PredicateTerm>();
+        		entrylist.addAll(list);
+        		return entrylist;
+        	}
+        	return Arrays.<PredicateTerm>asList(candidates(firstArgKey(l)));
+        }
+        
+        /**
+         * The literals sharing a first argument key, or all of them if there
+         * is no key.
+         * @param key
+         * @return
+         */
+        private Literal[] candidates(Object key) {
+        	if (key == null) {
+        		if (all == null) {
+        			all = list.toArray(new Literal[list.size()]);
+        		}
+        		return all;
+        	}
+        	Literal[] bucket = byFirstArg.get(key);
+        	return bucket == null ? open : bucket;
+        }
+        
+        /**
+         * The first stored literal equal to l, as found by list.contains.
+         * @param l
+         * @return
+         */
+        private Literal find(Literal l) {
+        	for (Literal c: candidates(firstArgKey(l))) {
+        		if (l.equals(c)) {
+        			return c;
+        		}
+        	}
+        	return null;
+        }
+        
+        /**
+         * A copy of a sorted array with a literal inserted in its place.
+         * @param ls
+         * @param l
+         * @return
+         */
+        private Literal[] insert(Literal[] ls, Literal l) {
+        	int low = 0;
+        	int high = ls.length;
+        	while (low < high) {
+        		int mid = (low + high) >>> 1;
+        		if (ls[mid].compareTo(l) < 0) {
+        			low = mid + 1;
+        		} else {
+        			high = mid;
+        		}
+        	}
+        	Literal[] copy = new Literal[ls.length + 1];
+        	System.arraycopy(ls, 0, copy, 0, low);
+        	copy[low] = l;
+        	System.arraycopy(ls, low, copy, low + 1, ls.length - low);
+        	return copy;
+        }
+        
+        /**
+         * A copy of an array without a literal.
+         * @param ls
+         * @param l
+         * @return
+         */
+        private Literal[] delete(Literal[] ls, Literal l) {
+        	for (int i = 0; i < ls.length; i++) {
+        		if (ls[i] == l) {
+        			Literal[] copy = new Literal[ls.length - 1];
+        			System.arraycopy(ls, 0, copy, 0, i);
+        			System.arraycopy(ls, i + 1, copy, i, ls.length - i - 1);
+        			return copy;
+        		}
+        	}
+        	return ls;
+        }
+        
         /*
          * (non-Javadoc)
          * @see java.lang.Object#clone()
@@ -0,0 +1,295 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+//
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+//
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+import ail.semantics.AILAgent;
+import ail.semantics.AgentMentalState;
+
+/**
+ * A guard compiled into a tree of evaluators, used by AILAgent.believes
+ * outside JPF.
+ *
+ * Conjunctions, negations and beliefs read from a named belief base are
+ * evaluated directly: beliefs are matched against the belief base without
+ * the layers of evaluation bases and copies used by
+ * EvaluationAndRuleBaseIterator, and candidates whose arguments can not
+ * unify with those of the guard (see Unifier.unificationKey) are passed over
+ * before the unifier is copied.  Negations stop at their first solution.
+ * Anything else, including beliefs defined by rules, is handed to
+ * logicalConsequence.
+ *
+ * Solutions are the same, and come in the same order, as those of
+ * Guard.logicalConsequence with SelectionOrder.LINEAR.
+ *
+ */
+public abstract class CompiledGuard {
+
+	/**
+	 * The solutions of the guard.
+	 *
+	 * @param ag       The agent.
+	 * @param un       The unifier to evaluate the guard under.
+	 * @param varnames The variable names of the guard.
+	 * @return         An iterator over the solutions.
+	 */
+	public abstract Iterator<Unifier> solutions(AgentMentalState ag, Unifier un, Set<String> varnames);
+
+	/**
+	 * The compiled form of a guard, compiled when first asked for and kept
+	 * until the guard is added to.
+	 *
+	 * @param g The guard.
+	 * @return  Its compiled form.
+	 */
+	public static CompiledGuard of(Guard g) {
+		if (g.compiled == null) {
+			g.compiled = compile(g);
+		}
+		return g.compiled;
+	}
+
+	/**
+	 * Compiles a formula of a guard.
+	 *
+	 * @param f The formula.
+	 * @return  Its evaluator.
+	 */
+	static CompiledGuard compile(GLogicalFormula f) {
+		if (f instanceof Guard) {
+			Guard g = (Guard) f;
+			switch (g.getOp()) {
+				case none:
+					if (g.getRHS() == null) {
+						return new True();
+					}
+					return compile(g.getRHS());
+				case not:
+					return new Not(compile(g.getRHS()));
+				case and:
+					g.negationLast();
+					return new And(compile(g.getLHS()), compile(g.getRHS()));
+				default:
+					return new Interpreted(g);
+			}
+		}
+
+		if (f instanceof GBelief) {
+			GBelief gb = (GBelief) f;
+			if (! gb.isTrue() && ! gb.isVar() && ! (gb.getEB() instanceof VarTerm)) {
+				return new Belief(gb);
+			}
+		}
+
+		return new Interpreted(f);
+	}
+
+	/**
+	 * The empty guard, true under any unifier.
+	 */
+	static class True extends CompiledGuard {
+		public Iterator<Unifier> solutions(AgentMentalState ag, Unifier un, Set<String> varnames) {
+			return Guard.createUnifIterator(un);
+		}
+	}
+
+	/**
+	 * A formula evaluated by logicalConsequence.
+	 */
+	static class Interpreted extends CompiledGuard {
+		private GLogicalFormula f;
+
+		Interpreted(GLogicalFormula f) {
+			this.f = f;
+		}
+
+		public Iterator<Unifier> solutions(AgentMentalState ag, Unifier un, Set<String> varnames) {
+			return f.logicalConsequence(ag, un, varnames, AILAgent.SelectionOrder.LINEAR);
+		}
+	}
+
+	/**
+	 * A negation, which holds under the unifier it is given if what it negates
+	 * has no solution.
+	 */
+	static class Not extends CompiledGuard {
+		private CompiledGuard negated;
+
+		Not(CompiledGuard negated) {
+			this.negated = negated;
+		}
+
+		public Iterator<Unifier> solutions(AgentMentalState ag, Unifier un, Set<String> varnames) {
+			if (negated.solutions(ag, un, varnames).hasNext()) {
+				return Collections.<Unifier>emptyList().iterator();
+			}
+			return Guard.createUnifIterator(un);
+		}
+	}
+
+	/**
+	 * A conjunction, whose rhs is evaluated under each solution of its lhs in turn.
+	 */
+	static class And extends CompiledGuard {
+		private CompiledGuard lhs, rhs;
+
+		And(CompiledGuard lhs, CompiledGuard rhs) {
+			this.lhs = lhs;
+			this.rhs = rhs;
+		}
+
+		public Iterator<Unifier> solutions(final AgentMentalState ag, Unifier un, final Set<String> varnames) {
+			final Iterator<Unifier> ileft = lhs.solutions(ag, un, varnames);
+			return new Iterator<Unifier>() {
+				Unifier current = null;
+				Iterator<Unifier> iright = null;
+
+				public boolean hasNext() {
+					if (current == null) get();
+					return current != null;
+				}
+
+				public Unifier next() {
+					if (current == null) get();
+					Unifier a = current;
+					current = null;
+					return a;
+				}
+
+				private void get() {
+					while ((iright == null || !iright.hasNext()) && ileft.hasNext()) {
+						iright = rhs.solutions(ag, ileft.next(), varnames);
+					}
+					if (iright != null && iright.hasNext()) {
+						current = iright.next();
+					}
+				}
+
+				public void remove() {}
+			};
+		}
+	}
+
+	/**
+	 * A belief read from a belief base named by a constant.
+	 */
+	static class Belief extends CompiledGuard {
+		private GBelief gb;
+
+		Belief(GBelief gb) {
+			this.gb = gb;
+		}
+
+		public Iterator<Unifier> solutions(AgentMentalState ag, final Unifier un, Set<String> varnames) {
+			BeliefBase bb = ag.getBB(gb.getEB());
+			RuleBase rb = ag.getRuleBase();
+			if (bb == null || (rb != null && hasRules(rb))) {
+				return gb.logicalConsequence(ag, un, varnames, AILAgent.SelectionOrder.LINEAR);
+			}
+
+			// The belief base is named by a constant so, unlike in
+			// GBelief.unifieswith, there is no name to unify.
+			final Literal pattern = gb.toLiteral();
+			final Object[] keys = new Object[pattern.getTermsSize()];
+			for (int i = 0; i < keys.length; i++) {
+				Term t = pattern.getTerm(i);
+				if (t instanceof VarTerm) {
+					t = un.get((VarTerm) t);
+				}
+				keys[i] = t == null ? null : Unifier.unificationKey(t);
+			}
+			final Iterator<PredicateTerm> candidates = bb.getRelevant(EvaluationAndRuleBaseIterator.lookup(gb, un), AILAgent.SelectionOrder.LINEAR);
+
+			return new Iterator<Unifier>() {
+				Unifier current = null;
+
+				public boolean hasNext() {
+					if (current == null) get();
+					return current != null;
+				}
+
+				public Unifier next() {
+					if (current == null) get();
+					Unifier a = current;
+					current = null;
+					return a;
+				}
+
+				private void get() {
+					while (candidates.hasNext()) {
+						PredicateTerm c = candidates.next();
+						if (mayUnify(keys, c)) {
+							Unifier unC = un.clone();
+							if (pattern.unifies(c, unC)) {
+								current = unC;
+								return;
+							}
+						}
+					}
+				}
+
+				public void remove() {}
+			};
+		}
+
+		/**
+		 * Whether any rule could define the belief.
+		 *
+		 * @param rb The rule base.
+		 * @return   Whether the rule base has rules for its name and arity.
+		 */
+		private boolean hasRules(RuleBase rb) {
+			Iterator<Rule> rl = rb.getRelevant((PredicateTerm) gb);
+			return rl != null && rl.hasNext();
+		}
+
+		/**
+		 * Whether a candidate could unify with the belief, as far as the keys
+		 * of their arguments tell.
+		 *
+		 * @param keys The keys of the arguments of the belief.
+		 * @param c    The candidate.
+		 * @return     False if some argument of each has a different key.
+		 */
+		private static boolean mayUnify(Object[] keys, PredicateTerm c) {
+			if (! (c instanceof Predicate) || ((Predicate) c).getTermsSize() != keys.length) {
+				return true;
+			}
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != null) {
+					Object key = Unifier.unificationKey(((Predicate) c).getTerm(i));
+					if (key != null && ! key.equals(keys[i])) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+}
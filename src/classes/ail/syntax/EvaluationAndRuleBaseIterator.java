@@ -23,6 +23,7 @@
 package ail.syntax;
 
 import gov.nasa.jpf.annotation.FilterField;
+import gov.nasa.jpf.vm.Verify;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -113,13 +114,33 @@ public class EvaluationAndRuleBaseIterator implements Iterator<Unifier> {
 			ill.add(tuple);
 			il = ill.iterator();
 		} else {
-			il = eb.getRelevantTuple(logical_term, AILAgent.SelectionOrder.LINEAR);
+			il = eb.getRelevantTuple(lookup(t, u), AILAgent.SelectionOrder.LINEAR);
 		}
 		rl = rb.getRelevant((Predicate) logical_term);
 		varnames = vars;
 		this.so = so;
 	}
 	
+	/**
+	 * The term to look up in the evaluation base.  Outside JPF, if the first
+	 * argument is a variable the unifier binds, it is replaced by its value so
+	 * that the belief base can use its index on first arguments.
+	 * @param t
+	 * @param u
+	 * @return
+	 */
+	static PredicateTerm lookup(PredicateTerm t, Unifier u) {
+		if (t instanceof Predicate && t.getTermsSize() > 0 && ! Verify.isRunningInJPF()) {
+			Term first = ((Predicate) t).getTerm(0);
+			if (first instanceof VarTerm && u.get((VarTerm) first) != null) {
+				PredicateTerm bound = (PredicateTerm) ((Predicate) t).clone();
+				bound.apply(u);
+				return bound;
+			}
+		}
+		return t;
+	}
+	
           
 	/*
 	 * (non-Javadoc)
@@ -254,7 +254,7 @@ public class GBelief extends Literal implements GuardAtom<PredicateTerm> {
     		eb = new NamedEvaluationBase<PredicateTerm>(ag.getBB(getEB()), ebname.getString());
     	}
     	    	
-    	return new EvaluationAndRuleBaseIterator(eb, ag.getRuleBase(), un, this, varnames, so);
+    	return RuleTables.logicalConsequence(eb, ag.getRuleBase(), un, this, varnames, so);
  	}
 	
 	/*
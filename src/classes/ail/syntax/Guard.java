@@ -39,6 +39,7 @@ import ail.semantics.AILAgent;
 import ail.semantics.AgentMentalState;
 import ail.tracing.explanations.PredicateDescriptions;
 import ajpf.util.AJPFLogger;
+import gov.nasa.jpf.annotation.FilterField;
 
 /**
  * Guards that appear primarily in the conditions on plans and which are checked for truth against the agent's state.
@@ -69,6 +70,11 @@ public class Guard implements GLogicalFormula {
 	 * The operator.
 	 */
 	private  GLogicalOp      op = GLogicalOp.none;
+	/**
+	 * The guard compiled for evaluation outside JPF (see CompiledGuard).
+	 */
+	@FilterField
+	CompiledGuard compiled;
 
 	
 	/**
@@ -225,6 +231,7 @@ public class Guard implements GLogicalFormula {
 	 * @return
 	 */
 	public boolean add(GLogicalFormula gb, boolean b) {
+		compiled = null;
   
 		if (isTrivial()) {
 			if (b) {
@@ -373,12 +380,7 @@ public class Guard implements GLogicalFormula {
 		        		}
 		        
 		        	case and:
-		        		if (lhs instanceof Guard && ((Guard) lhs).getOp().equals(GLogicalOp.not)
-		        			&& (!(rhs instanceof Guard) || (!((Guard) rhs).getOp().equals(GLogicalOp.not)))) {
-		        			GLogicalFormula g1 = lhs;
-		        			lhs = rhs;
-		        			rhs = g1;
-		        		}
+		        		negationLast();
 		        		ileft = lhs.logicalConsequence(ag,un, varnames, AILAgent.SelectionOrder.LINEAR);
 	        			List<Unifier> currents = new ArrayList<Unifier>();
 		        		return new Iterator<Unifier>() {
@@ -627,6 +629,19 @@ public class Guard implements GLogicalFormula {
 	        return empty.iterator();  // empty iterator for unifier
 	}
 	   
+	/**
+	 * In a conjunction, puts a negated lhs after a rhs which is not, so that
+	 * the negation is checked once its variables are bound.
+	 */
+	void negationLast() {
+		if (op == GLogicalOp.and && lhs instanceof Guard && ((Guard) lhs).getOp().equals(GLogicalOp.not)
+			&& (!(rhs instanceof Guard) || (!((Guard) rhs).getOp().equals(GLogicalOp.not)))) {
+			GLogicalFormula g1 = lhs;
+			lhs = rhs;
+			rhs = g1;
+		}
+	}
+	   
     /** create an iterator for a list of unifiers */
     static public Iterator<Unifier> createUnifIterator(Unifier... unifs) {
         List<Unifier> r = new ArrayList<Unifier>(unifs.length);
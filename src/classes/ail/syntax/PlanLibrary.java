@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.collect.Lists;
 
@@ -419,6 +420,12 @@ public class PlanLibrary {
     			 * The iterator of the unifers that match the current plan to the current situation.
     			 */
     			Iterator<Unifier> iun = null;
+    			/**
+    			 * The plan as matched: p itself unless its variables had to be renamed.
+    			 */
+    			Plan cp;
+    			int appplanlength;
+    			boolean started = false;
     			
     			/*
     			 * (non-Javadoc)
@@ -452,16 +459,47 @@ public class PlanLibrary {
     			 * This is the method that does all the work of generating the applicable plans for a particular agent.
     			 */
     			public void get() {
-    				Plan cp = (Plan) p.clone();
+    				if (!started) {
+    					started = true;
+    					match();
+    				}
+    					
+    				if (iun != null && iun.hasNext()) {
+    					// Each applicable plan gets its own copy of the plan
+    					Unifier u = iun.next();
+    					Plan ap = (Plan) cp.clone();
+     					current = new ApplicablePlan(ap.getTriggerEvent(), ap.getBody(), ap.getContext(), appplanlength, u, ap.getID(), ap.getLibID(), a.getPrettyPrinter());
+    				} else {
+    					current = null;
+    					return;
+    				}
+    			}
+    			
+    			/**
+    			 * Match the plan's trigger and prefix against the intention and start evaluating its guard.
+    			 * The plan is only copied if its variables must be renamed apart from the intention's.
+    			 */
+    			private void match() {
     				Unifier un = new Unifier();
+    				cp = p;
     				
     				if (intention != null  && !intention.empty()) {
-    					cp.standardise_apart(intention.hdU(), new Unifier());
     					un = intention.hdU();
+    					Set<String> names = un.getVarNames();
+    					if (p.getPrefix().size() > 0) {
+    						if (!mayEntail(intention.hdE(), p.getTriggerEvent())) {
+    							return;
+    						}
+    						names.addAll(intention.hdE().getVarNames());
+    					}
+    					if (!Collections.disjoint(names, p.getVarNames())) {
+    						cp = (Plan) p.clone();
+    						cp.standardise_apart(un, new Unifier());
+    					}
     				}
  
     				int prefixsize = cp.getPrefix().size();
-    				int appplanlength = prefixsize;
+    				appplanlength = prefixsize;
     				boolean plan_is_applicable = false;
     				
     				if (prefixsize > 0) {
@@ -482,28 +520,21 @@ public class PlanLibrary {
     				} 
     					
     				if (plan_is_applicable) {
-    					if (iun == null) {
-    						Guard g = cp.getContext().get(cp.getContext().size() - 1);
-    						if (random == true) {
-    							iun = a.believes(g, un, AILAgent.SelectionOrder.RANDOM);
-    						} else {
-    							iun = a.believes(g, un, AILAgent.SelectionOrder.LINEAR);
-    						}
-    						if (a.shouldTrace()) { // this is bad, but don't see how to do it otherwise
-								List<Unifier> data = Lists.newArrayList(iun);
-								iun = data.iterator();
-								ApplicablePlan mock = new ApplicablePlan(cp.getTriggerEvent(), cp.getBody(),
-										cp.getContext(), appplanlength, null, cp.getID(), cp.getLibID(), a.getPrettyPrinter());
-								a.trace(new GuardEvent(intention, mock, g, data, false));
-    						}
+    					Guard g = cp.getContext().get(cp.getContext().size() - 1);
+    					if (random == true) {
+    						iun = a.believes(g, un, AILAgent.SelectionOrder.RANDOM);
+    					} else if (a.getApplicabilityNetwork() != null) {
+    						iun = a.getApplicabilityNetwork().solutions(a, p, g, un);
+    					} else {
+    						iun = a.believes(g, un, AILAgent.SelectionOrder.LINEAR);
+    					}
+    					if (a.shouldTrace()) { // this is bad, but don't see how to do it otherwise
+    						List<Unifier> data = Lists.newArrayList(iun);
+    						iun = data.iterator();
+    						ApplicablePlan mock = new ApplicablePlan(cp.getTriggerEvent(), cp.getBody(),
+    								cp.getContext(), appplanlength, null, cp.getID(), cp.getLibID(), a.getPrettyPrinter());
+    						a.trace(new GuardEvent(intention, mock, g, data, false));
     					}
-    				}
-    					
-    				if (iun != null && iun.hasNext()) {
-     					current = new ApplicablePlan(cp.getTriggerEvent(), cp.getBody(), cp.getContext(), appplanlength, iun.next(), cp.getID(), cp.getLibID(), a.getPrettyPrinter());
-    				} else {
-    					current = null;
-    					return;
     				}
     			}
 
@@ -512,6 +543,43 @@ public class PlanLibrary {
     	};
     	
     	
+    	/**
+    	 * A quick check, without copying or renaming anything, that an event may match a plan's trigger.
+    	 * If it fails so would goalEntails.
+    	 * @param e
+    	 * @param trigger
+    	 * @return
+    	 */
+    	private boolean mayEntail(Event e, Event trigger) {
+    		if (!e.sameType(trigger)) {
+    			return false;
+    		}
+    		if (e.isStart() || e.fromPercept() || !(e.getContent() instanceof Predicate) || !(trigger.getContent() instanceof Predicate)) {
+    			return true;
+    		}
+    		Predicate c1 = (Predicate) e.getContent();
+    		Predicate c2 = (Predicate) trigger.getContent();
+    		if (c1.isVar() || c2.isVar() || !lowerCase(c1.getFunctor()) || !lowerCase(c2.getFunctor())) {
+    			// Goals named by variables match any goal
+    			return true;
+    		}
+    		if (!c1.getFunctor().equals(c2.getFunctor()) || c1.getTermsSize() != c2.getTermsSize()) {
+    			return false;
+    		}
+    		for (int i = 0; i < c1.getTermsSize(); i++) {
+    			Object k1 = Unifier.unificationKey(c1.getTerm(i));
+    			Object k2 = Unifier.unificationKey(c2.getTerm(i));
+    			if (k1 != null && k2 != null && !k1.equals(k2)) {
+    				return false;
+    			}
+    		}
+    		return true;
+    	}
+    	
+    	private boolean lowerCase(String functor) {
+    		return functor != null && !functor.isEmpty() && Character.isLowerCase(functor.charAt(0));
+    	}
+    	
     	/*
     	 * (non-Javadoc)
     	 * @see ail.syntax.PlanLibrary.PlanSet#get(ail.semantics.AILAgent)
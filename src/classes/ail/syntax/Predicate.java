@@ -642,7 +642,7 @@ public class Predicate extends DefaultTerm implements PredicateTerm, MCAPLFormul
      */
     @Override
 	public Iterator<Unifier> logicalConsequence(final EvaluationBasewNames<PredicateTerm> eb, final RuleBase rb, final Unifier un, final Set<String> varnames, AILAgent.SelectionOrder so) {
-		return new EvaluationAndRuleBaseIterator(eb, rb, un, this, varnames, so);
+		return RuleTables.logicalConsequence(eb, rb, un, this, varnames, so);
 	}
 
 	/*
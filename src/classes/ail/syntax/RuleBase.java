@@ -37,6 +37,7 @@ import ajpf.util.VerifyMap;
 
 //import gov.nasa.jpf.jvm.abstraction.filter.FilterField;
 import gov.nasa.jpf.annotation.FilterField;
+import gov.nasa.jpf.vm.Verify;
 
 /**
  * Default implementation of an AIL Rule Base.  Based on the Jason BeliefBase
@@ -59,6 +60,18 @@ public class RuleBase implements Iterable<Rule> {
      */
     @FilterField
     private int size = 0;
+    
+    /**
+     * Number of rules added or removed so far.
+     */
+    @FilterField
+    private long changes = 0;
+    
+    /**
+     * Answer tables for the rules, if they are tabled.
+     */
+    @FilterField
+    private RuleTables tables = null;
 
     /**
      * Getter for the number of rules.
@@ -67,6 +80,41 @@ public class RuleBase implements Iterable<Rule> {
     public int size() {
         return size;
     }
+    
+    /**
+     * The number of rules added or removed so far.  While it stays the same so
+     * do the rules.
+     * 
+     * @return the number of changes.
+     */
+    public long getChanges() {
+    	return changes;
+    }
+    
+    /**
+     * Whether the answers of rules are kept in tables (see RuleTables).  Ignored
+     * in JPF.
+     * 
+     * @param tabled
+     */
+    public void setTabled(boolean tabled) {
+    	if (tabled && ! Verify.isRunningInJPF()) {
+    		if (tables == null) {
+    			tables = new RuleTables();
+    		}
+    	} else {
+    		tables = null;
+    	}
+    }
+    
+    /**
+     * The answer tables of the rules.
+     * 
+     * @return the tables, or null if rules are not tabled.
+     */
+    public RuleTables getTables() {
+    	return tables;
+    }
        
     /**
      * Add a rule to the rule base.
@@ -83,6 +131,10 @@ public class RuleBase implements Iterable<Rule> {
             entry.add(l);
  
             size++;
+            changes++;
+            if (tables != null) {
+            	tables.clear();
+            }
             return true;
      }
 
@@ -98,6 +150,10 @@ public class RuleBase implements Iterable<Rule> {
         		ruleMap.remove(key);
         	}
         	size--;
+        	changes++;
+        	if (tables != null) {
+        		tables.clear();
+        	}
             boolean  result = true;
             return result;
         } 
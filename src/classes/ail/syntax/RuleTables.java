@@ -0,0 +1,467 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+//
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+//
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ail.semantics.AILAgent;
+
+/**
+ * Answer tables for the rules of a rule base, used outside JPF when the rule
+ * base is tabled (see RuleBase.setTabled).
+ *
+ * A call to a predicate defined by rules is evaluated once for each variant
+ * (the call with the unifier applied, up to the names of its variables) and
+ * its answers kept in a table.  Later calls of the same variant read the
+ * table.  A call made while its own table is still being evaluated, as in a
+ * left recursive rule, reads the answers found so far, and the first call of
+ * the recursion evaluates again until no new answers are found.
+ *
+ * A table stays current, across reasoning cycles, until a belief it was
+ * computed from changes (see BeliefBase.getChanges) or a rule is added or
+ * removed.
+ *
+ * Answers come in the order they were found and each only once.  Predicates
+ * with a rule containing a cut, calls of negated literals or with annotations,
+ * and calls to evaluation bases other than a single named belief base are
+ * evaluated as before.  As in Datalog, negation is assumed not to be through
+ * recursion.
+ *
+ */
+public class RuleTables {
+	// The tables, by evaluation base name and variant
+	private HashMap<String, Table> tables = new HashMap<String, Table>();
+	// The tables being evaluated, innermost last
+	private ArrayList<Table> stack = new ArrayList<Table>();
+	// Tables evaluated which are waiting for the first call of their recursion
+	private ArrayList<Table> pending = new ArrayList<Table>();
+	// The number of answers added to all tables
+	private long answers = 0;
+	// The number of evaluations of tables so far, each pass counting once
+	private int passes = 0;
+	// Incremented whenever tables waiting on a recursion are to be evaluated again
+	private int rounds = 0;
+
+	/**
+	 * A table of answers for a variant of a call.
+	 */
+	static class Table {
+		PredicateTerm call;
+		List<PredicateTerm> answers = new ArrayList<PredicateTerm>();
+		Set<String> variants = new HashSet<String>();
+		// The beliefs read, with their number of changes then
+		Map<Read, Long> reads = new HashMap<Read, Long>();
+		// Read from somewhere which can not be checked
+		boolean untracked = false;
+		boolean complete = false;
+		boolean evaluating = false;
+		boolean pending = false;
+		boolean recursive = false;
+		// Position in the stack, and that of the earliest table it called while incomplete
+		int depth, low;
+		// The round in which it was last evaluated
+		int round = -1;
+
+		Table(PredicateTerm call) {
+			this.call = call;
+		}
+	}
+
+	/**
+	 * Beliefs of some name and arity in a belief base.
+	 */
+	static class Read {
+		BeliefBase bb;
+		PredicateIndicator pi;
+
+		Read(BeliefBase bb, PredicateIndicator pi) {
+			this.bb = bb;
+			this.pi = pi;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Read && ((Read) o).bb == bb && ((Read) o).pi.equals(pi);
+		}
+
+		public int hashCode() {
+			return 31 * System.identityHashCode(bb) + pi.hashCode();
+		}
+	}
+
+	/**
+	 * The solutions of an atom, as from an EvaluationAndRuleBaseIterator but
+	 * read from the tables of rb if it has them.
+	 *
+	 * @param eb       The evaluation base.
+	 * @param rb       The rule base.
+	 * @param un       The unifier.
+	 * @param t        The atom.
+	 * @param varnames The variable names in use.
+	 * @param so       The selection order.
+	 * @return         An iterator over the solutions.
+	 */
+	public static Iterator<Unifier> logicalConsequence(EvaluationBasewNames<PredicateTerm> eb, RuleBase rb, Unifier un, PredicateTerm t, Set<String> varnames, AILAgent.SelectionOrder so) {
+		if (rb != null && rb.getTables() != null && so == AILAgent.SelectionOrder.LINEAR) {
+			return rb.getTables().solve(eb, rb, un, t, varnames);
+		}
+		return new EvaluationAndRuleBaseIterator(eb, rb, un, t, varnames, so);
+	}
+
+	/**
+	 * Forgets all tables.
+	 */
+	public void clear() {
+		tables.clear();
+	}
+
+	/**
+	 * The number of evaluations of tables so far.  A table evaluated again
+	 * because of recursion counts once for each time.
+	 *
+	 * @return The number of evaluations.
+	 */
+	public int getEvaluations() {
+		return passes;
+	}
+
+	/**
+	 * The solutions of an atom.
+	 */
+	private Iterator<Unifier> solve(EvaluationBasewNames<PredicateTerm> eb, RuleBase rb, Unifier un, PredicateTerm t, Set<String> varnames) {
+		BeliefBase bb = null;
+		if (eb instanceof NamedEvaluationBase<?> && ((NamedEvaluationBase<?>) eb).eb instanceof BeliefBase) {
+			bb = (BeliefBase) ((NamedEvaluationBase<?>) eb).eb;
+		}
+		if (bb == null || t == Predicate.PTrue || t.isVar() || (t instanceof GBelief && ((GBelief) t).isTrue())) {
+			for (Table s: stack) {
+				s.untracked = true;
+			}
+			return new EvaluationAndRuleBaseIterator(eb, rb, un, t, varnames, AILAgent.SelectionOrder.LINEAR);
+		}
+
+		PredicateIndicator pi = new PredicateIndicator(t.getFunctor(), t.getTermsSize());
+		if (! stack.isEmpty()) {
+			Read r = new Read(bb, pi);
+			Table top = stack.get(stack.size() - 1);
+			if (! top.reads.containsKey(r)) {
+				top.reads.put(r, bb.getChanges(pi));
+			}
+		}
+
+		PredicateTerm pattern = t instanceof GBelief ? ((GBelief) t).toLiteral() : t;
+		if (! tabled(rb, pattern)) {
+			return new EvaluationAndRuleBaseIterator(eb, rb, un, t, varnames, AILAgent.SelectionOrder.LINEAR);
+		}
+
+		PredicateTerm call = (PredicateTerm) resolve((Term) pattern, un, new HashMap<String, VarTerm>());
+		String key = ((NamedEvaluationBase<?>) eb).name + ":" + variant(call);
+		Table table = tables.get(key);
+		if (table != null && table.complete && ! current(table)) {
+			tables.remove(key);
+			table = null;
+		}
+
+		if (table == null) {
+			table = new Table(call);
+			tables.put(key, table);
+			evaluate(table, eb, rb, bb, pi);
+		} else if (table.evaluating) {
+			table.recursive = true;
+			called(table.depth, table);
+		} else if (table.pending && table.round != rounds) {
+			evaluate(table, eb, rb, bb, pi);
+		} else {
+			called(table.pending ? table.low : Integer.MAX_VALUE, table);
+		}
+
+		return answers(table, pattern, un);
+	}
+
+	/**
+	 * Evaluates a table, adding the answers it does not yet have.  The first call
+	 * of a recursion evaluates again until no table gains answers.
+	 */
+	private void evaluate(Table table, EvaluationBasewNames<PredicateTerm> eb, RuleBase rb, BeliefBase bb, PredicateIndicator pi) {
+		int depth = stack.size();
+		table.depth = depth;
+		if (! table.pending) {
+			table.low = depth;
+		}
+		table.evaluating = true;
+		table.reads.put(new Read(bb, pi), bb.getChanges(pi));
+		int mark = pending.size();
+		if (stack.isEmpty()) {
+			rounds++;
+		}
+		stack.add(table);
+
+		try {
+			long before = -1;
+			do {
+				if (before >= 0) {
+					rounds++;
+				}
+				before = answers;
+				passes++;
+				table.round = rounds;
+				Set<String> varnames = new HashSet<String>(table.call.getVarNames());
+				Iterator<Unifier> it = new EvaluationAndRuleBaseIterator(eb, rb, new Unifier(), table.call, varnames, AILAgent.SelectionOrder.LINEAR);
+				while (it.hasNext()) {
+					PredicateTerm answer = (PredicateTerm) resolve((Term) table.call, it.next(), new HashMap<String, VarTerm>());
+					if (table.variants.add(variant(answer))) {
+						table.answers.add(answer);
+						answers++;
+					}
+				}
+			} while (! table.pending && table.low == depth && table.recursive && answers != before);
+		} catch (RuntimeException e) {
+			tables.clear();
+			stack.clear();
+			pending.clear();
+			throw e;
+		}
+
+		stack.remove(depth);
+		table.evaluating = false;
+		if (! table.pending && table.low == depth) {
+			table.complete = true;
+			for (Table member: pending.subList(mark, pending.size())) {
+				member.complete = true;
+				member.pending = false;
+				member.reads.putAll(table.reads);
+				member.untracked |= table.untracked;
+			}
+			pending.subList(mark, pending.size()).clear();
+		} else if (! table.pending) {
+			table.pending = true;
+			pending.add(table);
+		}
+		called(table.low, table);
+	}
+
+	/**
+	 * Notes, in the table being evaluated, a call to another table.
+	 *
+	 * @param low   The position in the stack of the earliest table the call
+	 *              depends on while it is incomplete.
+	 * @param table The other table.
+	 */
+	private void called(int low, Table table) {
+		if (! stack.isEmpty()) {
+			Table top = stack.get(stack.size() - 1);
+			top.low = Math.min(top.low, low);
+			top.untracked |= table.untracked;
+			for (Map.Entry<Read, Long> r: table.reads.entrySet()) {
+				if (! top.reads.containsKey(r.getKey())) {
+					top.reads.put(r.getKey(), r.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether a complete table still holds.
+	 */
+	private boolean current(Table table) {
+		if (table.untracked) {
+			return false;
+		}
+		for (Map.Entry<Read, Long> r: table.reads.entrySet()) {
+			if (r.getKey().bb.getChanges(r.getKey().pi) != r.getValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether calls of an atom are tabled: it is defined by rules, none of which
+	 * contains a cut, and is neither negated nor annotated.
+	 */
+	private static boolean tabled(RuleBase rb, PredicateTerm pattern) {
+		if (pattern instanceof Literal && ((Literal) pattern).negated()) {
+			return false;
+		}
+		if (pattern instanceof PredicatewAnnotation && ((PredicatewAnnotation) pattern).hasAnnot()) {
+			return false;
+		}
+		Iterator<Rule> rl = rb.getRelevant(pattern);
+		if (rl == null || ! rl.hasNext()) {
+			return false;
+		}
+		while (rl.hasNext()) {
+			LogicalFormula body = rl.next().getBody();
+			if (body instanceof LogExpr && ((LogExpr) body).contains_cut()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The answers of a table which unify with an atom.  Answers added while the
+	 * iterator is in use are included.
+	 */
+	private static Iterator<Unifier> answers(final Table table, final PredicateTerm pattern, final Unifier un) {
+		return new Iterator<Unifier>() {
+			int i = 0;
+			Unifier current = null;
+
+			public boolean hasNext() {
+				if (current == null) get();
+				return current != null;
+			}
+
+			public Unifier next() {
+				if (current == null) get();
+				Unifier a = current;
+				current = null;
+				return a;
+			}
+
+			private void get() {
+				while (i < table.answers.size()) {
+					PredicateTerm answer = table.answers.get(i++);
+					if (! answer.isGround()) {
+						answer = (PredicateTerm) answer.clone();
+						answer.makeVarsAnnon();
+					}
+					Unifier unC = un.clone();
+					if (pattern.unifies(answer, unC)) {
+						current = unC;
+						return;
+					}
+				}
+			}
+
+			public void remove() {}
+		};
+	}
+
+	/**
+	 * A copy of a term with a unifier applied.  Unlike apply this leaves no
+	 * clusters of variables in the copy: each cluster without a value becomes
+	 * one of its variables.
+	 *
+	 * @param t    The term.
+	 * @param un   The unifier.
+	 * @param vars The variables of the copy, by name or cluster.
+	 * @return     The copy.
+	 */
+	private static Term resolve(Term t, Unifier un, Map<String, VarTerm> vars) {
+		if (t instanceof VarTerm && ((VarTerm) t).hasValue()) {
+			return resolve(((VarTerm) t).getValue(), un, vars);
+		}
+		if (t instanceof VarTerm) {
+			VarTerm v = (VarTerm) t;
+			Term value = un.get(v);
+			if (value == null) {
+				return var(v.getFunctor(), v, vars);
+			}
+			return resolve(value, un, vars);
+		}
+		if (t instanceof VarsCluster) {
+			VarsCluster c = (VarsCluster) t;
+			if (c.hasValue()) {
+				return resolve(c.getValue(), un, vars);
+			}
+			return var("_" + c.getID(), c.iterator().next(), vars);
+		}
+		if (t instanceof Predicate) {
+			Predicate p = (Predicate) t.clone();
+			for (int i = 0; i < p.getTermsSize(); i++) {
+				p.setTerm(i, resolve(p.getTerm(i), un, vars));
+			}
+			return p;
+		}
+		return (Term) t.clone();
+	}
+
+	private static VarTerm var(String key, VarTerm v, Map<String, VarTerm> vars) {
+		VarTerm r = vars.get(key);
+		if (r == null) {
+			r = new VarTerm(v.getFunctor());
+			vars.put(key, r);
+		}
+		return r;
+	}
+
+	/**
+	 * A string which is the same for two atoms if, and only if, they are the
+	 * same up to the names of their variables.
+	 *
+	 * @param t The atom.
+	 * @return  Its variant.
+	 */
+	static String variant(PredicateTerm t) {
+		StringBuilder s = new StringBuilder();
+		variant((Term) t, s, new ArrayList<String>());
+		return s.toString();
+	}
+
+	private static void variant(Term t, StringBuilder s, List<String> vars) {
+		if (t.isVar()) {
+			String v = ((VarTerm) t).getFunctor();
+			int i = vars.indexOf(v);
+			if (i < 0) {
+				i = vars.size();
+				vars.add(v);
+			}
+			s.append('_').append(i);
+		} else if (t instanceof ListTermImpl) {
+			ListTermImpl l = (ListTermImpl) t;
+			if (l.isEmpty()) {
+				s.append("[]");
+			} else {
+				s.append('[');
+				variant(l.getTerm(0), s, vars);
+				s.append('|');
+				variant(l.getTerm(1), s, vars);
+				s.append(']');
+			}
+		} else if (t instanceof Predicate) {
+			Predicate p = (Predicate) t;
+			s.append(p.getFunctor());
+			if (p.getTermsSize() > 0) {
+				s.append('(');
+				for (int i = 0; i < p.getTermsSize(); i++) {
+					if (i > 0) {
+						s.append(',');
+					}
+					variant(p.getTerm(i), s, vars);
+				}
+				s.append(')');
+			}
+		} else {
+			s.append(t);
+		}
+	}
+}
@@ -28,11 +28,15 @@
 package ail.syntax;
 
 import gov.nasa.jpf.annotation.FilterField;
+import gov.nasa.jpf.vm.Verify;
 
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 import ail.syntax.ast.GroundPredSets;
@@ -52,10 +56,47 @@ public class Unifier implements Cloneable, Comparable<Unifier> {
 	@FilterField
 	String logname = "ail.syntax.Unifier";
 
+	/**
+	 * Whether unifiers created from now on keep their bindings in a hash map rather than in the canonical
+	 * VerifyMap.  Looking a variable up in a VerifyMap means scanning it, which makes unifying large plan contexts
+	 * quadratic in their variables.  The canonical form keeps equal unifiers identical for state matching, so it
+	 * is always used when running in JPF.
+	 */
+	private static boolean hashed = true;
+
 	/**
 	 * A Function mapping variables to their instantiations.
 	 */
-   private VerifyMap<VarTerm, Term> function = new VerifyMap<VarTerm, Term>();
+   private Map<VarTerm, Term> function = newFunction();
+
+    /**
+     * Choose whether unifiers created from now on hash their bindings outside JPF.  This should be set before
+     * any agents are built, since unifiers of both kinds print alike but hash differently.
+     * @param h
+     */
+    public static void setHashedBindings(boolean h) {
+    	hashed = h;
+    }
+
+    /**
+     * Do unifiers created now hash their bindings?
+     * @return
+     */
+    public static boolean hashedBindings() {
+    	return hashed && !Verify.isRunningInJPF();
+    }
+
+    /**
+     * A new, empty function of the chosen kind.
+     * @return
+     */
+    private static Map<VarTerm, Term> newFunction() {
+    	if (hashedBindings()) {
+    		// Insertion order, so that composing and pruning visit variables in the same order on every run
+    		return new LinkedHashMap<VarTerm, Term>();
+    	}
+    	return new VerifyMap<VarTerm, Term>();
+    }
 
     /**
      * gets the value for a Var, if it is unified with another var, gets this
@@ -70,6 +111,10 @@ public class Unifier implements Cloneable, Comparable<Unifier> {
      * other's value
      */
     public Term get(VarTerm vtp) {
+    	if (vtp.isVar()) {
+    		// A free variable is equal to, and hashes like, the bound variable of the same name
+    		return function.get(vtp);
+    	}
     	for (VarTerm v: function.keySet() ) {
     		if (vtp.equals(v)) {
     			return function.get(v);
@@ -608,7 +653,17 @@ public class Unifier implements Cloneable, Comparable<Unifier> {
      * @see java.lang.Object#toString()
      */
     public String toString() {
-        return function.toString();
+    	if (function instanceof VerifyMap) {
+    		return function.toString();
+    	}
+    	// Unifiers are compared by their printed form, so hashed bindings are printed in the canonical order
+    	List<Map.Entry<VarTerm, Term>> bindings = new ArrayList<Map.Entry<VarTerm, Term>>(function.entrySet());
+    	Collections.sort(bindings, new Comparator<Map.Entry<VarTerm, Term>>() {
+    		public int compare(Map.Entry<VarTerm, Term> b1, Map.Entry<VarTerm, Term> b2) {
+    			return b1.getKey().compareTo(b2.getKey());
+    		}
+    	});
+    	return bindings.toString();
     }
 
     /**
@@ -625,7 +680,7 @@ public class Unifier implements Cloneable, Comparable<Unifier> {
      */
     public void compose(Unifier u) {
         for (VarTerm k: u.function.keySet()) {
-        	if (! function.keySet().contains(k) ) { 
+        	if (! function.containsKey(k) ) { 
         		// k does not appear in this unifier.  Easypeasy solution.
         		function.put( (VarTerm)k.clone(), (Term)u.function.get(k).clone());
         	} else  {
@@ -729,11 +784,18 @@ public class Unifier implements Cloneable, Comparable<Unifier> {
      * 
      */
     public void renameVar(String oldname, String newname) {
+    	List<VarTerm> renamed = new ArrayList<VarTerm>();
     	for (VarTerm v: function.keySet()) {
     		if (v.getFunctor().equals(oldname)) {
-    			v.renameVar(oldname, newname);
+    			renamed.add(v);
     		}
     	}
+    	// Renamed variables are put back, since their name decides where they are kept
+    	for (VarTerm v: renamed) {
+    		Term t = function.remove(v);
+    		v.renameVar(oldname, newname);
+    		function.put(v, t);
+    	}
     }
     
     /**
@@ -950,6 +1012,28 @@ public class Unifier implements Cloneable, Comparable<Unifier> {
     	return false;
     }
     
+    /**
+     * A key two terms must share in order to unify: a number or string, or the
+     * functor and arity of a structure.  A bound variable has the key of its
+     * value.
+     * 
+     * @param t
+     * @return The key, or null if t could unify with terms of any key (a
+     *         variable or an arithmetic expression, for instance).
+     */
+    static Object unificationKey(Term t) {
+    	while (t instanceof VarTerm && ((VarTerm) t).hasValue()) {
+    		t = ((VarTerm) t).getValue();
+    	}
+    	if (t instanceof NumberTermImpl || t instanceof StringTermImpl) {
+    		return t;
+    	}
+    	if (t instanceof Predicate && ! t.isVar() && ((Predicate) t).getFunctor() != null) {
+    		return new PredicateIndicator(((Predicate) t).getFunctor(), ((Predicate) t).getTermsSize());
+    	}
+    	return null;
+    }
+    
     /**
      * This unifier contians the following variable name.
      * @param v
@@ -24,7 +24,10 @@
 
 package ajpf.util;
 
+import gov.nasa.jpf.vm.Verify;
+
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.Set;
@@ -34,6 +37,10 @@ import java.util.Collection;
 /**
  * A map class which maintains equal maps in the same canonical form in order to
  * optimise state matching within JPF.
+ * 
+ * Outside JPF the tuples are also kept in a hash map by key, so that finding a key
+ * does not mean scanning, and are placed by binary search on the canonical order.
+ * Keys must then not change while they are in the map.
  * @author louiseadennis
  *
  * @param <K>
@@ -41,6 +48,10 @@ import java.util.Collection;
  */
 public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V> {
 	ArrayList<Tuple<K, V>> tuplearray = new ArrayList<Tuple<K, V>>();
+	// The first tuple with each key, outside JPF only, since JPF would have to match it as part of the state
+	HashMap<Object, Tuple<K, V>> index = Verify.isRunningInJPF() ? null : new HashMap<Object, Tuple<K, V>>();
+	// Whether some keys are equal but not in the same place in the canonical order
+	private boolean collisions = false;
 	 
 	public VerifyMap() {
 		tuplearray.trimToSize();
@@ -67,12 +78,10 @@ public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V>
 	 * @see java.util.Map#containsKey(java.lang.Object)
 	 */
 	public boolean containsKey(Object key) {
-		for (Tuple<K, V> t: tuplearray) {
-			if (t.matches(key)) {
-				return true;
-			}
+		if (index != null) {
+			return index.containsKey(key);
 		}
-		return false;
+		return indexOf(key) >= 0;
 	}
 	
 	/*
@@ -93,10 +102,13 @@ public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V>
 	 * @see java.util.Map#get(java.lang.Object)
 	 */
 	public V get(Object key) {
-		for (Tuple<K, V> t: tuplearray) {
-			if (t.matches(key)) {
-				return t.getValue();
-			}
+		if (index != null) {
+			Tuple<K, V> t = index.get(key);
+			return t == null ? null : t.getValue();
+		}
+		int i = indexOf(key);
+		if (i >= 0) {
+			return tuplearray.get(i).getValue();
 		}
 		return null;
 	}
@@ -115,6 +127,17 @@ public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V>
 	 * @see java.util.Map#remove(java.lang.Object)
 	 */
 	public V remove(Object key) {
+		if (index != null) {
+			Tuple<K, V> t = index.remove(key);
+			if (t == null) {
+				return null;
+			}
+			tuplearray.remove(positionOf(t));
+			if (collisions) {
+				reindex();
+			}
+			return t.getValue();
+		}
 		if (containsKey(key)) {
 			for (Tuple<K, V> tuple: tuplearray) {
 				if (tuple.getKey().equals(key)) {
@@ -143,6 +166,10 @@ public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V>
 	 * @see java.util.Map#clear()
 	 */
 	public void clear() {
+		if (index != null) {
+			index.clear();
+			collisions = false;
+		}
 		tuplearray.clear();
 		tuplearray.trimToSize();
 	}
@@ -201,6 +228,28 @@ public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V>
 	 * @return
 	 */
 	private V insert(Tuple<K, V> t) {
+		if (index != null) {
+			int i = lowerBound(t.getKey());
+			Tuple<K, V> indexed = index.get(t.getKey());
+			if (i < tuplearray.size() && t.getKey().compareTo(tuplearray.get(i).getKey()) == 0) {
+				Tuple<K, V> old = tuplearray.set(i, t);
+				if (indexed == old) {
+					index.put(t.getKey(), t);
+				} else {
+					collisions = true;
+					reindex();
+				}
+				return old.getValue();
+			}
+			tuplearray.add(i, t);
+			if (indexed == null) {
+				index.put(t.getKey(), t);
+			} else {
+				collisions = true;
+				reindex();
+			}
+			return null;
+		}
 		//fatma - changing this so we do dont modify the array (add things) in the loop
 		V element_to_return = null;
 		int index_to_add_at = -1;
@@ -243,6 +292,67 @@ public class VerifyMap<K extends Comparable<? super K>, V> implements Map<K, V>
 		return element_to_return;
 	}
 	
+	/**
+	 * Rebuild the index from the tuple array, keeping the first tuple with each key.
+	 */
+	private void reindex() {
+		index.clear();
+		for (Tuple<K, V> t: tuplearray) {
+			if (!index.containsKey(t.getKey())) {
+				index.put(t.getKey(), t);
+			}
+		}
+	}
+	
+	/**
+	 * The position of a tuple of this map in the tuple array, found by binary
+	 * search on its key.
+	 * @param t
+	 * @return
+	 */
+	private int positionOf(Tuple<K, V> t) {
+		for (int i = lowerBound(t.getKey()); i < tuplearray.size(); i++) {
+			if (tuplearray.get(i) == t) {
+				return i;
+			}
+		}
+		return tuplearray.indexOf(t);
+	}
+	
+	/**
+	 * The position of a key in the tuple array, or -1 if it is not there.
+	 * @param key
+	 * @return
+	 */
+	private int indexOf(Object key) {
+		for (int i = 0; i < tuplearray.size(); i++) {
+			if (tuplearray.get(i).matches(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * The first position in the tuple array whose key is not less than a key, which
+	 * is where that key is or would be inserted.
+	 * @param key
+	 * @return
+	 */
+	private int lowerBound(K key) {
+		int low = 0;
+		int high = tuplearray.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (key.compareTo(tuplearray.get(mid).getKey()) > 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#equals(java.lang.Object)
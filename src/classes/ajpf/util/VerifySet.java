@@ -24,6 +24,9 @@
 
 package ajpf.util;
 
+import gov.nasa.jpf.vm.Verify;
+
+import java.util.HashMap;
 import java.util.SortedSet;
 import java.util.Set;
 import java.util.ArrayList;
@@ -34,12 +37,18 @@ import java.util.Comparator;
 /**
  * A Set class that stores objects in a canonical form in order to assist state 
  * matching.
+ * 
+ * Outside JPF the elements are also kept in a hash map, so that finding one does
+ * not mean scanning the list.  Elements must then not change while they are in
+ * the set.
  * @author louiseadennis
  *
  * @param <K>
  */
 public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K> {
 	ArrayList<K> sortedlist = new ArrayList<K>();
+	// The elements by themselves, outside JPF only, since JPF would have to match it as part of the state
+	HashMap<Object, K> index = Verify.isRunningInJPF() ? null : new HashMap<Object, K>();
 	
 	public VerifySet() {
 		sortedlist.trimToSize();
@@ -70,6 +79,9 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 			return false;
 		} else {
 			insert(e);
+			if (index != null) {
+				index.put(e, e);
+			}
 			return true;
 		}
 	}
@@ -94,6 +106,9 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 */
 	public void clear() {
 		sortedlist.clear();
+		if (index != null) {
+			index.clear();
+		}
 	}
 	
 	/*
@@ -101,6 +116,9 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @see java.util.Set#contains(java.lang.Object)
 	 */
 	public boolean contains(Object e) {
+		if (index != null) {
+			return index.containsKey(e);
+		}
 		return sortedlist.contains(e);
 	}
 	
@@ -109,6 +127,9 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @see java.util.Set#containsAll(java.util.Collection)
 	 */
 	public boolean containsAll(Collection<?> e) {
+		if (index != null) {
+			return index.keySet().containsAll(e);
+		}
 		return sortedlist.containsAll(e);
 	}
 	
@@ -125,6 +146,27 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @see java.util.Set#iterator()
 	 */
 	public Iterator<K> iterator() {
+		if (index != null) {
+			// Removing through the iterator must also remove from the index
+			final Iterator<K> it = sortedlist.iterator();
+			return new Iterator<K>() {
+				K last;
+				
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+				
+				public K next() {
+					last = it.next();
+					return last;
+				}
+				
+				public void remove() {
+					it.remove();
+					index.remove(last);
+				}
+			};
+		}
 		return sortedlist.iterator();
 	}
 	
@@ -135,6 +177,12 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @return
 	 */
 	private K insert(K t) {
+		if (index != null) {
+			int i = lowerBound(t);
+			K element_to_return = i < sortedlist.size() && t.compareTo(sortedlist.get(i)) == 0 ? sortedlist.get(i) : null;
+			sortedlist.add(i, t);
+			return element_to_return;
+		}
 		//fatma changing this to move the addition
 		// outside - hopefully avoid concurrent comodification errors
 		int index_to_add_at = -1;
@@ -188,6 +236,14 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @see java.util.Set#remove(java.lang.Object)
 	 */
 	public boolean remove(Object o) {
+		if (index != null) {
+			K element = index.remove(o);
+			if (element == null) {
+				return false;
+			}
+			sortedlist.remove(position(element));
+			return true;
+		}
 		return sortedlist.remove(o);
 	}
 
@@ -196,7 +252,11 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @see java.util.Set#removeAll(java.util.Collection)
 	 */
 	public boolean removeAll(Collection<?> c) {
-		return sortedlist.removeAll(c);
+		boolean b = sortedlist.removeAll(c);
+		if (b && index != null) {
+			reindex();
+		}
+		return b;
 	}
 	
 	/*
@@ -204,7 +264,61 @@ public class VerifySet<K extends Comparable<? super K>> implements SortedSet<K>
 	 * @see java.util.Set#retainAll(java.util.Collection)
 	 */
 	public boolean retainAll(Collection<?> c) {
-		return sortedlist.retainAll(c);
+		boolean b = sortedlist.retainAll(c);
+		if (b && index != null) {
+			reindex();
+		}
+		return b;
+	}
+	
+	/**
+	 * Rebuild the index from the sorted list.
+	 */
+	private void reindex() {
+		index.clear();
+		for (K e: sortedlist) {
+			index.put(e, e);
+		}
+	}
+	
+	/**
+	 * The position in the sorted list of an element of this set.
+	 * @param element
+	 * @return
+	 */
+	private int position(K element) {
+		// Elements which compare as equal are next to each other, so look for this one among them
+		for (int i = lowerBound(element); i < sortedlist.size() && element.compareTo(sortedlist.get(i)) == 0; i++) {
+			if (sortedlist.get(i) == element) {
+				return i;
+			}
+		}
+		for (int i = 0; i < sortedlist.size(); i++) {
+			if (sortedlist.get(i) == element) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * The first position in the sorted list whose element is not less than an element,
+	 * which is where that element is inserted.
+	 * @param e
+	 * @return
+	 */
+	private int lowerBound(K e) {
+		int low = 0;
+		int high = sortedlist.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (e.compareTo(sortedlist.get(mid)) > 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
 	}
 	
 	/*
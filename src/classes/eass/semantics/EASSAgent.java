@@ -172,6 +172,7 @@ public class EASSAgent extends AILAgent {
 	 */
 	@Override
 	public void configure(AILConfig config) {
+		super.configure(config);
 		if (config.containsKey("ail.store_sent_messages")) {
 			String store_sent_messages = config.getProperty("ail.store_sent_messages");
 			if (store_sent_messages.equals("true")) {
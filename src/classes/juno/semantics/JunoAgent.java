@@ -525,6 +525,7 @@ public class JunoAgent extends AILAgent {
 	 */
 	@Override
 	public void configure(AILConfig c) {
+		super.configure(c);
 		if (c.containsKey("hera.principle")) {
 			Object principle = c.get("hera.principle");
 			String principle_string = principle.toString();
@@ -0,0 +1,177 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A* search over a grounded planning domain. By default it is guided by the admissible max heuristic and
+ * finds shortest plans; weighted A* multiplies an estimate such as the relaxed plan heuristic by a weight, trading
+ * plan length for far fewer expansions.
+ */
+public class AStarSearch implements RecoveryPlanner {
+    private final Heuristic heuristic;
+    private final int weight;
+
+    /**
+     * Creates an optimal A* search using the max heuristic.
+     */
+    public AStarSearch() {
+        this(Heuristic.MAX, 1);
+    }
+
+    /**
+     * Creates a weighted A* search.
+     *
+     * @param heuristic The heuristic.
+     * @param weight The factor applied to the heuristic, 1 for plain A*.
+     */
+    public AStarSearch(Heuristic heuristic, int weight) {
+        this.heuristic = heuristic;
+        this.weight = weight;
+    }
+
+    @Override
+    public List<GroundAction> search(PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline, SearchStatistics statistics) {
+        return search(domain, init, goal, deadline, statistics, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for a plan shorter than a bound, such as the best plan found so far.
+     *
+     * @param domain The grounded planning domain.
+     * @param init The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param deadline The time by which the search must return.
+     * @param statistics Receives the number of nodes expanded and generated by the search.
+     * @param bound The number of actions plans must stay below.
+     * @return The actions of the plan, or null if there is no such plan or the deadline passed.
+     */
+    List<GroundAction> search(PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline, SearchStatistics statistics, int bound) {
+        List<GroundAction> actions = domain.getActions();
+        PriorityQueue<Node> open = new PriorityQueue<>(new Comparator<Node>() {
+            public int compare(Node a, Node b) {
+                int f = Long.compare(priority(a.cost, a.heuristic), priority(b.cost, b.heuristic));
+                return f != 0 ? f : Integer.compare(a.heuristic, b.heuristic);
+            }
+        });
+        Map<BitSet, Integer> bestCost = new HashMap<>();
+
+        int h = heuristic.estimate(actions, domain.numberOfFacts(), init, goal);
+        if (h == Integer.MAX_VALUE) {
+            return null;
+        }
+        open.add(new Node(init, null, null, 0, h));
+        bestCost.put(init, 0);
+
+        while (!open.isEmpty()) {
+            Node node = open.poll();
+            if (node.cost > bestCost.get(node.state)) {
+                continue; // A cheaper path to this state was found after it was queued
+            }
+            if (satisfies(node.state, goal)) {
+                return extract(node);
+            }
+            if (deadline.expired()) {
+                return null;
+            }
+            statistics.expanded();
+            for (GroundAction action : actions) {
+                if (!action.isApplicable(node.state)) {
+                    continue;
+                }
+                BitSet successor = action.apply(node.state);
+                statistics.generated();
+                int cost = node.cost + 1;
+                Integer known = bestCost.get(successor);
+                if (known != null && known <= cost) {
+                    continue;
+                }
+                int estimate = heuristic.estimate(actions, domain.numberOfFacts(), successor, goal);
+                if (estimate == Integer.MAX_VALUE || cost + lowerBound(estimate) >= bound) {
+                    continue;
+                }
+                bestCost.put(successor, cost);
+                open.add(new Node(successor, node, action, cost, estimate));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the fewest actions which may still be needed, given the heuristic estimate. Only the max
+     * heuristic never overestimates; with any heuristic, a state whose estimate is not 0 is not a goal state.
+     *
+     * @param estimate The heuristic estimate.
+     * @return The lower bound.
+     */
+    private int lowerBound(int estimate) {
+        return heuristic == Heuristic.MAX ? estimate : Math.min(estimate, 1);
+    }
+
+    /**
+     * Orders the open list; nodes with lower values are expanded first.
+     *
+     * @param cost The number of actions leading to the node.
+     * @param heuristic The estimated number of actions still needed.
+     * @return The priority of the node.
+     */
+    protected long priority(int cost, int heuristic) {
+        return cost + (long) weight * heuristic;
+    }
+
+    /**
+     * Checks whether a state contains all the facts of a goal.
+     *
+     * @param state The set of facts true in the state.
+     * @param goal The set of facts to achieve.
+     * @return True if the goal holds in the state, otherwise false.
+     */
+    static boolean satisfies(BitSet state, BitSet goal) {
+        for (int f = goal.nextSetBit(0); f >= 0; f = goal.nextSetBit(f + 1)) {
+            if (!state.get(f)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Follows the parent links of a goal node back to the initial state.
+     *
+     * @param node The goal node.
+     * @return The actions leading to the node, in order.
+     */
+    static List<GroundAction> extract(Node node) {
+        List<GroundAction> plan = new ArrayList<>();
+        for (Node n = node; n.action != null; n = n.parent) {
+            plan.add(n.action);
+        }
+        Collections.reverse(plan);
+        return plan;
+    }
+
+    /**
+     * A search node: a state together with the path used to reach it.
+     */
+    static class Node {
+        final BitSet state;
+        final Node parent;
+        final GroundAction action;
+        final int cost;
+        final int heuristic;
+
+        Node(BitSet state, Node parent, GroundAction action, int cost, int heuristic) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.cost = cost;
+            this.heuristic = heuristic;
+        }
+    }
+}
@@ -3,10 +3,14 @@ package gwendolen.project;
 import ail.semantics.AILAgent;
 import ail.syntax.BeliefBase;
 import ail.syntax.Literal;
-import ail.syntax.PredicateTerm;
+import ail.syntax.Predicate;
+import ail.syntax.Term;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -16,9 +20,8 @@ public class ActionClass {
     // Initialise Key Variables
     BeliefBase bb;
     boolean recoveryRequired;
-    List<Literal> predicate;
-    List<Literal> beliefsToAdd;
-    List<Literal> beliefsToDelete;
+    // Arguments of the action being started
+    List<Term> actionArgs;
 
     /**
      * Choice of Planner: Offline (1) or Online (2)
@@ -29,83 +32,83 @@ public class ActionClass {
     private Logger logger = Logger.getLogger("t1."+"Env");
     // Logger for recovery logging
     private Logger recoveryLogger = Logger.getLogger("t1."+"Recovery");
-    Literal hasMoneyLiteral = new Literal("hasMoney");
-    Literal hasPhoneLiteral = new Literal("hasPhone");
-    Literal parentsHappyLiteral = new Literal("parentsHappy");
-    Literal onPhoneLiteral = new Literal("onPhone");
-    Literal messageSentLiteral = new Literal("messageSent");
-    Literal motivatedLiteral = new Literal("motivated");
-    Literal hasCarLiteral = new Literal("hasCar");
-    Literal hungryLiteral = new Literal("hungry");
-    Literal atGymLiteral = new Literal("atGym");
-    Literal happyLiteral = new Literal("happy");
-    Literal inCarLiteral = new Literal("inCar");
-    Literal atHomeLiteral = new Literal("atHome");
-    Literal bossHappyLiteral = new Literal("bossHappy");
-    Literal tiredLiteral = new Literal("tired");
-    Literal atWorkLiteral = new Literal("atWork");
 
     /**
      * Selects and executes the corresponding action.
      * @param ag The agent performing the action.
-     * @param action The name of the action to execute.
+     * @param action The name of the action to execute, followed by its arguments separated by spaces as in
+     *               the steps of a plan.
      * @return True if the action was executed successfully, otherwise false.
      */
     public boolean startAction(AILAgent ag, String action) {
-        predicate = new ArrayList<>();
-        beliefsToAdd = new ArrayList<>();
-        beliefsToDelete = new ArrayList<>();
-
-        System.out.println("["+ag.getAgName()+"]"+" executing: "+action);
-
-        if (action.equals("buyphone")) {
-            boolean success = buyPhone(ag, action);
-            if(success) {return true;} else {return false;}
-        }
-
-        if (action.equals("dochores")) {
-            boolean success = doChores(ag, action);
-            if(success) {return true;} else {return false;}
+        int space = action.indexOf(' ');
+        if (space < 0) {
+            return startAction(ag, action, null);
         }
-
-        if (action.equals("earnsalary")) {
-            boolean success = earnSalary(ag, action);
-            if(success) {return true;} else {return false;}
-        }
-
-        if (action.equals("usephone")) {
-            boolean success = usePhone(ag, action);
-            if(success) {return true;} else {return false;}
+        List<Term> args = new ArrayList<>();
+        for (String arg : action.substring(space + 1).split(" ")) {
+            args.add(new Predicate(arg));
         }
+        return startAction(ag, action.substring(0, space), args);
+    }
 
-        if (action.equals("textfriend")) {
-            boolean success = textFriend(ag, action);
-            if(success) {return true;} else {return false;}
+    /**
+     * Executes a step of a recovery plan, recording its time and whether it succeeded.
+     * @param ag The agent performing the action.
+     * @param step The step, as produced by a planner.
+     * @return True if the action was executed successfully, otherwise false.
+     */
+    public boolean executeStep(AILAgent ag, String step) {
+        long started = System.nanoTime();
+        boolean success = startAction(ag, step.toLowerCase());
+        RecoveryTelemetry.record(RecoveryTelemetry.Phase.EXECUTION, System.nanoTime() - started);
+        RecoveryTelemetry.count(RecoveryTelemetry.Counter.STEPS);
+        if (!success) {
+            RecoveryTelemetry.count(RecoveryTelemetry.Counter.FAILED_STEPS);
         }
+        return success;
+    }
 
-        if (action.equals("gooffphone")) {
-            boolean success = goOffPhone(ag, action);
-            if(success) {return true;} else {return false;}
+    /**
+     * Selects and executes the corresponding action, as declared in the planning domain.
+     * @param ag The agent performing the action.
+     * @param action The name of the action to execute.
+     * @param args The arguments of the action, or null if it has none.
+     * @return True if the action was executed successfully, otherwise false.
+     */
+    public boolean startAction(AILAgent ag, String action, List<Term> args) {
+        String call = action;
+        if (args != null && !args.isEmpty()) {
+            String list = args.toString();
+            call = action + "(" + list.substring(1, list.length() - 1) + ")";
         }
-
-        if (action.equals("gotogym")) {
-            boolean success = goToGym(ag, action);
-            if(success) {return true;} else {return false;}
+        System.out.println("["+ag.getAgName()+"]"+" executing: "+call);
+
+        ActionSchema schema;
+        try {
+            schema = ActionRegistry.get(RunPlanner.domainFile()).lookup(action);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
         }
-
-        if (action.equals("getincar")) {
-            boolean success = getInCar(ag, action);
-            if(success) {return true;} else {return false;}
+        int arity = args == null ? 0 : args.size();
+        if (schema == null || schema.arity() != arity) {
+            System.out.println("Action not yet Implemented!");
+            return false;
         }
 
-        if (action.equals("gotowork")) {
-            boolean success = goToWork(ag, action);
-            if(success) {return true;} else {return false;}
+        actionArgs = args;
+        for (Literal belief : schema.ground(schema.getNegativePrecondition(), args)) {
+            if (ag.getBB().contains(belief) != null) {
+                System.out.println("Action not applicable while " + belief + " is believed");
+                return false;
+            }
         }
-
-        System.out.println("Action not yet Implemented!");
-
-        return false;
+        // Actions without parameters use the schema's literals directly
+        List<Literal> predicate = schema.ground(schema.getPrecondition(), args);
+        List<Literal> beliefsToAdd = schema.ground(schema.getAddEffects(), args);
+        List<Literal> beliefsToDelete = schema.ground(schema.getDeleteEffects(), args);
+        return runAction(ag, action, predicate, beliefsToAdd, beliefsToDelete);
     }
 
     /**
@@ -123,7 +126,7 @@ public class ActionClass {
 
         // No Predicate... add/del beliefs
         if (predicate == null) {
-                if(beliefsToAdd != null) {for (Literal belief : beliefsToAdd) {ag.addBel(belief, AILAgent.refertoself());}}
+                if(beliefsToAdd != null) {for (Literal belief : beliefsToAdd) {ag.addBel(belief.clone(), AILAgent.refertoself());}}
                 if(beliefsToDelete != null) {for (Literal belief : beliefsToDelete) {ag.delBel(belief);}}
                 return true; // Ran action successfully
         }
@@ -134,7 +137,7 @@ public class ActionClass {
 
         // If all predicates in bb add/del bels...
         if (allBelsPresent) { // Pre-Condition
-                if(beliefsToAdd != null) {for (Literal belief : beliefsToAdd) {ag.addBel(belief, AILAgent.refertoself());}}
+                if(beliefsToAdd != null) {for (Literal belief : beliefsToAdd) {ag.addBel(belief.clone(), AILAgent.refertoself());}}
                 if(beliefsToDelete != null) {for (Literal belief : beliefsToDelete) {ag.delBel(belief);}}
                 return true; // Ran action successfully
         } else {
@@ -142,7 +145,14 @@ public class ActionClass {
         }
 
         if(recoveryRequired) { // Extract Knowledge for Failure Recovery...
-            return recoveryOperation(ag, action, predicate);
+            String previous = RecoveryTelemetry.enter(ag.getAgName());
+            boolean recovered = false;
+            try {
+                recovered = recoveryOperation(ag, action, predicate);
+                return recovered;
+            } finally {
+                RecoveryTelemetry.leave(previous, recovered);
+            }
         }
 
         return false; // failed to runAction successfully
@@ -157,9 +167,50 @@ public class ActionClass {
      * @return True if the recovery operation succeeds, otherwise false.
      */
     private boolean recoveryOperation(AILAgent ag, String action, List<Literal> predicates) {
-        // Extract Beliefs, Find which predicates are not in bb...
-        List<String> beliefs = extractBeliefs(ag);
-        List<String> goalStates = findPredicates(beliefs, predicates);
+        // Actions run during recovery replace the arguments of the original action
+        List<Term> args = actionArgs;
+        if (RunPlanner.isLifted()) {
+            // Parameterised domains are planned over their schemas, with the objects the beliefs mention
+            LiftedDomain lifted;
+            try {
+                lifted = RunPlanner.liftedDomain();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            Set<String> liftedGoal = lifted.encodeGoal(predicates);
+            if (liftedGoal == null) {
+                System.out.println("The preconditions of " + action + " are not part of the planning domain");
+                return false;
+            }
+            if (!LiftedRecovery.recover(ag, this, lifted, liftedGoal, typeOfPlanning, action, "Action Predicate Failure")) {
+                return false;
+            }
+            return startAction(ag, action.toLowerCase(), args);
+        }
+        // Encode Beliefs, Find which predicates are not in bb...
+        StateEncoder encoder;
+        try {
+            encoder = RunPlanner.encoder();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        PlanningDomain domain = encoder.getDomain();
+        BitSet goal = encoder.encodeGoal(predicates);
+        if (goal == null) {
+            System.out.println("The preconditions of " + action + " are not part of the planning domain");
+            return false;
+        }
+        if (RunPlanner.isHierarchical()) {
+            // Preconditions which are goals of the agent's plans are reached the way those plans reach them
+            if (!HierarchicalRecovery.establish(ag, this, encoder, goal, typeOfPlanning, action, "Action Predicate Failure")) {
+                return false;
+            }
+            return startAction(ag, action.toLowerCase(), args);
+        }
+        BitSet state = encoder.encode(ag.getBB());
+        BitSet goalStates = StateEncoder.missing(state, goal);
 
 
         // If Type of planning selected is invalid... Default to Online
@@ -170,62 +221,53 @@ public class ActionClass {
 
         // Offline Planning
         if (typeOfPlanning == 1) {
-            List<String> plan = RunPlanner.run(ag.getAgName(), beliefs, goalStates, 1);
-            System.out.println(plan);
-            assert plan != null;
+            Deadline deadline = RunPlanner.newDeadline();
+            List<String> plan = RunPlanner.run(ag.getAgName(), domain, state, goalStates, 1, deadline);
+            if (plan.isEmpty() && deadline.expired()) {
+                RunPlanner.reportNoPlanWithinBudget(ag, action);
+                return false;
+            }
             if(plan.isEmpty()){
-                System.out.println("An error occurred with the planner");
-                System.out.println("To debug: Go to RunPlanner.java and print the output.");
+                RunPlanner.reportNoPlan(ag, action);
                 return false;
             }
             System.out.println(ag.getAgName() + " --> Action Predicate Failure --> Running Action --> " + plan);
-            for (String act : plan) {
-                boolean success = startAction(ag, act.toLowerCase());
-                if (!success) {recoveryLogger.info("Recovery failure");}
+            // Each step is checked before it runs, and the plan repaired where it stops working
+            if (!RunPlanner.monitor(ag, encoder, 1).execute(ag, this, plan, goal, deadline)) {
+                // The preconditions still do not hold, so the action is not tried again
+                recoveryLogger.info("Recovery failure");
+                return false;
             }
         }
         // Online Planning
         if (typeOfPlanning==2) {
-            while (goalStates.size() != 0) {
-                List<String> plan = RunPlanner.run(ag.getAgName(), beliefs, goalStates, 2);
-                assert plan != null;
-                if (plan.isEmpty()) {
-                    System.out.println("An error occured with the planner");
-                    System.out.println("To debug: Go to RunPlanner.java and print the output.");
+            // The plan is kept between steps and only searched for again once it stops working
+            IncrementalReplanner replanner = RunPlanner.startOnlineRecovery(ag.getAgName(), domain);
+            while (!goalStates.isEmpty()) {
+                String step = replanner.nextStep(domain, state, goalStates);
+                if (step == null && replanner.isOutOfTime()) {
+                    RunPlanner.reportNoPlanWithinBudget(ag, action);
+                    return false;
+                }
+                if (step == null) {
+                    RunPlanner.reportNoPlan(ag, action);
                     return false;
                 }
-                System.out.println(ag.getAgName() + " --> Action Predicate Failure --> Running Action --> " + plan.get(0));
+                System.out.println(ag.getAgName() + " --> Action Predicate Failure --> Running Action --> " + step);
 
-                boolean success = startAction(ag, plan.get(0).toLowerCase()); //execute action .get(0) as simulating online using FF
+                boolean success = executeStep(ag, step); //execute one action at a time as simulating online
                 if (!success) {
                     recoveryLogger.info("Recovery failure");
                 }
-                beliefs = extractBeliefs(ag); //Check env again
-                goalStates = findPredicates(beliefs, predicates); //Recheck
+                state = encoder.encode(ag.getBB()); //Check env again
+                goalStates = StateEncoder.missing(state, goal); //Recheck
             }
         }
         // Execute Original Action
-        boolean success = startAction(ag, action.toLowerCase());
+        boolean success = startAction(ag, action.toLowerCase(), args);
         if (success) {return true;}else {return false;}
     }
 
-    /**
-     * Checks which predicates are present in the belief base.
-     * @param beliefs The list of beliefs.
-     * @param predicates The list of predicates to check.
-     * @return The list of predicates that are missing from the belief base.
-     */
-    private static List<String> findPredicates(List<String> beliefs, List<Literal> predicates) {
-        List<String> missingPredicates = new ArrayList<>();
-        for (Literal pred : predicates) {
-            String tempPred = pred.toString();
-            tempPred = pred.toString().replaceAll("\\[source\\((self|percepts)\\)]", "");
-            if (!beliefs.contains(tempPred)) {
-                missingPredicates.add(tempPred);
-            }
-        }
-        return missingPredicates;
-    }
     /**
      * Checks if all predicates are present in the belief base.
      * @param beliefBase The belief base to check.
@@ -240,106 +282,4 @@ public class ActionClass {
         }
         return true; // If all beliefs are present, return true
     }
-
-    /**
-     * Extracts beliefs from the agent's belief base, filtering out KQML beliefs and irrelevant sources.
-     * @param ag The agent.
-     * @return The list of filtered beliefs.
-     */
-    public List<String> extractBeliefs(AILAgent ag) {
-        List<String> filteredBeliefs = new ArrayList<>();
-        for (PredicateTerm b : ag.getBB()) {
-            String beliefString = b.toString();
-            beliefString = beliefString.replace("[source(self)]", "").replace("[source(percepts)]", "");
-            filteredBeliefs.add(beliefString.trim());
-        }
-        return filteredBeliefs;
-    }
-
-    private boolean doChores(AILAgent ag, String action) {
-        beliefsToAdd.add(hasMoneyLiteral);
-        beliefsToAdd.add(parentsHappyLiteral);
-
-        boolean success = runAction(ag, action, null, beliefsToAdd, null);
-        if(success) {return true;} else {return false;}
-    }
-    private boolean buyPhone(AILAgent ag, String action) {
-        predicate.add(hasMoneyLiteral);
-        beliefsToAdd.add(hasPhoneLiteral);
-        beliefsToDelete.add(hasMoneyLiteral);
-
-        boolean success = runAction(ag, action, predicate, beliefsToAdd, beliefsToDelete);
-        if(success) {return true;} else {return false;}
-    }
-
-    // Action 3
-    public boolean earnSalary(AILAgent ag, String action) {
-        beliefsToAdd.add(hasMoneyLiteral);
-
-        boolean success = runAction(ag, action, null, beliefsToAdd, null);
-        if(success) {return true;} else {return false;}
-    }
-
-    // Action 4
-    public boolean textFriend(AILAgent ag, String action) {
-        predicate.add(onPhoneLiteral);
-        predicate.add(hasPhoneLiteral);
-        beliefsToAdd.add(messageSentLiteral);
-
-        boolean success = runAction(ag, action, predicate, beliefsToAdd, null);
-        if(success) {return true;} else {return false;}
-    }
-
-    // Action 5
-    public boolean usePhone(AILAgent ag, String action) {
-        predicate.add(hasPhoneLiteral);
-        beliefsToAdd.add(onPhoneLiteral);
-
-        boolean success = runAction(ag, action, predicate, beliefsToAdd, null);
-        if(success) {return true;} else {return false;}
-    }
-
-    // Action 6
-    private boolean goOffPhone(AILAgent ag, String action) {
-        predicate.add(hasPhoneLiteral);
-        predicate.add(onPhoneLiteral);
-
-        beliefsToDelete.add(onPhoneLiteral);
-        boolean success = runAction(ag, action, predicate, null, beliefsToDelete);
-        if(success) {return true;} else {return false;}
-    }
-    // Action 7
-    private boolean goToGym(AILAgent ag, String action) {
-        predicate.add(motivatedLiteral);
-        predicate.add(inCarLiteral);
-
-        beliefsToAdd.add(atGymLiteral);
-        beliefsToAdd.add(hungryLiteral);
-        beliefsToAdd.add(happyLiteral);
-
-        boolean success = runAction(ag, action, predicate, beliefsToAdd, null);
-        if(success) {return true;} else {return false;}
-    }
-    // Action 8
-    private boolean getInCar(AILAgent  ag, String action) {
-        predicate.add(hasCarLiteral);
-
-        beliefsToAdd.add(inCarLiteral);
-        beliefsToDelete.add(atHomeLiteral);
-
-        boolean success = runAction(ag, action, predicate, beliefsToAdd, beliefsToDelete);
-        if(success) {return true;} else {return false;}
-    }
-    // Action 9
-    private boolean goToWork(AILAgent ag, String action) {
-        predicate.add(inCarLiteral);
-
-        beliefsToAdd.add(atWorkLiteral);
-        beliefsToAdd.add(tiredLiteral);
-        beliefsToAdd.add(bossHappyLiteral);
-
-        Boolean success = runAction(ag, action, predicate, beliefsToAdd, null);
-        if(success) {return true;} else {return false;}
-    }
-
 }
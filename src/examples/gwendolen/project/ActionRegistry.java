@@ -0,0 +1,159 @@
+package gwendolen.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ail.syntax.Literal;
+import ail.syntax.Predicate;
+import ail.syntax.Term;
+import ail.syntax.VarTerm;
+import main.java.fr.uga.pddl4j.parser.Exp;
+import main.java.fr.uga.pddl4j.parser.Op;
+import main.java.fr.uga.pddl4j.parser.Symbol;
+import main.java.fr.uga.pddl4j.parser.TypedSymbol;
+
+/**
+ * The actions agents can execute, read from the action schemas of the planning domain so that the domain
+ * file is the only description of what each action needs and does.
+ * Every action gets an id when the domain is loaded and a lookup by name is a single hash lookup.
+ * Registries are rebuilt when the domain file changes.
+ */
+public class ActionRegistry {
+    private static final Map<String, ActionRegistry> registries = new ConcurrentHashMap<>();
+
+    private final PlanningDomain domain;
+    private final List<ActionSchema> actions = new ArrayList<>();
+    private final Map<String, ActionSchema> actionsByName = new HashMap<>();
+
+    /**
+     * Builds the registry for a domain.
+     *
+     * @param domain The grounded domain.
+     */
+    private ActionRegistry(PlanningDomain domain) {
+        this.domain = domain;
+        for (Op op : domain.getDomain().getOperators()) {
+            List<VarTerm> parameters = new ArrayList<>();
+            for (TypedSymbol parameter : op.getParameters()) {
+                parameters.add(variable(parameter.getImage()));
+            }
+            List<Literal> pre = new ArrayList<>();
+            List<Literal> negPre = new ArrayList<>();
+            List<Literal> add = new ArrayList<>();
+            List<Literal> del = new ArrayList<>();
+            literals(op.getPreconditions(), pre, negPre);
+            literals(op.getEffects(), add, del);
+
+            String name = op.getName().getImage().toLowerCase();
+            ActionSchema schema = new ActionSchema(actions.size(), name, parameters, pre, negPre, add, del);
+            actions.add(schema);
+            actionsByName.put(name, schema);
+        }
+    }
+
+    /**
+     * Returns the registry for a domain file, building it when the file is first used or has changed.
+     *
+     * @param domainFile The path of the domain file.
+     * @return The registry.
+     * @throws IOException If the file does not exist or cannot be parsed.
+     */
+    public static ActionRegistry get(String domainFile) throws IOException {
+        PlanningDomain domain = DomainCache.get(domainFile);
+        ActionRegistry registry = registries.get(domainFile);
+        if (registry == null || registry.domain != domain) {
+            registry = new ActionRegistry(domain);
+            registries.put(domainFile, registry);
+        }
+        return registry;
+    }
+
+    /**
+     * Finds an action by name.
+     *
+     * @param name The name of the action, in any case.
+     * @return The action, or null if the domain does not declare it.
+     */
+    public ActionSchema lookup(String name) {
+        ActionSchema schema = actionsByName.get(name);
+        return schema != null ? schema : actionsByName.get(name.toLowerCase());
+    }
+
+    /**
+     * Returns the id of an action.
+     *
+     * @param name The name of the action, in any case.
+     * @return The id, or -1 if the domain does not declare the action.
+     */
+    public int idOf(String name) {
+        ActionSchema schema = lookup(name);
+        return schema == null ? -1 : schema.getId();
+    }
+
+    public ActionSchema get(int id) {
+        return actions.get(id);
+    }
+
+    public List<ActionSchema> getActions() {
+        return actions;
+    }
+
+    /**
+     * Adds the atoms of a conjunction of literals to lists of positive and negated beliefs.
+     *
+     * @param exp The precondition or effect.
+     * @param positive The list receiving positive atoms.
+     * @param negative The list receiving negated atoms.
+     */
+    private void literals(Exp exp, List<Literal> positive, List<Literal> negative) {
+        switch (exp.getConnective()) {
+            case TRUE:
+                break;
+            case ATOM:
+                // The dummy predicate always holds in the problems given to planners, but is never believed
+                if (!exp.getAtom().get(0).getImage().equalsIgnoreCase(PDDLGenerator.DUMMY_PREDICATE)) {
+                    positive.add(literal(exp.getAtom()));
+                }
+                break;
+            case AND:
+                for (Exp child : exp.getChildren()) {
+                    literals(child, positive, negative);
+                }
+                break;
+            case NOT:
+                negative.add(literal(exp.getChildren().get(0).getAtom()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported expression: " + exp);
+        }
+    }
+
+    /**
+     * Converts a PDDL atom to a belief literal, spelt as in the domain file.
+     *
+     * @param atom The predicate symbol followed by its arguments.
+     * @return The literal, with a variable for each action parameter.
+     */
+    private Literal literal(List<Symbol> atom) {
+        Literal literal = new Literal(domain.getSpelling(atom.get(0).getImage()));
+        for (Symbol arg : atom.subList(1, atom.size())) {
+            Term term = arg.getImage().startsWith("?") ? variable(arg.getImage()) : new Predicate(domain.getSpelling(arg.getImage()));
+            literal.addTerm(term);
+        }
+        return literal;
+    }
+
+    /**
+     * Converts a PDDL variable such as ?item to an AIL variable.
+     *
+     * @param name The PDDL variable.
+     * @return The variable.
+     */
+    private static VarTerm variable(String name) {
+        return new VarTerm(name.substring(1).toUpperCase());
+    }
+}
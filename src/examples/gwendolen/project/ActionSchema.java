@@ -0,0 +1,104 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ail.syntax.Literal;
+import ail.syntax.Term;
+import ail.syntax.Unifier;
+import ail.syntax.VarTerm;
+
+/**
+ * An action agents can execute, as declared in the planning domain: its parameters, the beliefs it needs
+ * and the beliefs it adds and deletes. Parameters appear in the literals as variables.
+ */
+public class ActionSchema {
+    private final int id;
+    private final String name;
+    private final List<VarTerm> parameters;
+    private final List<Literal> precondition;
+    private final List<Literal> negativePrecondition;
+    private final List<Literal> addEffects;
+    private final List<Literal> deleteEffects;
+
+    /**
+     * Creates an action schema.
+     *
+     * @param id The id of the action in its registry.
+     * @param name The lower case name of the action.
+     * @param parameters The parameters of the action.
+     * @param precondition The beliefs which must hold for the action to be applicable.
+     * @param negativePrecondition The beliefs which must not hold for the action to be applicable.
+     * @param addEffects The beliefs added by the action.
+     * @param deleteEffects The beliefs deleted by the action.
+     */
+    public ActionSchema(int id, String name, List<VarTerm> parameters, List<Literal> precondition,
+                        List<Literal> negativePrecondition, List<Literal> addEffects, List<Literal> deleteEffects) {
+        this.id = id;
+        this.name = name;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.precondition = Collections.unmodifiableList(precondition);
+        this.negativePrecondition = Collections.unmodifiableList(negativePrecondition);
+        this.addEffects = Collections.unmodifiableList(addEffects);
+        this.deleteEffects = Collections.unmodifiableList(deleteEffects);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int arity() {
+        return parameters.size();
+    }
+
+    public List<Literal> getPrecondition() {
+        return precondition;
+    }
+
+    public List<Literal> getNegativePrecondition() {
+        return negativePrecondition;
+    }
+
+    public List<Literal> getAddEffects() {
+        return addEffects;
+    }
+
+    public List<Literal> getDeleteEffects() {
+        return deleteEffects;
+    }
+
+    /**
+     * Instantiates literals of the schema with the arguments of an action.
+     * The literals of an action without parameters are returned as they are, so they must not be modified.
+     *
+     * @param literals The precondition or effects of the schema.
+     * @param args The arguments, one per parameter.
+     * @return The ground literals.
+     */
+    public List<Literal> ground(List<Literal> literals, List<Term> args) {
+        if (parameters.isEmpty()) {
+            return literals;
+        }
+        Unifier u = new Unifier();
+        for (int i = 0; i < parameters.size(); i++) {
+            u.unifyTerms(parameters.get(i), args.get(i));
+        }
+        List<Literal> ground = new ArrayList<>(literals.size());
+        for (Literal literal : literals) {
+            Literal l = literal.clone();
+            l.apply(u);
+            ground.add(l);
+        }
+        return ground;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,48 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Anytime planning for recoveries with a deadline. A first plan comes from greedy best first search, which is
+ * usually found almost at once; weighted A* with falling weights then looks for shorter plans, each search
+ * bounded by the best plan so far, ending with optimal A*. Whatever the best plan is when the deadline passes
+ * is returned.
+ */
+public class AnytimeSearch implements RecoveryPlanner {
+    // Weights of the searches run after the first plan is found, the last one being optimal
+    private static final int[] WEIGHTS = {5, 3, 2};
+
+    @Override
+    public List<GroundAction> search(PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline, SearchStatistics statistics) {
+        List<GroundAction> best = new GreedyBestFirstSearch().search(domain, init, goal, deadline, statistics);
+        if (best == null) {
+            return null; // Either there is no plan or there was no time to find one
+        }
+        for (int weight : WEIGHTS) {
+            best = improve(new AStarSearch(Heuristic.RELAXED_PLAN, weight), best, domain, init, goal, deadline, statistics);
+        }
+        return improve(new AStarSearch(), best, domain, init, goal, deadline, statistics);
+    }
+
+    /**
+     * Looks for a plan shorter than the best one so far.
+     *
+     * @param search The search to run.
+     * @param best The best plan so far.
+     * @param domain The grounded planning domain.
+     * @param init The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param deadline The time by which the search must return.
+     * @param statistics Receives the number of nodes expanded and generated.
+     * @return The shorter plan, or the best plan so far if there is none or time ran out.
+     */
+    private static List<GroundAction> improve(AStarSearch search, List<GroundAction> best, PlanningDomain domain, BitSet init,
+                                              BitSet goal, Deadline deadline, SearchStatistics statistics) {
+        if (deadline.expired() || best.isEmpty()) {
+            return best;
+        }
+        List<GroundAction> plan = search.search(domain, init, goal, deadline, statistics, best.size());
+        return plan != null ? plan : best;
+    }
+}
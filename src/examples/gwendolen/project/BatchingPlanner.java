@@ -0,0 +1,275 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the problems of recoveries which start within a short window of each other and solves them
+ * together. When a failure cascades through several agents or intentions at once, the same problem often
+ * arrives many times: it is solved once and the plan handed to every agent which asked. Distinct problems of
+ * the same goal are solved one after another by a single thread, so that later ones can take their plans from
+ * the cache behind rather than searching the shared domain again, while problems of different goals are
+ * solved in parallel by the threads which asked for them.
+ * With no window, problems go straight to the planner behind.
+ */
+public class BatchingPlanner implements PlannerBackend {
+    private final PlannerBackend planner;
+    private volatile long windowMillis;
+    // The batch still taking problems, guarded by this
+    private Batch open;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * Creates a batching front end for a planner.
+     *
+     * @param planner The planner solving the problems of each batch, normally with a cache.
+     * @param windowMillis How long a batch takes problems after its first one arrives, or 0 for no batching.
+     */
+    public BatchingPlanner(PlannerBackend planner, long windowMillis) {
+        this.planner = planner;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Changes how long batches take problems.
+     *
+     * @param windowMillis The window in milliseconds, or 0 for no batching.
+     */
+    public void setWindow(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+        long window = windowMillis;
+        if (window <= 0) {
+            return planner.plan(domain, state, goal, deadline);
+        }
+        requests.incrementAndGet();
+        Batch batch;
+        Problem problem;
+        boolean leader = false;
+        synchronized (this) {
+            if (open == null) {
+                open = new Batch();
+                leader = true;
+            }
+            batch = open;
+            // Added while the batch is still open, so the problem is never missed when it closes
+            problem = batch.add(domain, state, goal, deadline);
+        }
+
+        if (leader) {
+            // The first problem waits for others to join, but never beyond its own deadline
+            sleep(deadline.isBounded() ? Math.min(window, deadline.remainingMillis()) : window);
+            synchronized (this) {
+                open = null;
+            }
+            batches.incrementAndGet();
+            batch.close();
+        } else {
+            awaitClosed(batch);
+        }
+
+        // The first thread to ask for a goal solves all the problems of that goal in the batch
+        List<Problem> group = batch.groupOwnedBy(problem);
+        if (group != null) {
+            for (Problem member : group) {
+                member.solution.run();
+            }
+        }
+        return problem.await(deadline);
+    }
+
+    /**
+     * Returns the number of problems which went through a batch.
+     *
+     * @return The number of problems.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of batches solved.
+     *
+     * @return The number of batches.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Returns the number of problems answered with the plan of an identical problem in the same batch.
+     *
+     * @return The number of shared problems.
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Waits for a batch to stop taking problems. Interrupts are kept for later, as the thread may have to solve
+     * the problems of other agents.
+     */
+    private static void awaitClosed(Batch batch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                batch.closed.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The problems arriving within one window, grouped by domain and goal.
+     */
+    private class Batch {
+        final CountDownLatch closed = new CountDownLatch(1);
+        // Distinct problems, in the order they arrived
+        final Map<Key, Problem> problems = new LinkedHashMap<>();
+        // Problems of each domain and goal, by the problem which asked first
+        final Map<Problem, List<Problem>> groups = new LinkedHashMap<>();
+
+        /**
+         * Adds a problem, or finds the identical problem already in the batch.
+         */
+        synchronized Problem add(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+            Key key = new Key(domain, state, goal);
+            Problem problem = problems.get(key);
+            if (problem != null) {
+                shared.incrementAndGet();
+                return problem;
+            }
+            // Keys keep their own copies, as callers may go on changing their sets
+            BitSet stateCopy = (BitSet) state.clone();
+            BitSet goalCopy = (BitSet) goal.clone();
+            problem = new Problem(domain, stateCopy, goalCopy, deadline);
+            problems.put(new Key(domain, stateCopy, goalCopy), problem);
+            return problem;
+        }
+
+        /**
+         * Stops the batch taking problems and groups them by domain and goal.
+         */
+        void close() {
+            synchronized (this) {
+                Map<Key, Problem> owners = new LinkedHashMap<>();
+                for (Problem problem : problems.values()) {
+                    Key goal = new Key(problem.domain, null, problem.goal);
+                    Problem owner = owners.get(goal);
+                    if (owner == null) {
+                        owners.put(goal, problem);
+                        groups.put(problem, new ArrayList<Problem>());
+                        owner = problem;
+                    }
+                    groups.get(owner).add(problem);
+                }
+            }
+            closed.countDown();
+        }
+
+        /**
+         * Hands the group of a problem to the thread asking, if the problem leads its group and no thread has
+         * taken the group yet.
+         */
+        synchronized List<Problem> groupOwnedBy(Problem problem) {
+            return groups.remove(problem);
+        }
+    }
+
+    /**
+     * A distinct problem of a batch and the plan it will be given.
+     */
+    private class Problem {
+        final PlanningDomain domain;
+        final BitSet goal;
+        final FutureTask<List<String>> solution;
+
+        Problem(final PlanningDomain domain, final BitSet state, final BitSet goal, final Deadline deadline) {
+            this.domain = domain;
+            this.goal = goal;
+            this.solution = new FutureTask<>(new Callable<List<String>>() {
+                public List<String> call() {
+                    return planner.plan(domain, state, goal, deadline);
+                }
+            });
+        }
+
+        /**
+         * Waits for the plan, for at most as long as the deadline of the agent asking allows.
+         */
+        List<String> await(Deadline deadline) {
+            try {
+                List<String> plan = deadline.isBounded()
+                        ? solution.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                        : solution.get();
+                // Every agent may change its own copy of the plan
+                return plan == null ? null : new ArrayList<>(plan);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } catch (TimeoutException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Identifies a problem, or with no state the goal of a group. The domain is compared by identity.
+     */
+    private static class Key {
+        final PlanningDomain domain;
+        final BitSet state;
+        final BitSet goal;
+
+        Key(PlanningDomain domain, BitSet state, BitSet goal) {
+            this.domain = domain;
+            this.state = state;
+            this.goal = goal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return domain == other.domain && (state == null ? other.state == null : state.equals(other.state))
+                    && goal.equals(other.goal);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(domain) + (state == null ? 0 : state.hashCode())) + goal.hashCode();
+        }
+    }
+}
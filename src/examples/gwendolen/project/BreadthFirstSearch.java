@@ -0,0 +1,52 @@
+package gwendolen.project;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Uninformed breadth first search. It computes no heuristic at all, which makes it the cheapest engine for
+ * domains with only a handful of reachable states, and its plans are always the shortest.
+ */
+public class BreadthFirstSearch implements RecoveryPlanner {
+
+    @Override
+    public List<GroundAction> search(PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline, SearchStatistics statistics) {
+        AStarSearch.Node root = new AStarSearch.Node(init, null, null, 0, 0);
+        if (AStarSearch.satisfies(init, goal)) {
+            return AStarSearch.extract(root);
+        }
+        Queue<AStarSearch.Node> open = new ArrayDeque<>();
+        Set<BitSet> seen = new HashSet<>();
+        open.add(root);
+        seen.add(init);
+
+        while (!open.isEmpty()) {
+            if (deadline.expired()) {
+                return null;
+            }
+            AStarSearch.Node node = open.poll();
+            statistics.expanded();
+            for (GroundAction action : domain.getActions()) {
+                if (!action.isApplicable(node.state)) {
+                    continue;
+                }
+                BitSet successor = action.apply(node.state);
+                statistics.generated();
+                if (!seen.add(successor)) {
+                    continue;
+                }
+                AStarSearch.Node child = new AStarSearch.Node(successor, node, action, node.cost + 1, 0);
+                // Every node of the next layer is further away, so the goal can be tested on generation
+                if (AStarSearch.satisfies(successor, goal)) {
+                    return AStarSearch.extract(child);
+                }
+                open.add(child);
+            }
+        }
+        return null;
+    }
+}
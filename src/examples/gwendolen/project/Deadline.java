@@ -0,0 +1,61 @@
+package gwendolen.project;
+
+/**
+ * The point in time by which a recovery must have its plan. Searches check it as they go and stop once it
+ * has passed, so a hard problem can never hold up an agent for longer than its budget.
+ */
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long expiresAt;
+    private final boolean bounded;
+
+    private Deadline(long expiresAt, boolean bounded) {
+        this.expiresAt = expiresAt;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Returns a deadline which never passes.
+     *
+     * @return The unbounded deadline.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * Creates a deadline some time from now.
+     *
+     * @param millis The budget in milliseconds, or 0 or less for no deadline.
+     * @return The deadline.
+     */
+    public static Deadline in(long millis) {
+        return millis > 0 ? new Deadline(System.nanoTime() + millis * 1000000L, true) : NONE;
+    }
+
+    /**
+     * Checks whether the deadline has passed.
+     *
+     * @return True if there is no time left, otherwise false.
+     */
+    public boolean expired() {
+        return bounded && System.nanoTime() - expiresAt >= 0;
+    }
+
+    /**
+     * Returns the time left.
+     *
+     * @return The time left in milliseconds, 0 if the deadline has passed, or Long.MAX_VALUE if it never will.
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (expiresAt - System.nanoTime()) / 1000000L);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+}
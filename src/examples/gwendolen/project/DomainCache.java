@@ -0,0 +1,112 @@
+package gwendolen.project;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import main.java.fr.uga.pddl4j.parser.Parser;
+
+/**
+ * Keeps planning domains parsed and grounded once per domain file, shared by all agents.
+ * Entries are keyed by the file path and reloaded when the file's modification time changes.
+ */
+public class DomainCache {
+    // Names as they may appear in a domain file, used to recover the case the parser discards
+    private static final Pattern NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_-]*");
+
+    private static final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the grounded domain for a domain file, parsing and grounding it on first use.
+     *
+     * @param path The path of the domain file.
+     * @return The grounded domain.
+     * @throws IOException If the file does not exist or cannot be parsed.
+     */
+    public static PlanningDomain get(String path) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) {
+            throw new FileNotFoundException("Domain file does not exist: " + path);
+        }
+        long lastModified = file.lastModified();
+        Entry entry = cache.get(path);
+        if (entry != null && entry.lastModified == lastModified) {
+            return entry.domain;
+        }
+
+        // The PDDL4J parser is not known to be thread safe, so domains are loaded one at a time
+        synchronized (DomainCache.class) {
+            entry = cache.get(path);
+            if (entry == null || entry.lastModified != lastModified) {
+                entry = new Entry(lastModified, load(path));
+                cache.put(path, entry);
+            }
+            return entry.domain;
+        }
+    }
+
+    /**
+     * Removes all cached domains.
+     */
+    public static void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Parses and grounds a domain file.
+     *
+     * @param path The path of the domain file.
+     * @return The grounded domain.
+     * @throws IOException If the file cannot be parsed.
+     */
+    private static PlanningDomain load(String path) throws IOException {
+        Parser parser = new Parser();
+        parser.parseDomain(path);
+        if (!parser.getErrorManager().isEmpty()) {
+            parser.getErrorManager().printAll();
+            throw new IOException("Errors parsing domain file: " + path);
+        }
+        return new PlanningDomain(parser.getDomain(), spellings(path));
+    }
+
+    /**
+     * Reads the names used in a domain file in their original case.
+     *
+     * @param path The path of the domain file.
+     * @return The first spelling of each name, keyed by its lower case form.
+     * @throws IOException If the file cannot be read.
+     */
+    private static Map<String, String> spellings(String path) throws IOException {
+        Map<String, String> spellings = new HashMap<>();
+        String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+        Matcher matcher = NAME.matcher(text);
+        while (matcher.find()) {
+            String name = matcher.group();
+            if (!spellings.containsKey(name.toLowerCase())) {
+                spellings.put(name.toLowerCase(), name);
+            }
+        }
+        return spellings;
+    }
+
+    /**
+     * A cached domain along with the modification time of the file it came from.
+     */
+    private static class Entry {
+        final long lastModified;
+        final PlanningDomain domain;
+
+        Entry(long lastModified, PlanningDomain domain) {
+            this.lastModified = lastModified;
+            this.domain = domain;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package gwendolen.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Enforced hill climbing, the first search FF tries. From the current state it searches breadth first for
+ * any state with a better relaxed plan estimate and commits to the path found, never going back. It is very
+ * fast when the heuristic is good; if it runs into a dead end it falls back to greedy best first search from
+ * the initial state, as FF does.
+ */
+public class EnforcedHillClimbing implements RecoveryPlanner {
+    private final RecoveryPlanner fallback = new GreedyBestFirstSearch();
+
+    @Override
+    public List<GroundAction> search(PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline, SearchStatistics statistics) {
+        List<GroundAction> actions = domain.getActions();
+        List<GroundAction> plan = new ArrayList<>();
+        BitSet current = init;
+        int h = Heuristic.RELAXED_PLAN.estimate(actions, domain.numberOfFacts(), current, goal);
+        if (h == Integer.MAX_VALUE) {
+            return null;
+        }
+
+        while (h > 0) {
+            AStarSearch.Node better = improve(domain, current, goal, h, deadline, statistics);
+            if (better == null) {
+                return deadline.expired() ? null : fallback.search(domain, init, goal, deadline, statistics);
+            }
+            plan.addAll(AStarSearch.extract(better));
+            current = better.state;
+            h = better.heuristic;
+        }
+        return plan;
+    }
+
+    /**
+     * Searches breadth first for the closest state with a lower estimate than the current one.
+     *
+     * @param domain The grounded planning domain.
+     * @param state The current state.
+     * @param goal The set of facts to achieve.
+     * @param h The estimate of the current state.
+     * @param deadline The time by which the search must return.
+     * @param statistics Receives the number of nodes expanded and generated.
+     * @return The node of the better state, whose path starts from the current state, or null if there is none
+     *         or the deadline passed.
+     */
+    private static AStarSearch.Node improve(PlanningDomain domain, BitSet state, BitSet goal, int h, Deadline deadline,
+                                            SearchStatistics statistics) {
+        List<GroundAction> actions = domain.getActions();
+        Queue<AStarSearch.Node> open = new ArrayDeque<>();
+        Set<BitSet> seen = new HashSet<>();
+        open.add(new AStarSearch.Node(state, null, null, 0, h));
+        seen.add(state);
+
+        while (!open.isEmpty() && !deadline.expired()) {
+            AStarSearch.Node node = open.poll();
+            statistics.expanded();
+            for (GroundAction action : actions) {
+                if (!action.isApplicable(node.state)) {
+                    continue;
+                }
+                BitSet successor = action.apply(node.state);
+                statistics.generated();
+                if (!seen.add(successor)) {
+                    continue;
+                }
+                int estimate = Heuristic.RELAXED_PLAN.estimate(actions, domain.numberOfFacts(), successor, goal);
+                if (estimate == Integer.MAX_VALUE) {
+                    continue; // A dead end in the relaxation is a dead end in the problem
+                }
+                AStarSearch.Node child = new AStarSearch.Node(successor, node, action, node.cost + 1, estimate);
+                if (estimate < h) {
+                    return child;
+                }
+                open.add(child);
+            }
+        }
+        return null;
+    }
+}
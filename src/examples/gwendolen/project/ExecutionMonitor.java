@@ -0,0 +1,199 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+import ail.semantics.AILAgent;
+
+/**
+ * Executes a plan step by step while following it on the encoded state. Each step is checked against what the
+ * agent believes before it is dispatched, and the state the plan expects is compared with the beliefs after
+ * each action. When they differ, for instance because an action failed or something else changed a belief, the
+ * rest of the plan is checked from the actual state; only if it no longer reaches the goal is the plan
+ * repaired, by planning just for what the rest of the plan needs. A whole new plan is made only when the rest
+ * cannot be kept.
+ */
+public class ExecutionMonitor {
+    // Repairs made before the monitor gives up on a plan
+    private static final int MAX_REPAIRS = 3;
+
+    private final StateEncoder encoder;
+    private final PlanningDomain domain;
+    private final PlannerBackend planner;
+    private int dispatched;
+    private int repairs;
+    private int replans;
+
+    // Logger for repairs
+    private Logger logger = Logger.getLogger("t1." + "Monitor");
+    // Logger for recovery logging
+    private Logger recoveryLogger = Logger.getLogger("t1."+"Recovery");
+
+    /**
+     * Creates a monitor.
+     *
+     * @param encoder The encoder of beliefs for the domain.
+     * @param planner The planner used for repairs.
+     */
+    public ExecutionMonitor(StateEncoder encoder, PlannerBackend planner) {
+        this.encoder = encoder;
+        this.domain = encoder.getDomain();
+        this.planner = planner;
+    }
+
+    /**
+     * Executes a plan, repairing it where it stops working.
+     *
+     * @param ag The agent.
+     * @param action Executes the steps.
+     * @param plan The steps of the plan, as produced by a planner.
+     * @param goal The set of facts the plan is for.
+     * @param deadline The time by which repairs must be found.
+     * @return True if the goal holds at the end, otherwise false.
+     */
+    public boolean execute(AILAgent ag, ActionClass action, List<String> plan, BitSet goal, Deadline deadline) {
+        List<GroundAction> steps = ground(plan);
+        if (steps == null) {
+            recoveryLogger.warning("The plan " + plan + " has steps which are not part of the planning domain");
+            return false;
+        }
+        // Nothing is expected yet, so the plan is checked against the beliefs before its first step
+        BitSet expected = null;
+        int next = 0;
+        int repairsLeft = MAX_REPAIRS;
+        while (true) {
+            BitSet actual = encoder.encode(ag.getBB());
+            if (!actual.equals(expected) && !reaches(steps, next, actual, goal)) {
+                if (repairsLeft-- == 0) {
+                    return false;
+                }
+                steps = repair(steps, next, actual, goal, deadline);
+                if (steps == null) {
+                    return false;
+                }
+                recoveryLogger.info(ag.getAgName() + " --> Plan diverged --> Running Action --> " + names(steps));
+                next = 0;
+            }
+            if (next == steps.size()) {
+                return StateEncoder.missing(actual, goal).isEmpty();
+            }
+            GroundAction step = steps.get(next++);
+            expected = step.apply(actual);
+            dispatched++;
+            if (!action.executeStep(ag, step.getName())) {
+                recoveryLogger.info("Recovery failure");
+            }
+        }
+    }
+
+    /**
+     * Repairs the rest of a plan: first by reaching, from the actual state, the facts the rest of the plan
+     * needs in order to reach the goal, and otherwise by planning for the goal again.
+     *
+     * @return The new steps, or null if no repair was found.
+     */
+    private List<GroundAction> repair(List<GroundAction> steps, int next, BitSet state, BitSet goal, Deadline deadline) {
+        BitSet needed = regress(steps, next, goal);
+        if (needed != null) {
+            List<GroundAction> prefix = ground(planner.plan(domain, state, StateEncoder.missing(state, needed), deadline));
+            if (prefix != null) {
+                List<GroundAction> repaired = new ArrayList<>(prefix);
+                repaired.addAll(steps.subList(next, steps.size()));
+                if (reaches(repaired, 0, state, goal)) {
+                    repairs++;
+                    RecoveryTelemetry.count(RecoveryTelemetry.Counter.REPAIRS);
+                    logger.fine("Repaired the plan by adding " + prefix + " before " + steps.subList(next, steps.size()));
+                    return repaired;
+                }
+            }
+        }
+        List<GroundAction> replanned = ground(planner.plan(domain, state, StateEncoder.missing(state, goal), deadline));
+        if (replanned != null && reaches(replanned, 0, state, goal)) {
+            replans++;
+            RecoveryTelemetry.count(RecoveryTelemetry.Counter.REPLANS);
+            logger.fine("Replaced the plan by " + replanned);
+            return replanned;
+        }
+        return null;
+    }
+
+    /**
+     * Computes the facts which must hold before some steps for them to be applicable in turn and reach a goal.
+     *
+     * @param steps The plan.
+     * @param from The first step to regress through.
+     * @param goal The set of facts to reach.
+     * @return The facts needed, or null if a step deletes a fact later steps or the goal need.
+     */
+    static BitSet regress(List<GroundAction> steps, int from, BitSet goal) {
+        BitSet needed = (BitSet) goal.clone();
+        for (int i = steps.size() - 1; i >= from; i--) {
+            GroundAction step = steps.get(i);
+            BitSet kept = (BitSet) needed.clone();
+            kept.andNot(step.getAddEffects());
+            if (kept.intersects(step.getDeleteEffects())) {
+                return null;
+            }
+            kept.or(step.getPrecondition());
+            needed = kept;
+        }
+        return needed;
+    }
+
+    /**
+     * Checks whether steps of a plan can be applied in turn from a state and reach a goal.
+     */
+    static boolean reaches(List<GroundAction> steps, int from, BitSet state, BitSet goal) {
+        for (int i = from; i < steps.size(); i++) {
+            if (!steps.get(i).isApplicable(state)) {
+                return false;
+            }
+            state = steps.get(i).apply(state);
+        }
+        return StateEncoder.missing(state, goal).isEmpty();
+    }
+
+    private List<GroundAction> ground(List<String> plan) {
+        if (plan == null) {
+            return null;
+        }
+        long started = System.nanoTime();
+        List<GroundAction> steps = new ArrayList<>();
+        for (String name : plan) {
+            GroundAction step = domain.getAction(name);
+            if (step == null) {
+                return null;
+            }
+            steps.add(step);
+        }
+        RecoveryTelemetry.record(RecoveryTelemetry.Phase.PARSING, System.nanoTime() - started);
+        return steps;
+    }
+
+    private static List<String> names(List<GroundAction> steps) {
+        List<String> names = new ArrayList<>();
+        for (GroundAction step : steps) {
+            names.add(step.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the number of actions dispatched to the agent.
+     *
+     * @return The number of steps executed, whether or not they succeeded.
+     */
+    public int getDispatched() {
+        return dispatched;
+    }
+
+    public int getRepairs() {
+        return repairs;
+    }
+
+    public int getReplans() {
+        return replans;
+    }
+}
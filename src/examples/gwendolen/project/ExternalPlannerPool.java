@@ -0,0 +1,277 @@
+package gwendolen.project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs an external planner such as FF, keeping a pool of planner processes started ahead of time.
+ * A waiting process has already loaded its domain and blocks reading the problem from its standard input, so a
+ * request only pays for streaming the problem and the search itself. Each process solves one problem: a
+ * replacement is started in the background as soon as one is taken, and a process which overruns the timeout
+ * is killed.
+ */
+public class ExternalPlannerPool implements PlannerBackend {
+    // Matches plan steps such as "step    0: DOCHORES" and "        1: MOVE ROOM1 ROOM2", with their arguments
+    private static final Pattern STEP = Pattern.compile("^\\s*(?:step)?\\s*\\d+:\\s+([A-Z][A-Z0-9_-]*(?:\\s+[A-Z0-9_-]+)*)\\s*$");
+    private static final String PLAN_FOUND = "found legal plan";
+    private static final String EMPTY_PLAN = "The empty plan solves it";
+
+    private static final Logger logger = Logger.getLogger("t1."+"Planner");
+
+    private final List<String> command;
+    private final long timeoutMillis;
+    private final BlockingQueue<Process> idle;
+    private final ExecutorService spawner = Executors.newSingleThreadExecutor(daemon("planner-spawner"));
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(daemon("planner-watchdog"));
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and starts its planner processes.
+     *
+     * @param command The planner command, which must load the same domain file as the problems' domain, read
+     *                the problem from standard input (for FF, "-f /dev/stdin"), and must not leave child
+     *                processes holding its output open.
+     * @param size The number of processes kept waiting.
+     * @param timeoutMillis How long a process may take to produce a plan before it is killed.
+     */
+    public ExternalPlannerPool(List<String> command, int size, long timeoutMillis) {
+        this.command = new ArrayList<>(command);
+        this.timeoutMillis = timeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            replenish();
+        }
+    }
+
+    @Override
+    public List<String> plan(final PlanningDomain domain, final BitSet state, final BitSet goal, Deadline deadline) {
+        return solve(new ProblemWriter() {
+            public void write(Writer in) throws IOException {
+                PDDLGenerator.write(in, domain, state, goal);
+            }
+        }, deadline);
+    }
+
+    /**
+     * Plans for a problem of a lifted domain, which the planner grounds over the objects the problem declares.
+     *
+     * @param domain The lifted domain, which must be the domain the planner processes load.
+     * @param state The facts true initially.
+     * @param goal The facts to achieve.
+     * @param deadline The time by which the plan is needed.
+     * @return The plan's actions, each followed by its arguments, or null if the planner found no plan in time.
+     */
+    public List<String> plan(final LiftedDomain domain, final Set<String> state, final Set<String> goal, Deadline deadline) {
+        return solve(new ProblemWriter() {
+            public void write(Writer in) throws IOException {
+                PDDLGenerator.write(in, domain, state, goal);
+            }
+        }, deadline);
+    }
+
+    /**
+     * Hands a problem to a waiting planner process and reads its plan.
+     *
+     * @param problem Writes the problem to the process.
+     * @param deadline The time by which the plan is needed.
+     * @return The plan, or null if the planner found no plan in time or the pool has been closed.
+     */
+    private List<String> solve(ProblemWriter problem, Deadline deadline) {
+        if (deadline.expired() || closed) {
+            return null;
+        }
+        // The process is killed at the recovery's deadline if that comes first
+        final long limit = Math.min(timeoutMillis, deadline.remainingMillis());
+        final Process process;
+        try {
+            process = take();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        replenish();
+
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> kill;
+        try {
+            kill = watchdog.schedule(new Runnable() {
+                public void run() {
+                    timedOut.set(true);
+                    process.destroyForcibly();
+                }
+            }, limit, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The pool was closed after the check above
+            process.destroyForcibly();
+            return null;
+        }
+
+        List<String> plan = null;
+        try {
+            long started = System.nanoTime();
+            try (Writer in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
+                problem.write(in);
+            }
+            long written = System.nanoTime();
+            RecoveryTelemetry.record(RecoveryTelemetry.Phase.ENCODING, written - started);
+            plan = readPlan(new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)), written);
+        } catch (IOException e) {
+            if (!timedOut.get()) {
+                e.printStackTrace();
+            }
+        } finally {
+            kill.cancel(false);
+            // The plan has been read, so anything still being printed is not needed
+            process.destroy();
+        }
+
+        if (timedOut.get()) {
+            logger.warning("Planner did not answer within " + limit + " ms");
+            return null;
+        }
+        return plan;
+    }
+
+    /**
+     * Writes a problem to the standard input of a planner process.
+     */
+    private interface ProblemWriter {
+        void write(Writer in) throws IOException;
+    }
+
+    /**
+     * Stops the pool, killing the processes which are still waiting for a problem.
+     */
+    public void close() {
+        closed = true;
+        spawner.shutdownNow();
+        watchdog.shutdownNow();
+        Process process;
+        while ((process = idle.poll()) != null) {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Reads the planner's output as it is produced, stopping at the end of the plan. The time spent matching
+     * lines is recorded as parsing, and the rest, which is mostly waiting for FF, as search.
+     *
+     * @param output The planner's output.
+     * @param started The time, from System.nanoTime, at which the planner was given the problem.
+     * @return The plan, an empty list if the goal already holds, or null if the output ended without a plan.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static List<String> readPlan(BufferedReader output, long started) throws IOException {
+        long parsing = 0;
+        try {
+            List<String> steps = new ArrayList<>();
+            boolean found = false;
+            String line;
+            while ((line = output.readLine()) != null) {
+                long read = System.nanoTime();
+                try {
+                    if (line.contains(EMPTY_PLAN)) {
+                        return steps;
+                    }
+                    if (!found) {
+                        found = line.contains(PLAN_FOUND);
+                        continue;
+                    }
+                    Matcher matcher = STEP.matcher(line);
+                    if (matcher.find()) {
+                        steps.add(matcher.group(1));
+                    } else if (!steps.isEmpty()) {
+                        return steps; // The plan ends at the first line which is not a step
+                    }
+                } finally {
+                    parsing += System.nanoTime() - read;
+                }
+            }
+            return found ? steps : null;
+        } finally {
+            RecoveryTelemetry.record(RecoveryTelemetry.Phase.SEARCH, System.nanoTime() - started - parsing);
+            RecoveryTelemetry.record(RecoveryTelemetry.Phase.PARSING, parsing);
+        }
+    }
+
+    /**
+     * Takes a waiting process, starting one if none is left.
+     *
+     * @return A process which has not been given a problem yet.
+     * @throws IOException If a new process cannot be started.
+     */
+    private Process take() throws IOException {
+        Process process;
+        while ((process = idle.poll()) != null) {
+            if (process.isAlive()) {
+                return process;
+            }
+            // The process died while waiting, for instance because it could not read its domain
+        }
+        return start();
+    }
+
+    /**
+     * Starts a process in the background to take the place of one which has been used.
+     */
+    private void replenish() {
+        if (closed) {
+            return;
+        }
+        try {
+            spawner.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Process process = start();
+                        if (closed || !idle.offer(process)) {
+                            process.destroyForcibly();
+                        }
+                    } catch (IOException e) {
+                        logger.warning("Could not start planner: " + e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The pool was closed after the check above, and needs no more processes
+        }
+    }
+
+    private Process start() throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        // Redirect error stream to output stream
+        processBuilder.redirectErrorStream(true);
+        return processBuilder.start();
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true); // Never keep the MAS alive
+                return t;
+            }
+        };
+    }
+}
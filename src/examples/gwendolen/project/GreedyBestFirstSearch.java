@@ -0,0 +1,17 @@
+package gwendolen.project;
+
+/**
+ * Greedy best first search guided by the relaxed plan heuristic of FF. Nodes are expanded in order of their
+ * estimated distance to the goal alone, so plans are found quickly but need not be the shortest.
+ */
+public class GreedyBestFirstSearch extends AStarSearch {
+
+    public GreedyBestFirstSearch() {
+        super(Heuristic.RELAXED_PLAN, 1);
+    }
+
+    @Override
+    protected long priority(int cost, int heuristic) {
+        return heuristic;
+    }
+}
@@ -0,0 +1,87 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+
+/**
+ * A fully instantiated planning action, with its preconditions and effects encoded as sets of fact ids.
+ */
+public class GroundAction {
+    private final String name;
+    private final BitSet precondition;
+    private final BitSet negativePrecondition;
+    private final BitSet addEffects;
+    private final BitSet deleteEffects;
+
+    /**
+     * Creates a ground action.
+     *
+     * @param name The name of the action, followed by its arguments if it has any.
+     * @param precondition The facts which must hold for the action to be applicable.
+     * @param negativePrecondition The facts which must not hold for the action to be applicable.
+     * @param addEffects The facts made true by the action.
+     * @param deleteEffects The facts made false by the action.
+     */
+    public GroundAction(String name, BitSet precondition, BitSet negativePrecondition, BitSet addEffects, BitSet deleteEffects) {
+        this.name = name;
+        this.precondition = precondition;
+        this.negativePrecondition = negativePrecondition;
+        this.addEffects = addEffects;
+        this.deleteEffects = deleteEffects;
+    }
+
+    /**
+     * Checks whether the action can be applied in a state.
+     *
+     * @param state The set of facts true in the state.
+     * @return True if the action is applicable, otherwise false.
+     */
+    public boolean isApplicable(BitSet state) {
+        if (state.intersects(negativePrecondition)) {
+            return false;
+        }
+        for (int f = precondition.nextSetBit(0); f >= 0; f = precondition.nextSetBit(f + 1)) {
+            if (!state.get(f)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the state reached by applying the action.
+     *
+     * @param state The set of facts true before the action.
+     * @return A new set of facts true after the action.
+     */
+    public BitSet apply(BitSet state) {
+        BitSet successor = (BitSet) state.clone();
+        successor.andNot(deleteEffects);
+        successor.or(addEffects);
+        return successor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BitSet getPrecondition() {
+        return precondition;
+    }
+
+    public BitSet getNegativePrecondition() {
+        return negativePrecondition;
+    }
+
+    public BitSet getAddEffects() {
+        return addEffects;
+    }
+
+    public BitSet getDeleteEffects() {
+        return deleteEffects;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
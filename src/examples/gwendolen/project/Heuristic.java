@@ -0,0 +1,103 @@
+package gwendolen.project;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estimates of the number of actions needed to reach a goal, computed on the delete relaxation of the problem,
+ * in which negative preconditions and delete effects are ignored.
+ */
+public enum Heuristic {
+    /**
+     * The cost of the most expensive goal fact. It never overestimates, so A* finds shortest plans with it
+     * (the heuristic PDDL4J's A* planner used with -u 7).
+     */
+    MAX,
+    /**
+     * The length of a relaxed plan extracted backwards from the goal, as in FF. It can overestimate, but
+     * guides greedy searches much better than MAX.
+     */
+    RELAXED_PLAN;
+
+    /**
+     * Estimates the number of actions needed to reach a goal.
+     *
+     * @param actions The ground actions of the domain.
+     * @param numberOfFacts The number of facts in the domain.
+     * @param state The set of facts true in the state.
+     * @param goal The set of facts to achieve.
+     * @return The estimate, 0 exactly when the goal holds, or Integer.MAX_VALUE if the goal cannot be reached.
+     */
+    public int estimate(List<GroundAction> actions, int numberOfFacts, BitSet state, BitSet goal) {
+        int[] cost = new int[numberOfFacts];
+        GroundAction[] supporter = new GroundAction[numberOfFacts];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        for (int f = state.nextSetBit(0); f >= 0; f = state.nextSetBit(f + 1)) {
+            cost[f] = 0;
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (GroundAction action : actions) {
+                int actionCost = 0;
+                BitSet pre = action.getPrecondition();
+                for (int f = pre.nextSetBit(0); f >= 0 && actionCost != Integer.MAX_VALUE; f = pre.nextSetBit(f + 1)) {
+                    actionCost = Math.max(actionCost, cost[f]);
+                }
+                if (actionCost == Integer.MAX_VALUE) {
+                    continue;
+                }
+                BitSet add = action.getAddEffects();
+                for (int f = add.nextSetBit(0); f >= 0; f = add.nextSetBit(f + 1)) {
+                    if (actionCost + 1 < cost[f]) {
+                        cost[f] = actionCost + 1;
+                        supporter[f] = action;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        int estimate = 0;
+        for (int f = goal.nextSetBit(0); f >= 0; f = goal.nextSetBit(f + 1)) {
+            estimate = Math.max(estimate, cost[f]);
+        }
+        if (this == MAX || estimate == Integer.MAX_VALUE) {
+            return estimate;
+        }
+        return relaxedPlanLength(supporter, cost, goal);
+    }
+
+    /**
+     * Counts the actions of the relaxed plan found by following the cheapest supporter of each goal fact and
+     * of the preconditions of the actions chosen.
+     *
+     * @param supporter The action first reaching each fact.
+     * @param cost The cost of each fact.
+     * @param goal The set of facts to achieve.
+     * @return The number of distinct actions in the relaxed plan.
+     */
+    private static int relaxedPlanLength(GroundAction[] supporter, int[] cost, BitSet goal) {
+        BitSet open = (BitSet) goal.clone();
+        BitSet done = new BitSet();
+        Set<GroundAction> plan = new HashSet<>();
+        for (int f = open.nextSetBit(0); f >= 0; f = open.nextSetBit(0)) {
+            open.clear(f);
+            if (done.get(f) || cost[f] == 0) {
+                continue;
+            }
+            done.set(f);
+            GroundAction action = supporter[f];
+            if (plan.add(action)) {
+                BitSet pre = (BitSet) action.getPrecondition().clone();
+                pre.andNot(done);
+                open.or(pre);
+            }
+        }
+        return plan.size();
+    }
+}
@@ -0,0 +1,456 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import ail.syntax.Deed;
+import ail.syntax.DefaultAILStructure;
+import ail.syntax.Event;
+import ail.syntax.GBelief;
+import ail.syntax.GLogicalFormula;
+import ail.syntax.Goal;
+import ail.syntax.Guard;
+import ail.syntax.Literal;
+import ail.syntax.Plan;
+import ail.syntax.Predicate;
+import ail.syntax.Unifier;
+
+/**
+ * Plans recoveries hierarchically, using the agent's own plans as decomposition methods. A plan for adding a
+ * goal is a method for that goal: it applies when its context holds, and its body decomposes the goal into
+ * actions of the planning domain and further goals. Facts which are achieve goals of some plan are reached by
+ * decomposing them, and only facts no plan is for, or which no decomposition reaches, are left to the flat
+ * planner.
+ * The context of a method is used when it is a conjunction of beliefs, possibly negated, which are facts of the
+ * domain; methods with other contexts, and actions or goals which are not ground once the goal is matched, are
+ * not used. Actions the domain does not declare, such as print, and belief updates do not change the planning
+ * state.
+ */
+public class HierarchicalPlanner {
+    // Goals nested deeper than this are not decomposed, which also ends recursive methods
+    private static final int MAX_DEPTH = 12;
+
+    private static final int ACTION = 0;
+    private static final int GOAL = 1;
+    private static final int ESTABLISH = 2;
+    private static final int FLAT = 3;
+    private static final int CHECK = 4;
+
+    private final StateEncoder encoder;
+    private final PlanningDomain domain;
+    private final List<Plan> methods = new ArrayList<>();
+    private final PlannerBackend flat;
+    private final SearchStatistics totals;
+    // The statistics and deadline of the search in progress
+    private SearchStatistics statistics = new SearchStatistics();
+    private Deadline deadline = Deadline.none();
+
+    /**
+     * Creates a planner using the plans of an agent as methods.
+     *
+     * @param encoder The encoder of beliefs for the domain.
+     * @param plans The agent's plans; those for adding goals are the methods.
+     * @param flat The planner for facts which are not reached by decomposition.
+     * @param totals Totals to which each search adds its decompositions as expansions and the methods it tried
+     *               as generated nodes.
+     */
+    public HierarchicalPlanner(StateEncoder encoder, List<Plan> plans, PlannerBackend flat, SearchStatistics totals) {
+        this.encoder = encoder;
+        this.domain = encoder.getDomain();
+        this.flat = flat;
+        this.totals = totals;
+        for (Plan plan : plans) {
+            Event trigger = plan.getTriggerEvent();
+            if (trigger.referstoGoal() && trigger.isAddition() && trigger.getContent() instanceof Goal) {
+                methods.add(plan);
+            }
+        }
+    }
+
+    /**
+     * Plans for a goal to become possible: afterwards one of its methods applies.
+     *
+     * @param goal The goal, such as one which had no applicable plan.
+     * @param state The set of facts true in the agent's beliefs.
+     * @param deadline The time by which the plan is needed.
+     * @return The steps of the plan, or null if no method can be made to apply.
+     */
+    public List<String> enable(Goal goal, BitSet state, Deadline deadline) {
+        long start = System.nanoTime();
+        this.deadline = deadline;
+        this.statistics = new SearchStatistics();
+        List<String> plan = null;
+        for (Plan method : methods) {
+            Unifier unifier = new Unifier();
+            if (!method.getTriggerEvent().getContent().unifies(goal, unifier)) {
+                continue;
+            }
+            statistics.generated();
+            BitSet[] context = context(method, unifier);
+            if (context == null) {
+                continue;
+            }
+            Agenda agenda = new Agenda(check(context[0], context[1]), null);
+            plan = solve(new Agenda(establish(context[0], 0), agenda), state, new ArrayList<String>());
+            if (plan != null || deadline.expired()) {
+                break;
+            }
+        }
+        finish(start);
+        return plan;
+    }
+
+    /**
+     * Plans for facts to hold, decomposing those which are achieve goals of the agent's plans.
+     *
+     * @param facts The set of facts to achieve.
+     * @param state The set of facts true in the agent's beliefs.
+     * @param deadline The time by which the plan is needed.
+     * @return The steps of the plan, or null if none was found.
+     */
+    public List<String> establish(BitSet facts, BitSet state, Deadline deadline) {
+        long start = System.nanoTime();
+        this.deadline = deadline;
+        this.statistics = new SearchStatistics();
+        List<String> plan = solve(new Agenda(establish(facts, 0), null), state, new ArrayList<String>());
+        finish(start);
+        return plan;
+    }
+
+    private void finish(long start) {
+        if (deadline.expired()) {
+            statistics.timedOut();
+        }
+        statistics.finished(System.nanoTime() - start);
+        totals.add(statistics);
+    }
+
+    /**
+     * Carries out the tasks of an agenda in order, backtracking over the choice of methods.
+     *
+     * @param agenda The tasks left, or null if there are none.
+     * @param state The set of facts true before the first task.
+     * @param plan The steps so far, which are not changed.
+     * @return The steps of the whole plan, or null if the agenda cannot be carried out.
+     */
+    private List<String> solve(Agenda agenda, BitSet state, List<String> plan) {
+        if (agenda == null) {
+            return plan;
+        }
+        if (deadline.expired()) {
+            return null;
+        }
+        Task task = agenda.task;
+        Agenda rest = agenda.next;
+        switch (task.kind) {
+            case ACTION:
+                if (!task.action.isApplicable(state)) {
+                    return null;
+                }
+                return solve(rest, task.action.apply(state), append(plan, task.action.getName()));
+            case CHECK:
+                return contains(state, task.facts) && !state.intersects(task.negative) ? solve(rest, state, plan) : null;
+            case ESTABLISH:
+                return establish(task, rest, state, plan);
+            case FLAT:
+                return flat(task, rest, state, plan);
+            default:
+                return decompose(task, rest, state, plan);
+        }
+    }
+
+    /**
+     * Decomposes a goal with the first method which leads to a plan: first the methods whose context holds,
+     * then those whose context can be established.
+     */
+    private List<String> decompose(Task task, Agenda rest, BitSet state, List<String> plan) {
+        int fact = achievedFact(task.goal);
+        if (fact >= 0 && state.get(fact)) {
+            return solve(rest, state, plan); // Achieve goals are done once they are believed
+        }
+        if (task.depth >= MAX_DEPTH) {
+            return null;
+        }
+        statistics.expanded();
+        List<Agenda> blocked = new ArrayList<>();
+        for (Plan method : methods) {
+            Unifier unifier = new Unifier();
+            if (!method.getTriggerEvent().getContent().unifies(task.goal, unifier)) {
+                continue;
+            }
+            statistics.generated();
+            BitSet[] context = context(method, unifier);
+            List<Task> tasks = context == null ? null : body(method, unifier, task.depth + 1);
+            if (tasks == null || state.intersects(context[1])) {
+                continue;
+            }
+            Agenda body = prepend(tasks, rest);
+            if (contains(state, context[0])) {
+                List<String> result = solve(body, state, plan);
+                if (result != null) {
+                    return result;
+                }
+            } else {
+                blocked.add(new Agenda(establish(context[0], task.depth + 1), new Agenda(check(context[0], context[1]), body)));
+            }
+        }
+        for (Agenda agenda : blocked) {
+            List<String> result = solve(agenda, state, plan);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (fact >= 0) {
+            // No method worked, but the goal is a fact the domain's actions may still reach
+            BitSet goal = new BitSet();
+            goal.set(fact);
+            return solve(new Agenda(flat(goal), rest), state, plan);
+        }
+        return null;
+    }
+
+    /**
+     * Establishes facts, first by decomposing the missing ones which are achieve goals of some method, then
+     * with the flat planner; if the decomposition fails, the flat planner is given them all.
+     */
+    private List<String> establish(Task task, Agenda rest, BitSet state, List<String> plan) {
+        BitSet missing = StateEncoder.missing(state, task.facts);
+        if (missing.isEmpty()) {
+            return solve(rest, state, plan);
+        }
+        Agenda agenda = new Agenda(flat(task.facts), rest);
+        boolean decomposed = false;
+        for (int f = missing.previousSetBit(missing.length()); f >= 0; f = missing.previousSetBit(f - 1)) {
+            Literal fact = encoder.literal(f);
+            Goal goal = new Goal(fact.getFunctor(), Goal.achieveGoal);
+            for (int i = 0; i < fact.getTermsSize(); i++) {
+                goal.addTerm(fact.getTerm(i));
+            }
+            if (hasMethod(goal)) {
+                agenda = new Agenda(goal(goal, task.depth), agenda);
+                decomposed = true;
+            }
+        }
+        if (decomposed) {
+            List<String> result = solve(agenda, state, plan);
+            if (result != null || deadline.expired()) {
+                return result;
+            }
+        }
+        return solve(new Agenda(flat(task.facts), rest), state, plan);
+    }
+
+    /**
+     * Reaches the missing facts with the flat planner, following its plan to find the state it leads to.
+     */
+    private List<String> flat(Task task, Agenda rest, BitSet state, List<String> plan) {
+        BitSet missing = StateEncoder.missing(state, task.facts);
+        if (missing.isEmpty()) {
+            return solve(rest, state, plan);
+        }
+        List<String> steps = flat.plan(domain, state, missing, deadline);
+        if (steps == null) {
+            return null;
+        }
+        List<String> extended = new ArrayList<>(plan);
+        for (String step : steps) {
+            GroundAction action = domain.getAction(step);
+            if (action == null || !action.isApplicable(state)) {
+                return null;
+            }
+            state = action.apply(state);
+            extended.add(action.getName());
+        }
+        return contains(state, missing) ? solve(rest, state, extended) : null;
+    }
+
+    /**
+     * Returns the fact whose belief achieves a goal.
+     *
+     * @return The fact id, or -1 if the goal is not an achieve goal for a fact of the domain.
+     */
+    private int achievedFact(Goal goal) {
+        if (goal.getGoalType() != Goal.achieveGoal) {
+            return -1;
+        }
+        Literal belief = new Literal(goal.getFunctor());
+        for (int i = 0; i < goal.getTermsSize(); i++) {
+            belief.addTerm(goal.getTerm(i));
+        }
+        return encoder.factId(belief);
+    }
+
+    private boolean hasMethod(Goal goal) {
+        for (Plan method : methods) {
+            if (method.getTriggerEvent().getContent().unifies(goal, new Unifier())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the context of a method as the facts which must hold and those which must not.
+     *
+     * @return The positive and negative facts, or null if the context is not a conjunction of ground facts.
+     */
+    private BitSet[] context(Plan method, Unifier unifier) {
+        BitSet[] context = {new BitSet(), new BitSet()};
+        for (Guard guard : method.getContext()) {
+            Guard instance = guard.clone();
+            instance.apply(unifier);
+            if (!conditions(instance, true, context)) {
+                return null;
+            }
+        }
+        return context;
+    }
+
+    private boolean conditions(GLogicalFormula formula, boolean positive, BitSet[] context) {
+        if (formula instanceof Guard) {
+            Guard guard = (Guard) formula;
+            if (guard.isTrivial()) {
+                return positive;
+            }
+            switch (guard.getOp()) {
+                case none:
+                    return conditions(guard.getRHS(), positive, context);
+                case not:
+                    return conditions(guard.getRHS(), !positive, context);
+                case and:
+                    return positive && conditions(guard.getLHS(), true, context) && conditions(guard.getRHS(), true, context);
+                default:
+                    return false;
+            }
+        }
+        if (formula instanceof GBelief) {
+            GBelief belief = (GBelief) formula;
+            if (belief.isTrue()) {
+                return positive;
+            }
+            int fact = belief.category == DefaultAILStructure.AILBel && belief.isGround() ? encoder.factId(belief.toLiteral()) : -1;
+            if (fact < 0) {
+                return false;
+            }
+            context[positive ? 0 : 1].set(fact);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Turns the body of a method into tasks.
+     *
+     * @return The tasks, or null if the body has an action or goal which is not ground.
+     */
+    private List<Task> body(Plan method, Unifier unifier, int depth) {
+        List<Task> tasks = new ArrayList<>();
+        for (Deed deed : method.getBody()) {
+            Deed instance = deed.clone();
+            instance.apply(unifier);
+            if (instance.isAction() && instance.getContent() instanceof Predicate) {
+                Predicate call = (Predicate) instance.getContent();
+                if (!call.isGround()) {
+                    return null;
+                }
+                StringBuilder name = new StringBuilder(call.getFunctor());
+                for (int i = 0; i < call.getTermsSize(); i++) {
+                    name.append(' ').append(call.getTerm(i));
+                }
+                GroundAction action = domain.getAction(name.toString());
+                if (action != null) {
+                    tasks.add(action(action));
+                }
+            } else if (instance.referstoGoal() && instance.isAddition() && instance.getContent() instanceof Goal) {
+                Goal goal = (Goal) instance.getContent();
+                if (!goal.isGround()) {
+                    return null;
+                }
+                tasks.add(goal(goal, depth));
+            }
+        }
+        return tasks;
+    }
+
+    private static Agenda prepend(List<Task> tasks, Agenda rest) {
+        Agenda agenda = rest;
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            agenda = new Agenda(tasks.get(i), agenda);
+        }
+        return agenda;
+    }
+
+    private static boolean contains(BitSet state, BitSet facts) {
+        return StateEncoder.missing(state, facts).isEmpty();
+    }
+
+    private static List<String> append(List<String> plan, String step) {
+        List<String> extended = new ArrayList<>(plan.size() + 1);
+        extended.addAll(plan);
+        extended.add(step);
+        return extended;
+    }
+
+    private static Task action(GroundAction action) {
+        Task task = new Task(ACTION);
+        task.action = action;
+        return task;
+    }
+
+    private static Task goal(Goal goal, int depth) {
+        Task task = new Task(GOAL);
+        task.goal = goal;
+        task.depth = depth;
+        return task;
+    }
+
+    private static Task establish(BitSet facts, int depth) {
+        Task task = new Task(ESTABLISH);
+        task.facts = facts;
+        task.depth = depth;
+        return task;
+    }
+
+    private static Task flat(BitSet facts) {
+        Task task = new Task(FLAT);
+        task.facts = facts;
+        return task;
+    }
+
+    private static Task check(BitSet facts, BitSet negative) {
+        Task task = new Task(CHECK);
+        task.facts = facts;
+        task.negative = negative;
+        return task;
+    }
+
+    /**
+     * Something left to do: an action, a goal to decompose, facts to establish or to check.
+     */
+    private static final class Task {
+        final int kind;
+        GroundAction action;
+        Goal goal;
+        BitSet facts;
+        BitSet negative;
+        int depth;
+
+        Task(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * The tasks left, as a list shared between the alternatives of the search.
+     */
+    private static final class Agenda {
+        final Task task;
+        final Agenda next;
+
+        Agenda(Task task, Agenda next) {
+            this.task = task;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+import java.util.List;
+
+import ail.semantics.AILAgent;
+import ail.syntax.Goal;
+
+/**
+ * Recovery with hierarchical planning: the agent's own plans decompose what it lacks into actions, and the plan
+ * is executed. If an action fails on the way, a new plan is made from the agent's beliefs as they are then.
+ */
+public class HierarchicalRecovery {
+    /**
+     * Establishes facts in an agent's beliefs, such as the preconditions of an action.
+     *
+     * @param ag The agent.
+     * @param action Executes the steps of the plans.
+     * @param encoder The encoder of beliefs for the domain.
+     * @param facts The set of facts to establish.
+     * @param typeOfPlanning The planner for facts no plan of the agent reaches (1 for FF planner, 2 for PDDL4J
+     *                       Implementation).
+     * @param name The action or goal being recovered, reported to the agent if no plan is found in time, and
+     *             logged if none is found at all.
+     * @param description What failed, for the log.
+     * @return True if the facts hold at the end, otherwise false.
+     */
+    public static boolean establish(AILAgent ag, ActionClass action, StateEncoder encoder, BitSet facts, int typeOfPlanning,
+                                    String name, String description) {
+        return recover(ag, action, encoder, null, facts, typeOfPlanning, name, description);
+    }
+
+    /**
+     * Makes one of the plans for a goal applicable, by establishing its context.
+     *
+     * @param ag The agent.
+     * @param action Executes the steps of the plans.
+     * @param encoder The encoder of beliefs for the domain.
+     * @param goal The goal which had no applicable plan.
+     * @param typeOfPlanning The planner for facts no plan of the agent reaches (1 for FF planner, 2 for PDDL4J
+     *                       Implementation).
+     * @param name The action or goal being recovered, reported to the agent if no plan is found in time, and
+     *             logged if none is found at all.
+     * @param description What failed, for the log.
+     * @return True if a plan for the goal applies at the end, otherwise false.
+     */
+    public static boolean enable(AILAgent ag, ActionClass action, StateEncoder encoder, Goal goal, int typeOfPlanning,
+                                 String name, String description) {
+        return recover(ag, action, encoder, goal, null, typeOfPlanning, name, description);
+    }
+
+    private static boolean recover(final AILAgent ag, ActionClass action, final StateEncoder encoder, final Goal goal,
+                                   final BitSet facts, int typeOfPlanning, String name, String description) {
+        final HierarchicalPlanner planner = RunPlanner.hierarchicalPlanner(ag, encoder, RecoveryLoop.typeOfPlanning(typeOfPlanning));
+        return RecoveryLoop.run(ag, action, new RecoveryLoop.PlanSource() {
+            public List<String> plan(Deadline deadline) {
+                BitSet state = encoder.encode(ag.getBB());
+                List<String> plan = goal != null ? planner.enable(goal, state, deadline) : planner.establish(facts, state, deadline);
+                if (plan != null && !plan.isEmpty()) {
+                    RecoveryTelemetry.planLength(plan.size());
+                }
+                return plan;
+            }
+        }, name, description);
+    }
+}
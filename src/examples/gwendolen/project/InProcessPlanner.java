@@ -0,0 +1,68 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Plans inside the JVM on the shared planning service, with a chosen search engine.
+ */
+public class InProcessPlanner implements PlannerBackend {
+    private static final Logger logger = Logger.getLogger("t1."+"Planner");
+
+    private final String name;
+    private final RecoveryPlanner engine;
+    private final SearchStatistics statistics = new SearchStatistics();
+
+    /**
+     * Creates a planner using the default engine.
+     */
+    public InProcessPlanner() {
+        this(RecoveryPlanners.DEFAULT);
+    }
+
+    /**
+     * Creates a planner using a named engine.
+     *
+     * @param name The name of the engine, as understood by RecoveryPlanners.create.
+     * @throws IllegalArgumentException If there is no such engine.
+     */
+    public InProcessPlanner(String name) {
+        this.name = name;
+        this.engine = RecoveryPlanners.create(name);
+    }
+
+    @Override
+    public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+        try {
+            SearchStatistics search = new SearchStatistics();
+            long started = System.nanoTime();
+            List<GroundAction> solution = PlanningService.getInstance().plan(engine, domain, state, goal, deadline, search);
+            RecoveryTelemetry.record(RecoveryTelemetry.Phase.SEARCH, System.nanoTime() - started);
+            statistics.add(search);
+            logger.fine(name + ": " + search);
+            if (solution == null) {
+                return null;
+            }
+            List<String> plan = new ArrayList<>();
+            for (GroundAction action : solution) {
+                plan.add(action.getName());
+            }
+            return plan;
+        } catch (Exception e) {
+            // Print stack trace if an exception occurs
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the work done by all searches of this planner so far.
+     *
+     * @return The totals.
+     */
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+}
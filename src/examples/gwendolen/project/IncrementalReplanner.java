@@ -0,0 +1,186 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Follows a plan one step at a time during online recovery. It keeps the rest of the plan between steps and
+ * only searches again once the plan no longer reaches the goal from the agent's current beliefs.
+ * A broken plan is first repaired by skipping ahead to, or bridging with a single action to, a later part of the
+ * old plan which still works; a full search is the last resort.
+ */
+public class IncrementalReplanner {
+    // Longest bridge tried when repairing a plan
+    private static final int REPAIR_DEPTH = 1;
+
+    private final PlannerBackend planner;
+    private final Deadline deadline;
+    private PlanningDomain domain;
+    private List<GroundAction> plan = Collections.emptyList();
+    private int searches;
+
+    /**
+     * Creates a replanner for one recovery.
+     *
+     * @param planner The planner asked for a new plan when the old one cannot be repaired.
+     */
+    public IncrementalReplanner(PlannerBackend planner) {
+        this(planner, Deadline.none());
+    }
+
+    /**
+     * Creates a replanner for one recovery which must find its plans by a deadline.
+     *
+     * @param planner The planner asked for a new plan when the old one cannot be repaired.
+     * @param deadline The time by which the whole recovery must have its plans.
+     */
+    public IncrementalReplanner(PlannerBackend planner, Deadline deadline) {
+        this.planner = planner;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns the next action to execute, removing it from the plan.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts true in the agent's current beliefs.
+     * @param goal The set of facts still to achieve.
+     * @return The name of the action, or null if no plan could be found.
+     */
+    public String nextStep(PlanningDomain domain, BitSet state, BitSet goal) {
+        if (domain != this.domain) {
+            this.domain = domain;
+            plan = Collections.emptyList(); // The domain was reloaded, so the old actions mean nothing
+        }
+        if (!reaches(plan, state, goal)) {
+            List<GroundAction> repaired = repair(state, goal);
+            plan = repaired != null ? repaired : search(state, goal);
+        }
+        if (plan == null || plan.isEmpty()) {
+            plan = Collections.emptyList();
+            return null;
+        }
+        GroundAction step = plan.get(0);
+        plan = plan.subList(1, plan.size());
+        return step.getName();
+    }
+
+    /**
+     * Checks whether the recovery has run out of time, so that a missing step means no plan was found within
+     * the budget rather than that there is none.
+     *
+     * @return True if the deadline has passed, otherwise false.
+     */
+    public boolean isOutOfTime() {
+        return deadline.expired();
+    }
+
+    /**
+     * Returns the number of times the planner has been asked for a whole new plan.
+     *
+     * @return The number of searches.
+     */
+    public int getSearches() {
+        return searches;
+    }
+
+    /**
+     * Looks for the shortest sequence of at most REPAIR_DEPTH actions leading to a state from which some
+     * remaining part of the old plan reaches the goal.
+     *
+     * @param state The current state.
+     * @param goal The facts still to achieve.
+     * @return The repaired plan, or null if the old plan cannot be repaired.
+     */
+    private List<GroundAction> repair(BitSet state, BitSet goal) {
+        if (plan.isEmpty()) {
+            return null;
+        }
+        List<List<GroundAction>> bridges = new ArrayList<>();
+        bridges.add(new ArrayList<GroundAction>());
+        List<BitSet> states = new ArrayList<>();
+        states.add(state);
+        for (int depth = 0; depth <= REPAIR_DEPTH; depth++) {
+            for (int i = 0; i < bridges.size(); i++) {
+                // Prefer the longest remaining part of the old plan
+                for (int start = 0; start < plan.size(); start++) {
+                    List<GroundAction> suffix = plan.subList(start, plan.size());
+                    if (reaches(suffix, states.get(i), goal)) {
+                        List<GroundAction> repaired = new ArrayList<>(bridges.get(i));
+                        repaired.addAll(suffix);
+                        return repaired;
+                    }
+                }
+            }
+            if (depth == REPAIR_DEPTH) {
+                break;
+            }
+            List<List<GroundAction>> longer = new ArrayList<>();
+            List<BitSet> successors = new ArrayList<>();
+            for (int i = 0; i < bridges.size(); i++) {
+                for (GroundAction action : domain.getActions()) {
+                    if (action.isApplicable(states.get(i))) {
+                        List<GroundAction> bridge = new ArrayList<>(bridges.get(i));
+                        bridge.add(action);
+                        longer.add(bridge);
+                        successors.add(action.apply(states.get(i)));
+                    }
+                }
+            }
+            bridges = longer;
+            states = successors;
+        }
+        return null;
+    }
+
+    /**
+     * Asks the planner for a whole new plan.
+     *
+     * @param state The current state.
+     * @param goal The facts still to achieve.
+     * @return The plan, or null if there is none or it names actions unknown to the domain.
+     */
+    private List<GroundAction> search(BitSet state, BitSet goal) {
+        searches++;
+        List<String> names = planner.plan(domain, state, goal, deadline);
+        if (names == null) {
+            return null;
+        }
+        RecoveryTelemetry.planLength(names.size());
+        long started = System.nanoTime();
+        List<GroundAction> actions = new ArrayList<>();
+        for (String name : names) {
+            GroundAction action = domain.getAction(name);
+            if (action == null) {
+                return null;
+            }
+            actions.add(action);
+        }
+        RecoveryTelemetry.record(RecoveryTelemetry.Phase.PARSING, System.nanoTime() - started);
+        return actions;
+    }
+
+    /**
+     * Checks whether a sequence of actions can be executed from a state and ends in the goal.
+     *
+     * @param actions The actions.
+     * @param state The state.
+     * @param goal The facts to achieve.
+     * @return True if the actions reach the goal, otherwise false.
+     */
+    private static boolean reaches(List<GroundAction> actions, BitSet state, BitSet goal) {
+        if (actions.isEmpty()) {
+            return false; // An empty plan has nothing to execute
+        }
+        BitSet current = state;
+        for (GroundAction action : actions) {
+            if (!action.isApplicable(current)) {
+                return false;
+            }
+            current = action.apply(current);
+        }
+        return AStarSearch.satisfies(current, goal);
+    }
+}
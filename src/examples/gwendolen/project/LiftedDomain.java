@@ -0,0 +1,280 @@
+package gwendolen.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ail.syntax.Literal;
+import ail.syntax.Predicate;
+import ail.syntax.PredicateTerm;
+import ail.syntax.Term;
+import main.java.fr.uga.pddl4j.parser.Exp;
+import main.java.fr.uga.pddl4j.parser.NamedTypedList;
+import main.java.fr.uga.pddl4j.parser.Op;
+import main.java.fr.uga.pddl4j.parser.Symbol;
+import main.java.fr.uga.pddl4j.parser.TypedSymbol;
+
+/**
+ * The action schemas of a planning domain kept with their parameters, for planning without grounding the
+ * domain first. The objects of a problem are whatever its beliefs and goal mention, along with the domain's
+ * constants, so domains about hundreds of rooms, devices or parcels need not declare them all as constants
+ * and are never instantiated over every combination of them.
+ * Facts are written as in PlanningDomain: the lower case predicate name followed by its arguments, separated
+ * by spaces.
+ */
+public class LiftedDomain {
+    private static final Map<String, LiftedDomain> domains = new ConcurrentHashMap<>();
+
+    private final PlanningDomain domain;
+    private final Map<String, Integer> arities = new HashMap<>();
+    private final Map<String, List<String>> constants = new HashMap<>();
+    private final List<Schema> schemas = new ArrayList<>();
+    private final String dummy;
+
+    /**
+     * Reads the schemas of a parsed domain.
+     *
+     * @param domain The domain, whose parse is used; its grounding is not.
+     */
+    public LiftedDomain(PlanningDomain domain) {
+        this.domain = domain;
+        for (NamedTypedList predicate : domain.getDomain().getPredicates()) {
+            arities.put(predicate.getName().getImage().toLowerCase(), predicate.getArguments().size());
+        }
+        for (TypedSymbol constant : domain.getDomain().getConstants()) {
+            constants.put(constant.getImage().toLowerCase(), types(constant));
+        }
+        for (Op op : domain.getDomain().getOperators()) {
+            schemas.add(new Schema(op));
+        }
+        String name = PDDLGenerator.DUMMY_PREDICATE.toLowerCase();
+        dummy = arities.containsKey(name) ? name : null;
+    }
+
+    /**
+     * Returns the lifted domain for a domain file, building it when the file is first used or has changed.
+     *
+     * @param domainFile The path of the domain file.
+     * @return The lifted domain.
+     * @throws IOException If the file does not exist or cannot be parsed.
+     */
+    public static LiftedDomain get(String domainFile) throws IOException {
+        PlanningDomain domain = DomainCache.get(domainFile);
+        LiftedDomain lifted = domains.get(domainFile);
+        if (lifted == null || lifted.domain != domain) {
+            lifted = new LiftedDomain(domain);
+            domains.put(domainFile, lifted);
+        }
+        return lifted;
+    }
+
+    /**
+     * Encodes the beliefs which are facts of the domain: ground beliefs whose predicate the domain declares
+     * with the same number of arguments. The dummy predicate always holds.
+     *
+     * @param beliefs The beliefs.
+     * @return The facts true in the beliefs.
+     */
+    public Set<String> encode(Iterable<? extends PredicateTerm> beliefs) {
+        long started = System.nanoTime();
+        Set<String> state = new LinkedHashSet<>();
+        for (PredicateTerm belief : beliefs) {
+            String fact = fact(belief);
+            if (fact != null) {
+                state.add(fact);
+            }
+        }
+        if (dummy != null) {
+            state.add(dummy);
+        }
+        RecoveryTelemetry.record(RecoveryTelemetry.Phase.BELIEFS, System.nanoTime() - started);
+        return state;
+    }
+
+    /**
+     * Encodes a goal.
+     *
+     * @param goals The ground literals to achieve.
+     * @return The facts to achieve, or null if a goal is not a fact of the domain.
+     */
+    public Set<String> encodeGoal(List<? extends Term> goals) {
+        Set<String> goal = new LinkedHashSet<>();
+        for (Term term : goals) {
+            String fact = term instanceof PredicateTerm ? fact((PredicateTerm) term) : null;
+            if (fact == null) {
+                return null;
+            }
+            goal.add(fact);
+        }
+        return goal;
+    }
+
+    /**
+     * Encodes a goal written as text.
+     *
+     * @param goals The beliefs to achieve, such as "hasPhone" or "at(home)".
+     * @return The facts to achieve, or null if a goal is not a fact of the domain.
+     */
+    public Set<String> encodeGoalStrings(List<String> goals) {
+        Set<String> goal = new LinkedHashSet<>();
+        for (String g : goals) {
+            List<String> parts = new ArrayList<>();
+            for (String part : g.trim().split("[(),]")) {
+                if (!part.trim().isEmpty()) {
+                    parts.add(part.trim().toLowerCase());
+                }
+            }
+            Integer arity = parts.isEmpty() ? null : arities.get(parts.get(0));
+            if (arity == null || arity != parts.size() - 1) {
+                return null;
+            }
+            goal.add(join(parts));
+        }
+        return goal;
+    }
+
+    /**
+     * Collects the objects facts mention which are not constants of the domain, as a problem declares them.
+     *
+     * @param facts The facts of the problem, such as its initial state and goal.
+     * @return The objects, in alphabetical order.
+     */
+    public Set<String> objects(Collection<String> facts) {
+        Set<String> objects = new TreeSet<>();
+        for (String fact : facts) {
+            String[] parts = fact.split(" ");
+            for (int i = 1; i < parts.length; i++) {
+                if (!constants.containsKey(parts[i])) {
+                    objects.add(parts[i]);
+                }
+            }
+        }
+        return objects;
+    }
+
+    public String getName() {
+        return domain.getDomain().getName().getImage();
+    }
+
+    /**
+     * Returns the constants of the domain with their types.
+     *
+     * @return The lower case constants, each with its lower case types.
+     */
+    Map<String, List<String>> getConstants() {
+        return constants;
+    }
+
+    List<Schema> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * Writes a belief as a fact of the domain.
+     *
+     * @param belief The belief.
+     * @return The fact, or null if the belief is not a ground fact of a declared predicate.
+     */
+    private String fact(PredicateTerm belief) {
+        if (!(belief instanceof Predicate) || (belief instanceof Literal && ((Literal) belief).negated())) {
+            return null;
+        }
+        Predicate predicate = (Predicate) belief;
+        String name = predicate.getFunctor().toLowerCase();
+        Integer arity = arities.get(name);
+        if (arity == null || arity != predicate.getTermsSize() || !predicate.isGround()) {
+            return null;
+        }
+        StringBuilder fact = new StringBuilder(name);
+        for (int i = 0; i < predicate.getTermsSize(); i++) {
+            fact.append(' ').append(predicate.getTerm(i).toString().toLowerCase());
+        }
+        return fact.toString();
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder joined = new StringBuilder();
+        for (String part : parts) {
+            if (joined.length() > 0) {
+                joined.append(' ');
+            }
+            joined.append(part);
+        }
+        return joined.toString();
+    }
+
+    private static List<String> types(TypedSymbol symbol) {
+        List<String> types = new ArrayList<>();
+        for (Symbol type : symbol.getTypes()) {
+            types.add(type.getImage().toLowerCase());
+        }
+        return types;
+    }
+
+    /**
+     * An action schema. Atoms are arrays of the lower case predicate name followed by its arguments, where an
+     * argument is either a constant or the index of a parameter.
+     */
+    static class Schema {
+        final String name;
+        final List<String> parameters = new ArrayList<>();
+        final List<List<String>> parameterTypes = new ArrayList<>();
+        final List<Object[]> precondition = new ArrayList<>();
+        final List<Object[]> negativePrecondition = new ArrayList<>();
+        final List<Object[]> addEffects = new ArrayList<>();
+        final List<Object[]> deleteEffects = new ArrayList<>();
+
+        Schema(Op op) {
+            name = op.getName().getImage().toLowerCase();
+            for (TypedSymbol parameter : op.getParameters()) {
+                parameters.add(parameter.getImage());
+                parameterTypes.add(types(parameter));
+            }
+            atoms(op.getPreconditions(), precondition, negativePrecondition, op);
+            atoms(op.getEffects(), addEffects, deleteEffects, op);
+        }
+
+        /**
+         * Adds the atoms of a conjunction of literals to lists of positive and negated atoms.
+         */
+        private void atoms(Exp exp, List<Object[]> positive, List<Object[]> negative, Op op) {
+            switch (exp.getConnective()) {
+                case TRUE:
+                    break;
+                case ATOM:
+                    positive.add(atom(exp.getAtom()));
+                    break;
+                case AND:
+                    for (Exp child : exp.getChildren()) {
+                        atoms(child, positive, negative, op);
+                    }
+                    break;
+                case NOT:
+                    negative.add(atom(exp.getChildren().get(0).getAtom()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported expression in action " + op.getName() + ": " + exp);
+            }
+        }
+
+        /**
+         * Converts a PDDL atom, replacing each parameter by its index.
+         */
+        private Object[] atom(List<Symbol> symbols) {
+            Object[] atom = new Object[symbols.size()];
+            atom[0] = symbols.get(0).getImage().toLowerCase();
+            for (int i = 1; i < symbols.size(); i++) {
+                int parameter = parameters.indexOf(symbols.get(i).getImage());
+                atom[i] = parameter >= 0 ? (Object) parameter : symbols.get(i).getImage().toLowerCase();
+            }
+            return atom;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import ail.semantics.AILAgent;
+
+/**
+ * Recovery with lifted planning: the facts an agent lacks are planned for over the action schemas of the domain,
+ * with the objects its beliefs mention, and the plan is executed. If the facts still do not hold afterwards,
+ * for instance because an action failed, a new plan is made from the agent's beliefs as they are then.
+ */
+public class LiftedRecovery {
+    /**
+     * Establishes facts in an agent's beliefs.
+     *
+     * @param ag The agent.
+     * @param action Executes the steps of the plans.
+     * @param domain The lifted domain.
+     * @param goal The facts to establish.
+     * @param typeOfPlanning The choice of planner (1 for FF planner, 2 for PDDL4J Implementation).
+     * @param name The action or goal being recovered, reported to the agent if no plan is found in time, and
+     *             logged if none is found at all.
+     * @param description What failed, for the log.
+     * @return True if the facts hold at the end, otherwise false.
+     */
+    public static boolean recover(final AILAgent ag, ActionClass action, final LiftedDomain domain, final Set<String> goal,
+                                  int typeOfPlanning, String name, String description) {
+        final int choiceOfPlanner = RecoveryLoop.typeOfPlanning(typeOfPlanning);
+        return RecoveryLoop.run(ag, action, new RecoveryLoop.PlanSource() {
+            public List<String> plan(Deadline deadline) {
+                Set<String> state = domain.encode(ag.getBB());
+                Set<String> missing = missing(state, goal);
+                if (missing.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                // The facts are missing, so an empty plan means none was found
+                List<String> plan = RunPlanner.runLifted(domain, state, missing, choiceOfPlanner, deadline);
+                return plan.isEmpty() ? null : plan;
+            }
+        }, name, description);
+    }
+
+    private static Set<String> missing(Set<String> state, Set<String> goal) {
+        Set<String> missing = new LinkedHashSet<>(goal);
+        missing.removeAll(state);
+        return missing;
+    }
+}
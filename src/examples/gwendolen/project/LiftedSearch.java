@@ -0,0 +1,419 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Greedy best first search over the action schemas of a lifted domain, for domains too large to ground.
+ * Actions are instantiated as the search reaches them: the parameters of a schema are bound by matching its
+ * preconditions against the facts of the state being expanded, and only parameters the preconditions leave
+ * free are tried with every object. Facts get ids as they are first met, so only the reachable part of the
+ * domain is ever encoded.
+ * The heuristic is the number of layers of relaxed reachability before the goal holds, found the same way, so
+ * states from which the goal cannot be reached even ignoring deletes are never queued.
+ */
+public class LiftedSearch {
+
+    /**
+     * Searches for a plan.
+     *
+     * @param domain The lifted domain.
+     * @param init The facts true initially.
+     * @param goal The facts to achieve.
+     * @param deadline The time by which the search must return.
+     * @param statistics Receives the number of nodes expanded and generated and the wall time of the search.
+     * @return The names of the plan's actions, each followed by its arguments, or null if there is no plan or
+     *         the deadline passed.
+     */
+    public List<String> search(LiftedDomain domain, Set<String> init, Set<String> goal, Deadline deadline, SearchStatistics statistics) {
+        long start = System.nanoTime();
+        try {
+            return new Task(domain, init, goal).run(deadline, statistics);
+        } finally {
+            statistics.finished(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Receives complete bindings of a schema's parameters.
+     */
+    private interface BindingVisitor {
+        void visit(Compiled schema, int[] binding);
+    }
+
+    /**
+     * A schema with its predicates and constants replaced by ids. An argument is an object id, or -(p + 1) for
+     * parameter p.
+     */
+    private static class Compiled {
+        final String name;
+        final int[][] precondition;
+        final int[][] negativePrecondition;
+        final int[][] addEffects;
+        final int[][] deleteEffects;
+        // Objects each parameter may take
+        final BitSet[] allowed;
+
+        Compiled(String name, int[][] precondition, int[][] negativePrecondition, int[][] addEffects, int[][] deleteEffects,
+                 BitSet[] allowed) {
+            this.name = name;
+            this.precondition = precondition;
+            this.negativePrecondition = negativePrecondition;
+            this.addEffects = addEffects;
+            this.deleteEffects = deleteEffects;
+            this.allowed = allowed;
+        }
+    }
+
+    private static class Node {
+        final BitSet state;
+        final Node parent;
+        final String action;
+        final int cost;
+        final int heuristic;
+        final long order;
+
+        Node(BitSet state, Node parent, String action, int cost, int heuristic, long order) {
+            this.state = state;
+            this.parent = parent;
+            this.action = action;
+            this.cost = cost;
+            this.heuristic = heuristic;
+            this.order = order;
+        }
+    }
+
+    /**
+     * One search, with the ids it has given to objects, predicates and facts.
+     */
+    private static class Task {
+        private final List<String> objects = new ArrayList<>();
+        private final Map<String, Integer> objectIds = new HashMap<>();
+        private final List<String> predicates = new ArrayList<>();
+        private final Map<String, Integer> predicateIds = new HashMap<>();
+        private final List<int[]> facts = new ArrayList<>();
+        private final Map<String, Integer> factIds = new HashMap<>();
+        private final List<Compiled> schemas = new ArrayList<>();
+        private final BitSet init = new BitSet();
+        private final BitSet goal = new BitSet();
+
+        Task(LiftedDomain domain, Set<String> init, Set<String> goal) {
+            Map<String, List<String>> constants = domain.getConstants();
+            for (String constant : constants.keySet()) {
+                object(constant);
+            }
+            for (String fact : init) {
+                this.init.set(fact(fact.split(" ")));
+            }
+            for (String fact : goal) {
+                this.goal.set(fact(fact.split(" ")));
+            }
+            for (LiftedDomain.Schema schema : domain.getSchemas()) {
+                int[][] pre = compile(schema.precondition);
+                int[][] negPre = compile(schema.negativePrecondition);
+                int[][] add = compile(schema.addEffects);
+                int[][] del = compile(schema.deleteEffects);
+                BitSet[] allowed = new BitSet[schema.parameters.size()];
+                for (int p = 0; p < allowed.length; p++) {
+                    allowed[p] = allowed(schema.parameterTypes.get(p), constants);
+                }
+                schemas.add(new Compiled(schema.name, pre, negPre, add, del, allowed));
+            }
+        }
+
+        List<String> run(Deadline deadline, SearchStatistics statistics) {
+            PriorityQueue<Node> open = new PriorityQueue<>(new Comparator<Node>() {
+                public int compare(Node a, Node b) {
+                    int c = Integer.compare(a.heuristic, b.heuristic);
+                    if (c == 0) {
+                        c = Integer.compare(a.cost, b.cost);
+                    }
+                    return c != 0 ? c : Long.compare(a.order, b.order);
+                }
+            });
+            Set<BitSet> seen = new HashSet<>();
+            int h = layers(init);
+            if (h == Integer.MAX_VALUE) {
+                return null;
+            }
+            long order = 0;
+            open.add(new Node(init, null, null, 0, h, order++));
+            seen.add(init);
+
+            while (!open.isEmpty()) {
+                Node node = open.poll();
+                if (satisfies(node.state)) {
+                    return extract(node);
+                }
+                if (deadline.expired()) {
+                    statistics.timedOut();
+                    return null;
+                }
+                statistics.expanded();
+                for (Map.Entry<String, BitSet> successor : successors(node.state).entrySet()) {
+                    BitSet state = successor.getValue();
+                    if (!seen.add(state)) {
+                        continue;
+                    }
+                    statistics.generated();
+                    int estimate = layers(state);
+                    if (estimate != Integer.MAX_VALUE) {
+                        open.add(new Node(state, node, successor.getKey(), node.cost + 1, estimate, order++));
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Applies every action applicable in a state.
+         *
+         * @return The states reached, by the name of the action reaching them.
+         */
+        private Map<String, BitSet> successors(final BitSet state) {
+            final Map<String, BitSet> successors = new LinkedHashMap<>();
+            visitBindings(state, new BindingVisitor() {
+                public void visit(Compiled schema, int[] binding) {
+                    for (int[] atom : schema.negativePrecondition) {
+                        int id = ground(atom, binding, false);
+                        if (id >= 0 && state.get(id)) {
+                            return;
+                        }
+                    }
+                    BitSet successor = (BitSet) state.clone();
+                    for (int[] atom : schema.deleteEffects) {
+                        int id = ground(atom, binding, false);
+                        if (id >= 0) {
+                            successor.clear(id);
+                        }
+                    }
+                    for (int[] atom : schema.addEffects) {
+                        successor.set(ground(atom, binding, true));
+                    }
+                    StringBuilder name = new StringBuilder(schema.name);
+                    for (int object : binding) {
+                        name.append(' ').append(objects.get(object));
+                    }
+                    successors.put(name.toString(), successor);
+                }
+            });
+            return successors;
+        }
+
+        /**
+         * Counts the layers of relaxed reachability, where actions only add facts, before the goal holds.
+         *
+         * @return The number of layers, or Integer.MAX_VALUE if the goal is not reachable even then.
+         */
+        private int layers(BitSet state) {
+            final BitSet reached = (BitSet) state.clone();
+            int layer = 0;
+            while (!satisfies(reached)) {
+                final BitSet added = new BitSet();
+                visitBindings(reached, new BindingVisitor() {
+                    public void visit(Compiled schema, int[] binding) {
+                        for (int[] atom : schema.addEffects) {
+                            int id = ground(atom, binding, true);
+                            if (!reached.get(id)) {
+                                added.set(id);
+                            }
+                        }
+                    }
+                });
+                if (added.isEmpty()) {
+                    return Integer.MAX_VALUE;
+                }
+                reached.or(added);
+                layer++;
+            }
+            return layer;
+        }
+
+        /**
+         * Finds every binding of every schema under which its preconditions hold in a state.
+         */
+        private void visitBindings(BitSet state, BindingVisitor visitor) {
+            List<List<int[]>> byPredicate = new ArrayList<>();
+            for (int i = 0; i < predicates.size(); i++) {
+                byPredicate.add(new ArrayList<int[]>());
+            }
+            for (int f = state.nextSetBit(0); f >= 0; f = state.nextSetBit(f + 1)) {
+                int[] fact = facts.get(f);
+                byPredicate.get(fact[0]).add(fact);
+            }
+            for (Compiled schema : schemas) {
+                int[] binding = new int[schema.allowed.length];
+                Arrays.fill(binding, -1);
+                join(schema, 0, binding, byPredicate, visitor);
+            }
+        }
+
+        /**
+         * Binds parameters by matching the preconditions from the k-th on against the facts of the state.
+         */
+        private void join(Compiled schema, int k, int[] binding, List<List<int[]>> byPredicate, BindingVisitor visitor) {
+            if (k == schema.precondition.length) {
+                complete(schema, 0, binding, visitor);
+                return;
+            }
+            int[] atom = schema.precondition[k];
+            int[] newlyBound = new int[atom.length];
+            for (int[] fact : byPredicate.get(atom[0])) {
+                if (fact.length != atom.length) {
+                    continue;
+                }
+                int bound = 0;
+                boolean matches = true;
+                for (int i = 1; i < atom.length && matches; i++) {
+                    if (atom[i] >= 0) {
+                        matches = atom[i] == fact[i];
+                    } else {
+                        int p = -atom[i] - 1;
+                        if (binding[p] < 0) {
+                            binding[p] = fact[i];
+                            newlyBound[bound++] = p;
+                        } else {
+                            matches = binding[p] == fact[i];
+                        }
+                    }
+                }
+                if (matches) {
+                    join(schema, k + 1, binding, byPredicate, visitor);
+                }
+                for (int i = 0; i < bound; i++) {
+                    binding[newlyBound[i]] = -1;
+                }
+            }
+        }
+
+        /**
+         * Tries every allowed object for the parameters no precondition binds.
+         */
+        private void complete(Compiled schema, int p, int[] binding, BindingVisitor visitor) {
+            if (p == binding.length) {
+                visitor.visit(schema, binding);
+                return;
+            }
+            if (binding[p] >= 0) {
+                if (schema.allowed[p].get(binding[p])) {
+                    complete(schema, p + 1, binding, visitor);
+                }
+                return;
+            }
+            BitSet allowed = schema.allowed[p];
+            for (int o = allowed.nextSetBit(0); o >= 0; o = allowed.nextSetBit(o + 1)) {
+                binding[p] = o;
+                complete(schema, p + 1, binding, visitor);
+            }
+            binding[p] = -1;
+        }
+
+        /**
+         * Returns the id of an atom of a schema under a binding.
+         *
+         * @param create Whether to give the fact an id if it has none yet.
+         * @return The fact id, or -1 if the fact has no id and none was to be given.
+         */
+        private int ground(int[] atom, int[] binding, boolean create) {
+            StringBuilder key = new StringBuilder(predicates.get(atom[0]));
+            for (int i = 1; i < atom.length; i++) {
+                key.append(' ').append(objects.get(atom[i] >= 0 ? atom[i] : binding[-atom[i] - 1]));
+            }
+            Integer id = factIds.get(key.toString());
+            if (id != null || !create) {
+                return id == null ? -1 : id;
+            }
+            return fact(key.toString().split(" "));
+        }
+
+        private boolean satisfies(BitSet state) {
+            BitSet missing = (BitSet) goal.clone();
+            missing.andNot(state);
+            return missing.isEmpty();
+        }
+
+        private static List<String> extract(Node node) {
+            List<String> plan = new ArrayList<>();
+            for (Node n = node; n.parent != null; n = n.parent) {
+                plan.add(n.action);
+            }
+            Collections.reverse(plan);
+            return plan;
+        }
+
+        private int[][] compile(List<Object[]> atoms) {
+            int[][] compiled = new int[atoms.size()][];
+            for (int a = 0; a < compiled.length; a++) {
+                Object[] atom = atoms.get(a);
+                compiled[a] = new int[atom.length];
+                compiled[a][0] = predicate((String) atom[0]);
+                for (int i = 1; i < atom.length; i++) {
+                    compiled[a][i] = atom[i] instanceof Integer ? -(Integer) atom[i] - 1 : object((String) atom[i]);
+                }
+            }
+            return compiled;
+        }
+
+        /**
+         * Finds the objects a parameter may take: any object for an untyped parameter, otherwise the constants
+         * of its types and the objects from the problem, which have no declared type.
+         */
+        private BitSet allowed(List<String> types, Map<String, List<String>> constants) {
+            BitSet allowed = new BitSet();
+            boolean any = types.isEmpty() || types.contains("object");
+            for (int o = 0; o < objects.size(); o++) {
+                List<String> objectTypes = constants.get(objects.get(o));
+                if (any || objectTypes == null || !Collections.disjoint(types, objectTypes)) {
+                    allowed.set(o);
+                }
+            }
+            return allowed;
+        }
+
+        private int fact(String[] parts) {
+            String key = String.join(" ", parts);
+            Integer id = factIds.get(key);
+            if (id == null) {
+                int[] fact = new int[parts.length];
+                fact[0] = predicate(parts[0]);
+                for (int i = 1; i < parts.length; i++) {
+                    fact[i] = object(parts[i]);
+                }
+                id = facts.size();
+                facts.add(fact);
+                factIds.put(key, id);
+            }
+            return id;
+        }
+
+        private int predicate(String name) {
+            Integer id = predicateIds.get(name);
+            if (id == null) {
+                id = predicates.size();
+                predicates.add(name);
+                predicateIds.put(name, id);
+            }
+            return id;
+        }
+
+        private int object(String name) {
+            Integer id = objectIds.get(name);
+            if (id == null) {
+                id = objects.size();
+                objects.add(name);
+                objectIds.put(name, id);
+            }
+            return id;
+        }
+    }
+}
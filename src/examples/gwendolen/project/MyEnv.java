@@ -29,6 +29,7 @@ import ail.mas.DefaultEnvironment;
 import ail.mas.scheduling.ActionScheduler;
 import ail.semantics.AILAgent;
 import ail.syntax.*;
+import ail.util.AILConfig;
 import ail.util.AILexception;
 
 import java.util.List;
@@ -70,11 +71,33 @@ public class MyEnv extends DefaultEnvironment {
         // Execute the action
         else {
             ActionClass action = new ActionClass();
-            action.startAction(currentAg, act.toString());
+            // Recoveries the agent's next actions will need are planned while it carries on
+            RunPlanner.speculate(currentAg, action.typeOfPlanning);
+            action.startAction(currentAg, act.getFunctor(), act.getTerms());
         }
 
         return u;
     }
 
+    /**
+     * Reads the choice of planning engines, as well as the settings of the default environment, and makes the
+     * recovery telemetry available over JMX.
+     */
+    @Override
+    public void configure(AILConfig config) {
+        super.configure(config);
+        RunPlanner.configure(config);
+        RecoveryTelemetry.register();
+    }
+
+    /**
+     * Writes the recovery telemetry, if a file for it is configured, as the MAS shuts down.
+     */
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        RunPlanner.writeTelemetry();
+    }
+
 
 }
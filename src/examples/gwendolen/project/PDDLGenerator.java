@@ -1,13 +1,30 @@
 package gwendolen.project;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+
+import main.java.fr.uga.pddl4j.parser.Connective;
+import main.java.fr.uga.pddl4j.parser.Domain;
+import main.java.fr.uga.pddl4j.parser.Exp;
+import main.java.fr.uga.pddl4j.parser.NamedTypedList;
+import main.java.fr.uga.pddl4j.parser.Problem;
+import main.java.fr.uga.pddl4j.parser.RequireKey;
+import main.java.fr.uga.pddl4j.parser.Symbol;
 
 /**
- * The PDDLGenerator class is responsible for generating PDDL problem files based on given beliefs and predicates.
+ * The PDDLGenerator class is responsible for generating PDDL problems based on given beliefs and predicates,
+ * either as problem files for external planners or as PDDL4J problem objects built in memory.
  */
 public class PDDLGenerator {
+    // Name of the problem handed to the planner
+    private static final String PROBLEM_NAME = "textingproblem";
+    // Predicate which is always true, used as precondition of actions with no real precondition
+    static final String DUMMY_PREDICATE = "dummyPredicate";
 
     /**
      * Generates a PDDL problem file based on the specified agent name, beliefs, and predicates.
@@ -24,17 +41,7 @@ public class PDDLGenerator {
 
             // Create a FileWriter
             FileWriter writer = new FileWriter(filePath);
-
-            // Define your custom data for each section
-            String domainName = "shoppingdomain"; // Can be anything really
-            String[] initialState = beliefs.toArray(new String[0]);
-
-            // Write PDDL content to the file using custom data
-            writePDDLHeader(writer, "textingproblem", domainName);
-            //writePDDLObjects(writer, objectDeclarations);
-            writePDDLInitialState(writer, initialState, preprocessPredicates(predicates));
-            writePDDLGoalState(writer, preprocessPredicates(predicates));
-            writePDDLFooter(writer);
+            write(writer, beliefs, predicates);
 
             // Close the FileWriter
             writer.close();
@@ -44,29 +51,125 @@ public class PDDLGenerator {
         }
     }
 
+    /**
+     * Writes a PDDL problem based on the specified beliefs and predicates, for instance to a file or to the
+     * input of a planner process.
+     *
+     * @param writer The writer receiving the problem.
+     * @param beliefs The list of beliefs to be included in the PDDL problem.
+     * @param predicates The list of predicates representing the goal state of the PDDL problem.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(Writer writer, List<String> beliefs, List<String> predicates) throws IOException {
+        // Define your custom data for each section
+        String domainName = "shoppingdomain"; // Can be anything really
+        String[] initialState = beliefs.toArray(new String[0]);
+
+        // Write PDDL content using custom data
+        writePDDLHeader(writer, PROBLEM_NAME, domainName);
+        //writePDDLObjects(writer, objectDeclarations);
+        writePDDLInitialState(writer, initialState, preprocessPredicates(predicates));
+        writePDDLGoalState(writer, preprocessPredicates(predicates));
+        writePDDLFooter(writer);
+    }
+
+    /**
+     * Writes a PDDL problem for an encoded state and goal, for instance to the input of a planner process.
+     *
+     * @param writer The writer receiving the problem.
+     * @param domain The grounded domain the facts belong to.
+     * @param state The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(Writer writer, PlanningDomain domain, BitSet state, BitSet goal) throws IOException {
+        writePDDLHeader(writer, PROBLEM_NAME, domain.getDomain().getName().getImage());
+        writer.write("  (:init\n");
+        for (int f = state.nextSetBit(0); f >= 0; f = state.nextSetBit(f + 1)) {
+            writer.write("    (" + domain.getFact(f) + ")\n");
+        }
+        writer.write("  )\n");
+        writer.write("  (:goal\n");
+        writer.write("    (and\n");
+        for (int f = goal.nextSetBit(0); f >= 0; f = goal.nextSetBit(f + 1)) {
+            writer.write("      (" + domain.getFact(f) + ")\n");
+        }
+        writer.write("    )\n");
+        writer.write("  )\n");
+        writePDDLFooter(writer);
+    }
+
+    /**
+     * Writes a PDDL problem for a lifted domain, declaring the objects its facts mention as the domain does not
+     * declare them as constants.
+     *
+     * @param writer The writer receiving the problem.
+     * @param domain The lifted domain the facts belong to.
+     * @param state The facts true initially.
+     * @param goal The facts to achieve.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(Writer writer, LiftedDomain domain, Set<String> state, Set<String> goal) throws IOException {
+        List<String> facts = new ArrayList<>(state);
+        facts.addAll(goal);
+        writePDDLHeader(writer, PROBLEM_NAME, domain.getName());
+        writePDDLObjects(writer, domain.objects(facts));
+        writer.write("  (:init\n");
+        for (String fact : state) {
+            writer.write("    (" + fact + ")\n");
+        }
+        writer.write("  )\n");
+        writer.write("  (:goal\n");
+        writer.write("    (and\n");
+        for (String fact : goal) {
+            writer.write("      (" + fact + ")\n");
+        }
+        writer.write("    )\n");
+        writer.write("  )\n");
+        writePDDLFooter(writer);
+    }
+
     /**
      * Writes the PDDL header to the file.
      *
-     * @param writer The FileWriter object.
+     * @param writer The Writer object.
      * @param problemName The name of the PDDL problem.
      * @param domainName The name of the PDDL domain.
      * @throws IOException If an I/O error occurs.
      */
-    private static void writePDDLHeader(FileWriter writer, String problemName, String domainName) throws IOException {
+    private static void writePDDLHeader(Writer writer, String problemName, String domainName) throws IOException {
         writer.write("(define (problem " + problemName + ")\n");
         writer.write("  (:domain " + domainName + ")\n");
     }
 
 
+    /**
+     * Writes the objects of the problem, if there are any.
+     *
+     * @param writer The Writer object.
+     * @param objects The names of the objects.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void writePDDLObjects(Writer writer, Collection<String> objects) throws IOException {
+        if (objects.isEmpty()) {
+            return;
+        }
+        writer.write("  (:objects");
+        for (String object : objects) {
+            writer.write(" " + object);
+        }
+        writer.write(")\n");
+    }
+
     /**
      * Writes the PDDL initial state to the file.
      *
-     * @param writer The FileWriter object.
+     * @param writer The Writer object.
      * @param initialState The array of initial state predicates.
      * @param goalState The list of goal state predicates.
      * @throws IOException If an I/O error occurs.
      */
-    private static void writePDDLInitialState(FileWriter writer, String[] initialState, List<String> goalState) throws IOException {
+    private static void writePDDLInitialState(Writer writer, String[] initialState, List<String> goalState) throws IOException {
         writer.write("  (:init\n");
         if(initialState.length >= 1) {
             for (String initialStateFact : initialState) {
@@ -77,18 +180,18 @@ public class PDDLGenerator {
                 writer.write("    (not (" + goalStateFact + "))\n");
             }
         }
-        writer.write("    (" + "dummyPredicate" + ")\n");
+        writer.write("    (" + DUMMY_PREDICATE + ")\n");
         writer.write("  )\n");
     }
 
     /**
      * Writes the PDDL goal state to the file.
      *
-     * @param writer The FileWriter object.
+     * @param writer The Writer object.
      * @param predicates The list of goal state predicates.
      * @throws IOException If an I/O error occurs.
      */
-    private static void writePDDLGoalState(FileWriter writer, List<String> predicates) throws IOException {
+    private static void writePDDLGoalState(Writer writer, List<String> predicates) throws IOException {
         writer.write("  (:goal\n");
         writer.write("    (and\n");
 
@@ -104,10 +207,10 @@ public class PDDLGenerator {
     /**
      * Writes the PDDL footer to the file.
      *
-     * @param writer The FileWriter object.
+     * @param writer The Writer object.
      * @throws IOException If an I/O error occurs.
      */
-    private static void writePDDLFooter(FileWriter writer) throws IOException {
+    private static void writePDDLFooter(Writer writer) throws IOException {
         writer.write(")\n");
     }
 
@@ -137,4 +240,74 @@ public class PDDLGenerator {
         }
         return formattedPredicates;
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds a PDDL4J problem directly from the specified beliefs and predicates, without writing or parsing
+     * any problem file.
+     * Beliefs whose predicate is not declared in the domain are left out, as no action can refer to them.
+     *
+     * @param domain The parsed planning domain the problem is built against.
+     * @param beliefs The list of beliefs forming the initial state of the problem.
+     * @param predicates The list of predicates representing the goal state of the problem.
+     * @return The PDDL4J problem.
+     */
+    public static Problem buildProblem(Domain domain, List<String> beliefs, List<String> predicates) {
+        Problem problem = new Problem(new Symbol(Symbol.Kind.PROBLEM, PROBLEM_NAME));
+        problem.setDomain(new Symbol(domain.getName()));
+        problem.addRequirement(RequireKey.STRIPS);
+
+        // Initial state: closed world, so missing beliefs need no (not ...) facts
+        for (String belief : beliefs) {
+            Exp fact = toAtom(belief);
+            if (isDeclared(domain, fact)) {
+                problem.addInitialFact(fact);
+            }
+        }
+        problem.addInitialFact(toAtom(DUMMY_PREDICATE));
+
+        // Goal state
+        Exp goal = new Exp(Connective.AND);
+        for (String predicate : preprocessPredicates(predicates)) {
+            goal.addChild(toAtom(predicate));
+        }
+        problem.setGoal(goal);
+        return problem;
+    }
+
+    /**
+     * Converts a belief or predicate such as hasPhone or at(home) into a PDDL atom.
+     * Names are lower cased, as the PDDL parser does for the domain.
+     *
+     * @param predicate The predicate to convert.
+     * @return The atomic expression.
+     */
+    private static Exp toAtom(String predicate) {
+        String[] parts = predicate.replaceAll("[()]", " ").split("[\\s,]+");
+        List<Symbol> atom = new ArrayList<>();
+        for (String part : parts) {
+            if (part.isEmpty()) {continue;}
+            Symbol.Kind kind = atom.isEmpty() ? Symbol.Kind.PREDICATE : Symbol.Kind.CONSTANT;
+            atom.add(new Symbol(kind, part.toLowerCase()));
+        }
+        Exp exp = new Exp(Connective.ATOM);
+        exp.setAtom(atom);
+        return exp;
+    }
+
+    /**
+     * Checks whether the predicate of an atom is declared in the domain with a matching arity.
+     *
+     * @param domain The planning domain.
+     * @param atom The atomic expression.
+     * @return True if the predicate is declared, otherwise false.
+     */
+    private static boolean isDeclared(Domain domain, Exp atom) {
+        Symbol name = atom.getAtom().get(0);
+        for (NamedTypedList declared : domain.getPredicates()) {
+            if (declared.getName().equals(name) && declared.getArguments().size() == atom.getAtom().size() - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the plans found by another planner, so that agents failing the same way again, or failing the
+ * way another agent already has, get their plan from a lookup.
+ * Plans are keyed on the facts of the domain which hold in the agent's beliefs together with the goal, so
+ * beliefs the domain does not mention never cause a miss. The rest of a plan is also remembered from each
+ * state it passes through, which lets online planning reuse a plan one step at a time. A stored plan is
+ * replayed against the current state before it is returned, and the least recently used plans are dropped
+ * once the cache is full.
+ */
+public class PlanCache implements PlannerBackend {
+    private final PlannerBackend planner;
+    private final Map<Key, List<String>> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache in front of a planner.
+     *
+     * @param planner The planner asked on a miss.
+     * @param capacity The maximum number of plans kept.
+     */
+    public PlanCache(PlannerBackend planner, final int capacity) {
+        this.planner = planner;
+        this.plans = new LinkedHashMap<Key, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<String>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+        Key key = new Key(domain, state, goal);
+        List<String> plan;
+        synchronized (plans) {
+            plan = plans.get(key);
+        }
+        if (plan != null && replay(domain, state, goal, plan) != null) {
+            hits.incrementAndGet();
+            RecoveryTelemetry.count(RecoveryTelemetry.Counter.CACHE_HITS);
+            return new ArrayList<>(plan);
+        }
+
+        misses.incrementAndGet();
+        RecoveryTelemetry.count(RecoveryTelemetry.Counter.CACHE_MISSES);
+        plan = planner.plan(domain, state, goal, deadline);
+        if (plan != null && !plan.isEmpty()) {
+            store(domain, state, goal, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Removes all stored plans.
+     */
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Stores a plan, and the rest of it from every state it passes through, if it reaches the goal.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param plan The plan.
+     */
+    private void store(PlanningDomain domain, BitSet state, BitSet goal, List<String> plan) {
+        List<BitSet> states = replay(domain, state, goal, plan);
+        if (states == null) {
+            return; // Not a plan for this problem in our model of the domain, so it cannot be checked later
+        }
+        // Keys keep their own copies, as callers may go on changing their sets
+        BitSet target = (BitSet) goal.clone();
+        synchronized (plans) {
+            for (int i = 0; i < plan.size(); i++) {
+                plans.put(new Key(domain, (BitSet) states.get(i).clone(), target), new ArrayList<>(plan.subList(i, plan.size())));
+            }
+        }
+    }
+
+    /**
+     * Executes a plan on a state.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param plan The names of the plan's actions.
+     * @return The states before each action, or null if an action is unknown or not applicable, or the plan
+     *         does not reach the goal.
+     */
+    private static List<BitSet> replay(PlanningDomain domain, BitSet state, BitSet goal, List<String> plan) {
+        List<BitSet> states = new ArrayList<>();
+        BitSet current = state;
+        for (String step : plan) {
+            GroundAction action = domain.getAction(step);
+            if (action == null || !action.isApplicable(current)) {
+                return null;
+            }
+            states.add(current);
+            current = action.apply(current);
+        }
+        return AStarSearch.satisfies(current, goal) ? states : null;
+    }
+
+    /**
+     * The problem a plan solves. The domain is compared by identity, so plans are not reused once the domain
+     * file has been reloaded.
+     */
+    private static class Key {
+        final PlanningDomain domain;
+        final BitSet state;
+        final BitSet goal;
+
+        Key(PlanningDomain domain, BitSet state, BitSet goal) {
+            this.domain = domain;
+            this.state = state;
+            this.goal = goal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return domain == other.domain && state.equals(other.state) && goal.equals(other.goal);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(domain) + state.hashCode()) + goal.hashCode();
+        }
+    }
+}
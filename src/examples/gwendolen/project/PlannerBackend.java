@@ -0,0 +1,23 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A planner which agents can ask for a plan from their encoded beliefs to a set of goal facts, whether it runs
+ * in the JVM or as an external program.
+ */
+public interface PlannerBackend {
+
+    /**
+     * Plans from a state to a goal.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts true in the agent's beliefs.
+     * @param goal The set of facts to achieve.
+     * @param deadline The time by which the plan is needed.
+     * @return The names of the plan's actions in order, an empty list if the goal already holds, or null if
+     *         no plan was found in time.
+     */
+    List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline);
+}
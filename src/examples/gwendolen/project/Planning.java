@@ -3,8 +3,10 @@ package gwendolen.project;
 import ail.semantics.AILAgent;
 import ail.syntax.Term;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The Planning class is responsible for executing planning tasks for an AILAgent.
@@ -19,14 +21,57 @@ public class Planning {
      * @return true if planning execution is successful, false otherwise.
      */
     public boolean execute(AILAgent ag, List<Term> args) {
+        String previous = RecoveryTelemetry.enter(ag.getAgName());
+        boolean planned = false;
+        try {
+            planned = plan(ag, args);
+            return planned;
+        } finally {
+            RecoveryTelemetry.leave(previous, planned);
+        }
+    }
+
+    private boolean plan(AILAgent ag, List<Term> args) {
         ActionClass action = new ActionClass();
         int typeOfPlanning = action.typeOfPlanning;
 
-        List<String> predicates = new ArrayList<>();
-        List<String> beliefs = action.extractBeliefs(ag);
+        if (RunPlanner.isLifted()) {
+            // Parameterised domains are planned over their schemas, with the objects the beliefs mention
+            LiftedDomain lifted;
+            try {
+                lifted = RunPlanner.liftedDomain();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            Set<String> liftedGoal = lifted.encodeGoal(args);
+            if (liftedGoal == null) {
+                System.out.println("Planning predicates " + args + " are not part of the planning domain");
+                return false;
+            }
+            return LiftedRecovery.recover(ag, action, lifted, liftedGoal, typeOfPlanning, "planning", "Direct Planning Call");
+        }
 
-        for (Term pred : args){predicates.add(pred.toString());}
-        List<String>goalStates = findPredicates(beliefs, predicates);
+        // Encode the beliefs and the planning predicates
+        StateEncoder encoder;
+        try {
+            encoder = RunPlanner.encoder();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        PlanningDomain domain = encoder.getDomain();
+        BitSet goal = encoder.encodeGoal(args);
+        if (goal == null) {
+            System.out.println("Planning predicates " + args + " are not part of the planning domain");
+            return false;
+        }
+        if (RunPlanner.isHierarchical()) {
+            // Predicates which are goals of the agent's plans are reached the way those plans reach them
+            return HierarchicalRecovery.establish(ag, action, encoder, goal, typeOfPlanning, "planning", "Direct Planning Call");
+        }
+        BitSet state = encoder.encode(ag.getBB());
+        BitSet goalStates = StateEncoder.missing(state, goal);
 
         // If Type of planning selected is invalid... Default to Online
         if (typeOfPlanning != 1 && typeOfPlanning != 2) {
@@ -35,61 +80,53 @@ public class Planning {
         }
 
         if (typeOfPlanning==1) {
-            List<String> plan = RunPlanner.run(ag.getAgName(), beliefs, goalStates, 1);
+            Deadline deadline = RunPlanner.newDeadline();
+            List<String> plan = RunPlanner.run(ag.getAgName(), domain, state, goalStates, 1, deadline);
+            if (plan.isEmpty() && deadline.expired()) {
+                RunPlanner.reportNoPlanWithinBudget(ag, "planning");
+                return false;
+            }
 
             if(plan.isEmpty()){
-                System.out.println("An error occured with the planner");
-                System.out.println("To debug: Go to RunPlanner.java and print the output.");
+                RunPlanner.reportNoPlan(ag, "planning");
                 return false;
             }
 
             // Log recovery and planner information
             System.out.println(ag.getAgName()+" --> Direct Planning Call --> Running Action --> "+plan);
 
-            for (String act : plan) {
-                boolean success = action.startAction(ag, act.toLowerCase());
-                if (success) {return true;} else {return false;}
-            }
+            // Each step is checked before it runs, and the plan repaired where it stops working
+            return RunPlanner.monitor(ag, encoder, 1).execute(ag, action, plan, goal, deadline);
         }
         if (typeOfPlanning ==2) {
+            // The plan is kept between steps and only searched for again once it stops working
+            IncrementalReplanner replanner = RunPlanner.startOnlineRecovery(ag.getAgName(), domain);
             // While goalStates are not fulfilled...
-            while (goalStates.size() != 0) {
-                // Prepare a list for the planner with the provided argument
-                List<String> plan = RunPlanner.run(ag.getAgName(), beliefs, goalStates, 2);
-
-                // Debugging information if plan produced by planner is empty...
-                if (plan.isEmpty()) {
-                    System.out.println("An error occured with the planner");
-                    System.out.println("To debug: Go to RunPlanner.java and print the output.");
+            while (!goalStates.isEmpty()) {
+                String step = replanner.nextStep(domain, state, goalStates);
+
+                if (step == null && replanner.isOutOfTime()) {
+                    RunPlanner.reportNoPlanWithinBudget(ag, "planning");
+                    return false;
+                }
+                // The planner found nothing although it had time left
+                if (step == null) {
+                    RunPlanner.reportNoPlan(ag, "planning");
                     return false;
                 }
-                System.out.println(ag.getAgName()+" --> Direct Planning Call --> Running Action --> "+plan);
+                System.out.println(ag.getAgName()+" --> Direct Planning Call --> Running Action --> "+step);
 
-                // Execute the actions returned by the planner
-                boolean success = action.startAction(ag, plan.get(0).toLowerCase());
+                // Execute the action returned by the planner
+                boolean success = action.executeStep(ag, step);
                 if (!success) {
                     System.out.println("Recovery failure");
                 }
 
-                beliefs = action.extractBeliefs(ag);
-                goalStates = findPredicates(beliefs, predicates);
+                state = encoder.encode(ag.getBB());
+                goalStates = StateEncoder.missing(state, goal);
             }
         }
         return true;
     }
 
-    /**
-     * Finds the predicates that are missing in the provided beliefs.
-     * @param beliefs The list of beliefs.
-     * @param predicates The list of predicates to check.
-     * @return A list of predicates that are missing in the beliefs.
-     */
-    private static List<String> findPredicates(List<String> beliefs, List<String> predicates) {
-        List<String> missingPredicates = new ArrayList<>();
-        for (String pred : predicates) {
-            if (!beliefs.contains(pred)) {missingPredicates.add(pred);}
-        }
-        return missingPredicates;
-    }
-
 }
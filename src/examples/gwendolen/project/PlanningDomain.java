@@ -0,0 +1,399 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import main.java.fr.uga.pddl4j.parser.Connective;
+import main.java.fr.uga.pddl4j.parser.Domain;
+import main.java.fr.uga.pddl4j.parser.Exp;
+import main.java.fr.uga.pddl4j.parser.NamedTypedList;
+import main.java.fr.uga.pddl4j.parser.Op;
+import main.java.fr.uga.pddl4j.parser.Problem;
+import main.java.fr.uga.pddl4j.parser.Symbol;
+import main.java.fr.uga.pddl4j.parser.TypedSymbol;
+
+/**
+ * A parsed planning domain which has been grounded once, so that planning problems only need their initial
+ * state and goal encoded.
+ * Every ground fact gets a dense integer id and every action is instantiated over the domain's constants.
+ * Instances are never modified after construction, apart from remembering their relevant slices, and can be
+ * shared between agents.
+ */
+public class PlanningDomain {
+    private final Domain domain;
+    private final Map<String, Integer> factIds;
+    private final List<String> facts;
+    private final List<GroundAction> actions = new ArrayList<>();
+    private final Map<String, GroundAction> actionsByName = new HashMap<>();
+    private final Map<String, String> spellings;
+    // Facts which can matter to the goals of this slice, or null for the whole domain
+    private final BitSet relevantFacts;
+    // Slices already computed, keyed by goal. Goals come from plan contexts and action preconditions, so there are few
+    private final Map<BitSet, PlanningDomain> slices = new ConcurrentHashMap<>();
+
+    /**
+     * Grounds a parsed domain.
+     *
+     * @param domain The domain as parsed by PDDL4J.
+     */
+    public PlanningDomain(Domain domain) {
+        this(domain, new HashMap<String, String>());
+    }
+
+    /**
+     * Grounds a parsed domain, remembering how its names were spelt before the parser lowered their case.
+     *
+     * @param domain The domain as parsed by PDDL4J.
+     * @param spellings The names of the domain file in their original case, keyed by their lower case form.
+     */
+    public PlanningDomain(Domain domain, Map<String, String> spellings) {
+        this.domain = domain;
+        this.spellings = spellings;
+        this.factIds = new HashMap<>();
+        this.facts = new ArrayList<>();
+        this.relevantFacts = null;
+        List<TypedSymbol> objects = domain.getConstants();
+
+        // Every declared predicate over the constants is a fact, whether or not an action uses it
+        for (NamedTypedList predicate : domain.getPredicates()) {
+            List<List<Symbol>> bindings = bindings(predicate.getArguments(), objects);
+            for (List<Symbol> binding : bindings) {
+                List<Symbol> atom = new ArrayList<>();
+                atom.add(predicate.getName());
+                atom.addAll(binding);
+                addFact(factKey(atom, null));
+            }
+        }
+
+        for (Op op : domain.getOperators()) {
+            for (List<Symbol> binding : bindings(op.getParameters(), objects)) {
+                Map<String, Symbol> substitution = new HashMap<>();
+                StringBuilder name = new StringBuilder(op.getName().getImage());
+                for (int i = 0; i < binding.size(); i++) {
+                    substitution.put(op.getParameters().get(i).getImage(), binding.get(i));
+                    name.append(" ").append(binding.get(i).getImage());
+                }
+                BitSet pre = new BitSet();
+                BitSet negPre = new BitSet();
+                BitSet add = new BitSet();
+                BitSet del = new BitSet();
+                encode(op.getPreconditions(), substitution, pre, negPre, op);
+                encode(op.getEffects(), substitution, add, del, op);
+                GroundAction action = new GroundAction(name.toString(), pre, negPre, add, del);
+                actions.add(action);
+                actionsByName.put(action.getName(), action);
+            }
+        }
+    }
+
+    /**
+     * Creates the slice of a domain keeping only some of its actions. Facts keep their ids.
+     *
+     * @param whole The domain being sliced.
+     * @param relevantFacts The facts which can matter to the goals of the slice.
+     * @param actions The actions kept.
+     */
+    private PlanningDomain(PlanningDomain whole, BitSet relevantFacts, List<GroundAction> actions) {
+        this.domain = whole.domain;
+        this.spellings = whole.spellings;
+        this.factIds = whole.factIds;
+        this.facts = whole.facts;
+        this.relevantFacts = relevantFacts;
+        for (GroundAction action : actions) {
+            this.actions.add(action);
+            actionsByName.put(action.getName(), action);
+        }
+    }
+
+    /**
+     * Returns the part of the domain which can matter for reaching a goal.
+     * Working back from the goal, an action is relevant if it adds a fact some relevant action or the goal
+     * needs, or deletes a fact a relevant action needs to be false; the preconditions of relevant actions are
+     * then needed in turn. Plans of the slice are plans of the whole domain, and no plan is lost by leaving
+     * the other actions out, since they can only undo what the goal needs.
+     *
+     * @param goal The set of facts to achieve.
+     * @return The slice, which is shared by every caller with the same goal.
+     */
+    public PlanningDomain relevantTo(BitSet goal) {
+        PlanningDomain slice = slices.get(goal);
+        if (slice == null) {
+            // Computed at most once, as caches compare slices by identity
+            slice = slices.computeIfAbsent((BitSet) goal.clone(), new Function<BitSet, PlanningDomain>() {
+                public PlanningDomain apply(BitSet key) {
+                    return slice(key);
+                }
+            });
+        }
+        return slice;
+    }
+
+    /**
+     * Restricts a state to the facts which matter in this slice, so that beliefs no relevant action mentions
+     * are never handed to a planner.
+     *
+     * @param state The set of facts true in the agent's beliefs.
+     * @return The set of relevant facts true in the beliefs, or the state itself for the whole domain.
+     */
+    public BitSet restrict(BitSet state) {
+        if (relevantFacts == null) {
+            return state;
+        }
+        BitSet restricted = (BitSet) state.clone();
+        restricted.and(relevantFacts);
+        return restricted;
+    }
+
+    /**
+     * Computes the backward reachable slice of the domain for a goal.
+     *
+     * @param goal The set of facts to achieve.
+     * @return The slice.
+     */
+    private PlanningDomain slice(BitSet goal) {
+        BitSet needed = (BitSet) goal.clone(); // Facts which must become true
+        BitSet excluded = new BitSet();        // Facts which must become false
+        boolean[] relevant = new boolean[actions.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < actions.size(); i++) {
+                GroundAction action = actions.get(i);
+                if (!relevant[i] && (action.getAddEffects().intersects(needed) || action.getDeleteEffects().intersects(excluded))) {
+                    relevant[i] = true;
+                    needed.or(action.getPrecondition());
+                    excluded.or(action.getNegativePrecondition());
+                    changed = true;
+                }
+            }
+        }
+
+        List<GroundAction> kept = new ArrayList<>();
+        for (int i = 0; i < actions.size(); i++) {
+            if (relevant[i]) {
+                kept.add(actions.get(i));
+            }
+        }
+        BitSet facts = needed;
+        facts.or(excluded);
+        return new PlanningDomain(this, facts, kept);
+    }
+
+    /**
+     * Encodes the initial state of a problem. Facts unknown to the domain are ignored.
+     *
+     * @param problem The planning problem.
+     * @return The set of facts true initially.
+     */
+    public BitSet encodeInitialState(Problem problem) {
+        BitSet state = new BitSet(facts.size());
+        for (Exp fact : problem.getInit()) {
+            Integer id = factIds.get(factKey(fact.getAtom(), null));
+            if (id != null) {
+                state.set(id);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Encodes the goal of a problem.
+     *
+     * @param problem The planning problem.
+     * @return The set of facts to achieve, or null if the goal mentions a fact unknown to the domain.
+     */
+    public BitSet encodeGoal(Problem problem) {
+        BitSet goal = new BitSet(facts.size());
+        BitSet unused = new BitSet();
+        try {
+            encode(problem.getGoal(), new HashMap<String, Symbol>(), goal, unused, null);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return unused.isEmpty() ? goal : null;
+    }
+
+    /**
+     * Returns a name as it was spelt in the domain file.
+     *
+     * @param name The name, in any case.
+     * @return The original spelling, or the name itself if the domain file does not contain it.
+     */
+    public String getSpelling(String name) {
+        String spelt = spellings.get(name.toLowerCase());
+        return spelt == null ? name : spelt;
+    }
+
+    public Domain getDomain() {
+        return domain;
+    }
+
+    /**
+     * Returns the facts which can matter in this slice.
+     *
+     * @return The relevant facts, or null for the whole domain.
+     */
+    public BitSet getRelevantFacts() {
+        return relevantFacts;
+    }
+
+    public List<GroundAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * Finds a ground action by name, such as a step of a plan produced by an external planner.
+     *
+     * @param name The action name followed by its arguments, separated by spaces, in any case.
+     * @return The action, or null if the domain has no such action.
+     */
+    public GroundAction getAction(String name) {
+        return actionsByName.get(name.toLowerCase());
+    }
+
+    /**
+     * Returns the id of a fact.
+     *
+     * @param fact The fact as its lower case predicate name followed by its arguments, separated by spaces.
+     * @return The fact id, or -1 if the fact is unknown.
+     */
+    public int getFactId(String fact) {
+        Integer id = factIds.get(fact);
+        return id == null ? -1 : id;
+    }
+
+    public String getFact(int id) {
+        return facts.get(id);
+    }
+
+    public int numberOfFacts() {
+        return facts.size();
+    }
+
+    /**
+     * Adds the atoms of a conjunction of literals to the positive and negative fact sets.
+     *
+     * @param exp The expression to encode.
+     * @param substitution The values of the action parameters.
+     * @param positive The set receiving positive atoms.
+     * @param negative The set receiving negated atoms.
+     * @param op The action the expression belongs to, for error messages.
+     */
+    private void encode(Exp exp, Map<String, Symbol> substitution, BitSet positive, BitSet negative, Op op) {
+        switch (exp.getConnective()) {
+            case TRUE:
+                break;
+            case ATOM:
+                positive.set(lookup(exp.getAtom(), substitution));
+                break;
+            case AND:
+                for (Exp child : exp.getChildren()) {
+                    encode(child, substitution, positive, negative, op);
+                }
+                break;
+            case NOT:
+                Exp negated = exp.getChildren().get(0);
+                if (negated.getConnective() != Connective.ATOM) {
+                    throw new IllegalArgumentException("Only negated atoms are supported: " + exp);
+                }
+                negative.set(lookup(negated.getAtom(), substitution));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported expression" + (op == null ? "" : " in action " + op.getName()) + ": " + exp);
+        }
+    }
+
+    /**
+     * Looks up the id of an atom after substituting action parameters.
+     *
+     * @param atom The atom.
+     * @param substitution The values of the action parameters.
+     * @return The fact id.
+     */
+    private int lookup(List<Symbol> atom, Map<String, Symbol> substitution) {
+        String key = factKey(atom, substitution);
+        Integer id = factIds.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException("Undeclared fact: " + key);
+        }
+        return id;
+    }
+
+    /**
+     * Registers a fact, giving it the next free id.
+     *
+     * @param key The fact.
+     */
+    private void addFact(String key) {
+        if (!factIds.containsKey(key)) {
+            factIds.put(key, facts.size());
+            facts.add(key);
+        }
+    }
+
+    /**
+     * Builds the key of a fact from an atom.
+     *
+     * @param atom The predicate symbol followed by its arguments.
+     * @param substitution The values of variables in the atom, or null if it is ground.
+     * @return The lower case predicate name followed by its arguments, separated by spaces.
+     */
+    static String factKey(List<Symbol> atom, Map<String, Symbol> substitution) {
+        StringBuilder key = new StringBuilder();
+        for (Symbol symbol : atom) {
+            Symbol value = substitution == null ? null : substitution.get(symbol.getImage());
+            if (key.length() > 0) {
+                key.append(' ');
+            }
+            key.append((value == null ? symbol : value).getImage().toLowerCase());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Enumerates every assignment of objects to a list of typed parameters.
+     *
+     * @param parameters The parameters.
+     * @param objects The objects which may be assigned.
+     * @return The assignments, each listing one object per parameter.
+     */
+    private static List<List<Symbol>> bindings(List<TypedSymbol> parameters, List<TypedSymbol> objects) {
+        List<List<Symbol>> bindings = new ArrayList<>();
+        bindings.add(new ArrayList<Symbol>());
+        for (TypedSymbol parameter : parameters) {
+            List<List<Symbol>> extended = new ArrayList<>();
+            for (List<Symbol> binding : bindings) {
+                for (TypedSymbol object : objects) {
+                    if (hasType(object, parameter)) {
+                        List<Symbol> b = new ArrayList<>(binding);
+                        b.add(object);
+                        extended.add(b);
+                    }
+                }
+            }
+            bindings = extended;
+        }
+        return bindings;
+    }
+
+    /**
+     * Checks whether an object may be assigned to a parameter.
+     *
+     * @param object The object.
+     * @param parameter The parameter.
+     * @return True if the parameter is untyped, of type object, or shares a type with the object.
+     */
+    private static boolean hasType(TypedSymbol object, TypedSymbol parameter) {
+        for (Symbol type : parameter.getTypes()) {
+            if (type.getImage().equals("object") || object.getTypes().contains(type)) {
+                return true;
+            }
+        }
+        return parameter.getTypes().isEmpty();
+    }
+}
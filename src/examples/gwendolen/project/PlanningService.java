@@ -0,0 +1,126 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs planning problems on a bounded pool of worker threads, so that the problems of independent agents
+ * are solved in parallel rather than queueing behind a single planner invocation.
+ * Grounded domains are shared read-only and every search keeps its own state, so no lock is needed around
+ * the planner. When all workers are busy and the queue is full, the requesting thread plans itself.
+ */
+public class PlanningService {
+    // Number of problems which may wait for a worker before callers plan on their own thread
+    private static final int QUEUE_SIZE = 64;
+    // How long past its deadline a search may take to return its plan before it is abandoned
+    private static final long GRACE_MS = 100;
+
+    private static final PlanningService instance = new PlanningService(Runtime.getRuntime().availableProcessors());
+
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Creates a planning service.
+     *
+     * @param threads The number of worker threads.
+     */
+    public PlanningService(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "planner-" + count.incrementAndGet());
+                        t.setDaemon(true); // Never keep the MAS alive
+                        return t;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the service shared by all agents in the JVM.
+     *
+     * @return The shared planning service.
+     */
+    public static PlanningService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues a planning problem.
+     *
+     * @param planner The search engine solving the problem.
+     * @param domain The grounded planning domain.
+     * @param init The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param deadline The time by which the search must return.
+     * @param statistics Receives the work done by the search and its wall time. It must not be read before
+     *        the plan is available.
+     * @return The future plan, which is null if there is no plan.
+     */
+    public Future<List<GroundAction>> submit(final RecoveryPlanner planner, final PlanningDomain domain, BitSet init, BitSet goal,
+                                             final Deadline deadline, final SearchStatistics statistics) {
+        // Copy the state so the caller may keep changing its own sets
+        final BitSet initCopy = (BitSet) init.clone();
+        final BitSet goalCopy = (BitSet) goal.clone();
+        return workers.submit(new Callable<List<GroundAction>>() {
+            public List<GroundAction> call() {
+                long start = System.nanoTime();
+                try {
+                    return planner.search(domain, initCopy, goalCopy, deadline, statistics);
+                } finally {
+                    statistics.finished(System.nanoTime() - start);
+                    if (deadline.expired()) {
+                        statistics.timedOut();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Solves a planning problem, waiting for the result until shortly after the deadline. Searches are expected
+     * to stop by themselves at the deadline; one which does not is abandoned.
+     *
+     * @param planner The search engine solving the problem.
+     * @param domain The grounded planning domain.
+     * @param init The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param deadline The time by which the search must return.
+     * @param statistics Receives the work done by the search and its wall time.
+     * @return The actions of the plan, or null if there is no plan or none was found in time.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @throws ExecutionException If the search failed.
+     */
+    public List<GroundAction> plan(RecoveryPlanner planner, PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline,
+                                   SearchStatistics statistics) throws InterruptedException, ExecutionException {
+        Future<List<GroundAction>> plan = submit(planner, domain, init, goal, deadline, statistics);
+        if (!deadline.isBounded()) {
+            return plan.get();
+        }
+        try {
+            return plan.get(deadline.remainingMillis() + GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plan.cancel(true);
+            return null;
+        }
+    }
+
+    /**
+     * Stops the worker threads once queued problems have been solved.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package gwendolen.project;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import ail.semantics.AILAgent;
+
+/**
+ * The loop shared by lifted and hierarchical recovery: a plan is made from the agent's beliefs and executed, and
+ * if a step fails on the way, a new plan is made from the beliefs as they are then.
+ */
+final class RecoveryLoop {
+    // Logger for recovery logging
+    private static final Logger recoveryLogger = Logger.getLogger("t1."+"Recovery");
+
+    // Plans executed before a recovery gives up
+    private static final int MAX_PLANS = 3;
+
+    /**
+     * Makes a plan from what the agent believes when it is called.
+     */
+    interface PlanSource {
+        /**
+         * @param deadline The time by which the plan is needed.
+         * @return The steps of the plan, an empty list if nothing is left to do, or null if no plan was found.
+         */
+        List<String> plan(Deadline deadline);
+    }
+
+    private RecoveryLoop() {
+    }
+
+    /**
+     * Checks the choice of planner, defaulting to online planning.
+     *
+     * @param typeOfPlanning The choice of planner (1 for FF planner, 2 for PDDL4J Implementation).
+     * @return The choice of planner, or 2 if it was neither.
+     */
+    static int typeOfPlanning(int typeOfPlanning) {
+        if (typeOfPlanning != 1 && typeOfPlanning != 2) {
+            recoveryLogger.info("Invalid Type of Planning Selected... Defaulting to Online Planning");
+            return 2;
+        }
+        return typeOfPlanning;
+    }
+
+    /**
+     * Plans and executes until nothing is left to do.
+     *
+     * @param ag The agent.
+     * @param action Executes the steps of the plans.
+     * @param source Makes the plans.
+     * @param name The action or goal being recovered, reported to the agent if no plan is found in time, and
+     *             logged if none is found at all.
+     * @param description What failed, for the log.
+     * @return True if nothing is left to do at the end, otherwise false.
+     */
+    static boolean run(AILAgent ag, ActionClass action, PlanSource source, String name, String description) {
+        Deadline deadline = RunPlanner.newDeadline();
+        for (int attempt = 0; ; attempt++) {
+            List<String> plan = source.plan(deadline);
+            if (plan == null && deadline.expired()) {
+                RunPlanner.reportNoPlanWithinBudget(ag, name);
+                return false;
+            }
+            if (plan == null) {
+                RunPlanner.reportNoPlan(ag, name);
+                return false;
+            }
+            if (plan.isEmpty()) {
+                return true;
+            }
+            if (attempt == MAX_PLANS) {
+                return false;
+            }
+            recoveryLogger.info(ag.getAgName() + " --> " + description + " --> Running Action --> " + plan);
+            for (String step : plan) {
+                if (!action.executeStep(ag, step)) {
+                    recoveryLogger.info("Recovery failure");
+                    break; // Plan again from what the agent now believes
+                }
+            }
+        }
+    }
+}
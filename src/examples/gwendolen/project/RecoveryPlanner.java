@@ -0,0 +1,27 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A search engine used to plan recoveries inside the JVM.
+ * Engines are chosen per agent or per domain in the .ail file (see RunPlanner.configure); besides the built in
+ * engines named in RecoveryPlanners, any class implementing this interface with a public no argument
+ * constructor can be named there. Engines may be used by several threads at once, so they must keep their
+ * search state local to each call.
+ */
+public interface RecoveryPlanner {
+
+    /**
+     * Searches for a plan reaching the goal from the initial state.
+     *
+     * @param domain The grounded planning domain.
+     * @param init The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @param deadline The time by which the search must return. Once it has passed, anytime engines return the
+     *        best plan found so far and other engines return null.
+     * @param statistics Receives the number of nodes expanded and generated by the search.
+     * @return The actions of the plan, or null if no plan was found.
+     */
+    List<GroundAction> search(PlanningDomain domain, BitSet init, BitSet goal, Deadline deadline, SearchStatistics statistics);
+}
@@ -0,0 +1,71 @@
+package gwendolen.project;
+
+/**
+ * Creates recovery planners from the names used in .ail files:
+ * <ul>
+ * <li>astar: optimal A* with the max heuristic, the default;</li>
+ * <li>wastar or wastar:W: weighted A* with the relaxed plan heuristic and weight W (2 if not given);</li>
+ * <li>gbfs: greedy best first search with the relaxed plan heuristic;</li>
+ * <li>ehc: enforced hill climbing, falling back to gbfs;</li>
+ * <li>bfs: breadth first search, for tiny domains;</li>
+ * <li>anytime: gbfs followed by ever better weighted A*, returning the best plan when the deadline passes;</li>
+ * <li>the fully qualified name of any other class implementing RecoveryPlanner.</li>
+ * </ul>
+ */
+public class RecoveryPlanners {
+    // Engine used when none is configured
+    public static final String DEFAULT = "astar";
+    // Engine used when none is configured but recoveries have a deadline
+    public static final String DEFAULT_WITH_DEADLINE = "anytime";
+    // Weight of weighted A* when none is given
+    private static final int DEFAULT_WEIGHT = 2;
+
+    /**
+     * Creates a recovery planner.
+     *
+     * @param name The name of the engine.
+     * @return A new planner.
+     * @throws IllegalArgumentException If there is no such engine.
+     */
+    public static RecoveryPlanner create(String name) {
+        String engine = name.trim();
+        switch (engine.toLowerCase()) {
+            case "astar":
+                return new AStarSearch();
+            case "wastar":
+                return new AStarSearch(Heuristic.RELAXED_PLAN, DEFAULT_WEIGHT);
+            case "gbfs":
+                return new GreedyBestFirstSearch();
+            case "ehc":
+                return new EnforcedHillClimbing();
+            case "bfs":
+                return new BreadthFirstSearch();
+            case "anytime":
+                return new AnytimeSearch();
+            default:
+                break;
+        }
+        if (engine.toLowerCase().startsWith("wastar:")) {
+            try {
+                int weight = Integer.parseInt(engine.substring("wastar:".length()).trim());
+                if (weight >= 1) {
+                    return new AStarSearch(Heuristic.RELAXED_PLAN, weight);
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("The weight of " + engine + " must be a whole number of at least 1");
+        }
+        try {
+            Object planner = Class.forName(engine).getDeclaredConstructor().newInstance();
+            if (planner instanceof RecoveryPlanner) {
+                return (RecoveryPlanner) planner;
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown planning engine: " + engine);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create planning engine " + engine + ": " + e);
+        }
+        throw new IllegalArgumentException(engine + " does not implement RecoveryPlanner");
+    }
+}
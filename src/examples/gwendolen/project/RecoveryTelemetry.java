@@ -0,0 +1,440 @@
+package gwendolen.project;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records, for each agent, how long each phase of its recoveries takes and how they turn out: recoveries
+ * started and failed, plan lengths, cache hits and misses, steps executed, repairs and recoveries which ran out
+ * of time.
+ * Work is put down to the agent whose thread does it. A recovery binds its agent to the thread for its
+ * duration, so the planners, caches and encoders underneath need not know which agent they work for. Work done
+ * on other threads, such as speculative planning, is put down to "background"; a batch is put down to the agent
+ * whose thread solved it.
+ * The figures can be read over JMX once registered, and are written to a file when the MAS shuts down if
+ * planner.telemetry.file is configured.
+ */
+public final class RecoveryTelemetry {
+    // Agent to which work on threads outside any recovery is put down
+    public static final String BACKGROUND = "background";
+    // Name under which the figures are registered with the platform MBean server
+    public static final String OBJECT_NAME = "gwendolen.project:type=RecoveryTelemetry";
+
+    /**
+     * The phases of a recovery which are timed.
+     */
+    public enum Phase {
+        // Encoding the agent's beliefs as facts of the domain
+        BELIEFS("beliefs"),
+        // Encoding the goal, and writing the problem for FF
+        ENCODING("encoding"),
+        // Searching for a plan, in the JVM or by FF
+        SEARCH("search"),
+        // Reading FF's plan, and turning step names back into actions
+        PARSING("parsing"),
+        // Running the steps of plans, including any recovery the steps need themselves
+        EXECUTION("execution");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * The events which are counted.
+     */
+    public enum Counter {
+        RECOVERIES("recoveries"),
+        FAILED_RECOVERIES("failedRecoveries"),
+        NO_PLAN_WITHIN_BUDGET("noPlanWithinBudget"),
+        NO_PLAN("noPlan"),
+        CACHE_HITS("cacheHits"),
+        CACHE_MISSES("cacheMisses"),
+        STEPS("steps"),
+        FAILED_STEPS("failedSteps"),
+        REPAIRS("repairs"),
+        REPLANS("replans");
+
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger("t1."+"Telemetry");
+    private static final ConcurrentMap<String, AgentTelemetry> agents = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> current = new ThreadLocal<>();
+    private static final View view = new View();
+    private static boolean registered;
+
+    private RecoveryTelemetry() {
+    }
+
+    /**
+     * Binds the thread to an agent's recovery, and counts the recovery.
+     *
+     * @param agName The name of the agent.
+     * @return The agent the thread was bound to before, to be given to leave.
+     */
+    public static String enter(String agName) {
+        String previous = current.get();
+        current.set(agName);
+        count(Counter.RECOVERIES);
+        return previous;
+    }
+
+    /**
+     * Ends a recovery started by enter, binding the thread back to the agent it was bound to before.
+     *
+     * @param previous The value returned by enter.
+     * @param recovered Whether the recovery succeeded.
+     */
+    public static void leave(String previous, boolean recovered) {
+        if (!recovered) {
+            count(Counter.FAILED_RECOVERIES);
+        }
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Returns the agent to which work on this thread is put down.
+     *
+     * @return The name of the agent in whose recovery the thread is, or BACKGROUND.
+     */
+    public static String currentAgent() {
+        String agName = current.get();
+        return agName != null ? agName : BACKGROUND;
+    }
+
+    /**
+     * Records the time of a phase for the current agent.
+     *
+     * @param phase The phase.
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public static void record(Phase phase, long nanos) {
+        agent(currentAgent()).phases.get(phase).add(nanos);
+    }
+
+    /**
+     * Counts an event for the current agent.
+     *
+     * @param counter The event.
+     */
+    public static void count(Counter counter) {
+        count(currentAgent(), counter);
+    }
+
+    /**
+     * Counts an event for an agent.
+     *
+     * @param agName The name of the agent.
+     * @param counter The event.
+     */
+    public static void count(String agName, Counter counter) {
+        agent(agName).counters.get(counter).incrementAndGet();
+    }
+
+    /**
+     * Records the length of a plan given to the current agent.
+     *
+     * @param steps The number of steps.
+     */
+    public static void planLength(int steps) {
+        agent(currentAgent()).planLengths.add(steps);
+    }
+
+    /**
+     * Returns a count.
+     *
+     * @param agName The name of the agent.
+     * @param counter The event.
+     * @return The number of times the event happened, zero for agents nothing was recorded for.
+     */
+    public static long getCount(String agName, Counter counter) {
+        AgentTelemetry telemetry = agents.get(agName);
+        return telemetry == null ? 0 : telemetry.counters.get(counter).get();
+    }
+
+    /**
+     * Returns the times recorded for a phase.
+     *
+     * @param agName The name of the agent.
+     * @param phase The phase.
+     * @return The histogram of times, in nanoseconds, or null if nothing was recorded for the agent.
+     */
+    public static Histogram getPhase(String agName, Phase phase) {
+        AgentTelemetry telemetry = agents.get(agName);
+        return telemetry == null ? null : telemetry.phases.get(phase);
+    }
+
+    /**
+     * Returns the lengths of the plans an agent was given.
+     *
+     * @param agName The name of the agent.
+     * @return The histogram of lengths, or null if nothing was recorded for the agent.
+     */
+    public static Histogram getPlanLengths(String agName) {
+        AgentTelemetry telemetry = agents.get(agName);
+        return telemetry == null ? null : telemetry.planLengths;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public static void reset() {
+        agents.clear();
+    }
+
+    /**
+     * Registers the figures with the platform MBean server, once. Failures are logged, as telemetry must not
+     * stop the agents.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(view, name);
+            }
+            registered = true;
+        } catch (JMException e) {
+            logger.warning("Could not register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    /**
+     * Writes everything recorded to a file.
+     *
+     * @param file The path of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void dump(String file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            report(writer);
+        }
+    }
+
+    /**
+     * Writes everything recorded: for each agent its counters, the plan lengths, and for each phase the number
+     * of times it ran, the mean, median, 99th percentile and longest time in milliseconds.
+     *
+     * @param writer Where to write.
+     */
+    public static void report(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        for (Map.Entry<String, AgentTelemetry> entry : new TreeMap<>(agents).entrySet()) {
+            AgentTelemetry telemetry = entry.getValue();
+            out.println("agent " + entry.getKey());
+            StringBuilder counts = new StringBuilder();
+            for (Counter counter : Counter.values()) {
+                counts.append(counts.length() == 0 ? "  " : ", ").append(counter).append('=').append(telemetry.counters.get(counter).get());
+            }
+            out.println(counts);
+            Histogram lengths = telemetry.planLengths;
+            out.printf("  plans=%d, mean length=%.1f, max length=%d%n", lengths.getCount(), lengths.getMean(), lengths.getMax());
+            out.printf("  %-10s %8s %10s %10s %10s %10s%n", "phase", "count", "mean ms", "p50 ms", "p99 ms", "max ms");
+            for (Phase phase : Phase.values()) {
+                Histogram times = telemetry.phases.get(phase);
+                out.printf("  %-10s %8d %10.3f %10.3f %10.3f %10.3f%n", phase, times.getCount(), times.getMean() / 1e6,
+                        times.getPercentile(50) / 1e6, times.getPercentile(99) / 1e6, times.getMax() / 1e6);
+            }
+        }
+        out.flush();
+    }
+
+    private static AgentTelemetry agent(String agName) {
+        AgentTelemetry telemetry = agents.get(agName);
+        if (telemetry == null) {
+            AgentTelemetry created = new AgentTelemetry();
+            telemetry = agents.putIfAbsent(agName, created);
+            if (telemetry == null) {
+                telemetry = created;
+            }
+        }
+        return telemetry;
+    }
+
+    /**
+     * The figures of one agent.
+     */
+    private static class AgentTelemetry {
+        final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+        final Map<Counter, AtomicLong> counters = new EnumMap<>(Counter.class);
+        final Histogram planLengths = new Histogram();
+
+        AgentTelemetry() {
+            for (Phase phase : Phase.values()) {
+                phases.put(phase, new Histogram());
+            }
+            for (Counter counter : Counter.values()) {
+                counters.put(counter, new AtomicLong());
+            }
+        }
+    }
+
+    /**
+     * A histogram of non-negative values with a bucket for each power of two, which can be added to by many
+     * threads without locking. Percentiles are the upper bound of the bucket they fall in, so they are within a
+     * factor of two of the true value, and never more than the largest value.
+     */
+    public static class Histogram {
+        // Bucket 0 holds zero, and bucket b the values from 2^(b-1) to 2^b - 1
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Adds a value.
+         *
+         * @param value The value, where negative values count as zero.
+         */
+        public void add(long value) {
+            value = Math.max(value, 0);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long largest = max.get();
+            while (value > largest && !max.compareAndSet(largest, value)) {
+                largest = max.get();
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        /**
+         * Estimates a percentile.
+         *
+         * @param percentile The percentile, from 0 to 100.
+         * @return The upper bound of the bucket holding the percentile, or 0 if there are no values.
+         */
+        public long getPercentile(double percentile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(n * percentile / 100);
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) {
+                    long upper = b == 0 ? 0 : b >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+                    return Math.min(upper, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * The figures as seen over JMX.
+     */
+    private static class View implements RecoveryTelemetryMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> counters = new TreeMap<>();
+            for (Map.Entry<String, AgentTelemetry> entry : agents.entrySet()) {
+                for (Map.Entry<Counter, AtomicLong> counter : entry.getValue().counters.entrySet()) {
+                    counters.put(entry.getKey() + "." + counter.getKey(), counter.getValue().get());
+                }
+            }
+            return counters;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMillis() {
+            Map<String, Double> means = new TreeMap<>();
+            for (Map.Entry<String, AgentTelemetry> entry : agents.entrySet()) {
+                for (Map.Entry<Phase, Histogram> phase : entry.getValue().phases.entrySet()) {
+                    means.put(entry.getKey() + "." + phase.getKey(), phase.getValue().getMean() / 1e6);
+                }
+            }
+            return means;
+        }
+
+        @Override
+        public Map<String, Double> getP99Millis() {
+            Map<String, Double> percentiles = new TreeMap<>();
+            for (Map.Entry<String, AgentTelemetry> entry : agents.entrySet()) {
+                for (Map.Entry<Phase, Histogram> phase : entry.getValue().phases.entrySet()) {
+                    percentiles.put(entry.getKey() + "." + phase.getKey(), phase.getValue().getPercentile(99) / 1e6);
+                }
+            }
+            return percentiles;
+        }
+
+        @Override
+        public Map<String, Double> getMeanPlanLength() {
+            Map<String, Double> lengths = new TreeMap<>();
+            for (Map.Entry<String, AgentTelemetry> entry : agents.entrySet()) {
+                lengths.put(entry.getKey(), entry.getValue().planLengths.getMean());
+            }
+            return lengths;
+        }
+
+        @Override
+        public String report() {
+            StringWriter writer = new StringWriter();
+            RecoveryTelemetry.report(writer);
+            return writer.toString();
+        }
+
+        @Override
+        public void dump(String file) throws IOException {
+            RecoveryTelemetry.dump(file);
+        }
+
+        @Override
+        public void reset() {
+            RecoveryTelemetry.reset();
+        }
+    }
+}
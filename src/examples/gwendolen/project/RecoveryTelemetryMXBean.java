@@ -0,0 +1,58 @@
+package gwendolen.project;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The view of recovery telemetry given to JMX clients such as jconsole, under the name
+ * gwendolen.project:type=RecoveryTelemetry.
+ */
+public interface RecoveryTelemetryMXBean {
+    /**
+     * Returns the counters of every agent.
+     *
+     * @return The counts, keyed by agent and counter, such as "alice.cacheHits".
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns the mean time of each phase of every agent.
+     *
+     * @return The times in milliseconds, keyed by agent and phase, such as "alice.search".
+     */
+    Map<String, Double> getMeanMillis();
+
+    /**
+     * Returns the 99th percentile of the time of each phase of every agent.
+     *
+     * @return The times in milliseconds, keyed by agent and phase.
+     */
+    Map<String, Double> getP99Millis();
+
+    /**
+     * Returns the mean length of the plans each agent was given.
+     *
+     * @return The mean number of steps, by agent.
+     */
+    Map<String, Double> getMeanPlanLength();
+
+    /**
+     * Returns everything recorded, as written by dump.
+     *
+     * @return The report.
+     */
+    String report();
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param file The path of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    void dump(String file) throws IOException;
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
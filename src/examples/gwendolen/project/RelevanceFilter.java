@@ -0,0 +1,33 @@
+package gwendolen.project;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Hands another planner only the part of a problem which can matter for its goal: the actions backward
+ * reachable from the goal and the facts they mention.
+ * Agents carry many beliefs which have nothing to do with the goal being recovered, such as perceptions and
+ * facts only other actions use. Leaving them out keeps the heuristic and the problems written for external
+ * planners small, and lets problems differing only in such beliefs share their cached plans.
+ */
+public class RelevanceFilter implements PlannerBackend {
+    private final PlannerBackend planner;
+
+    /**
+     * Creates a filter in front of a planner.
+     *
+     * @param planner The planner given the relevant part of each problem.
+     */
+    public RelevanceFilter(PlannerBackend planner) {
+        this.planner = planner;
+    }
+
+    @Override
+    public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+        long started = System.nanoTime();
+        PlanningDomain slice = domain.relevantTo(goal);
+        BitSet restricted = slice.restrict(state);
+        RecoveryTelemetry.record(RecoveryTelemetry.Phase.ENCODING, System.nanoTime() - started);
+        return planner.plan(slice, restricted, goal, deadline);
+    }
+}
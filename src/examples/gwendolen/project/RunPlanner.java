@@ -1,21 +1,310 @@
 package gwendolen.project;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
 
-import main.java.fr.uga.pddl4j.encoding.CodedProblem;
-import main.java.fr.uga.pddl4j.planners.hsp.AStarPlanner;
-import main.java.fr.uga.pddl4j.util.BitOp;
+import ail.semantics.AILAgent;
+import ail.syntax.Literal;
+import ail.syntax.Predicate;
+import ail.util.AILConfig;
+import main.java.fr.uga.pddl4j.parser.Problem;
 
 /**
  * The RunPlanner class provides functionality to run a planner and extract plan steps.
  */
 public class RunPlanner {
-    // Define a lock object for synchronization
-    private static final Object lock = new Object();
+    // Location of the planning domain, unless another is configured
+    static final String DOMAIN_FILE = "src/examples/gwendolen/project/domain.pddl";
+    // FF reads the problem from its standard input, so no problem file is written
+    private static final String FF_COMMAND = "src/examples/gwendolen/project/./ff -o %s -f /dev/stdin";
+    // Number of FF processes kept waiting for a problem
+    private static final int FF_PROCESSES = 2;
+    // How long FF may search before it is killed
+    private static final long FF_TIMEOUT_MS = 10000;
+    // Number of plans each planner remembers
+    private static final int CACHE_SIZE = 256;
+
+    // Configuration key of the planning domain file
+    static final String DOMAIN = "planner.domain";
+    // Configuration keys choosing the search engine of online planning, for all agents, one agent or one domain
+    static final String ENGINE = "planner.engine";
+    static final String AGENT_ENGINE = "planner.engine.agent.";
+    static final String DOMAIN_ENGINE = "planner.engine.domain.";
+    // Configuration key of the time each recovery may spend planning
+    static final String DEADLINE = "ail.planning.deadline.ms";
+    // Configuration key turning on the planning of likely recoveries before they are needed
+    static final String SPECULATE = "planner.speculate";
+    // Configuration key of how long recoveries starting together are collected to be solved as one batch
+    static final String BATCH = "planner.batch.ms";
+    // Configuration key choosing planning over the domain's action schemas, with objects taken from beliefs
+    static final String LIFTED = "planner.lifted";
+    // Configuration key choosing recovery by decomposing goals with the agent's own plans
+    static final String HIERARCHICAL = "planner.hierarchical";
+    // Configuration key of the file recovery telemetry is written to when the MAS shuts down
+    static final String TELEMETRY_FILE = "planner.telemetry.file";
+    // Belief added when a recovery finds no plan within its time
+    public static final String NO_PLAN_WITHIN_BUDGET = "noPlanWithinBudget";
+
+    // Logger for recovery logging
+    private static final Logger recoveryLogger = Logger.getLogger("t1."+"Recovery");
+
+    private static final Map<String, String> engines = new ConcurrentHashMap<>();
+    private static volatile String domainFile = DOMAIN_FILE;
+    private static volatile long deadlineMillis;
+    private static volatile boolean speculating;
+    private static volatile long batchMillis;
+    private static volatile boolean lifted;
+    private static volatile boolean hierarchical;
+    private static volatile String telemetryFile;
+    private static final SearchStatistics liftedStatistics = new SearchStatistics();
+    private static final SearchStatistics hierarchicalStatistics = new SearchStatistics();
+    // The batching front ends of every planner, which all use the configured window
+    private static final List<BatchingPlanner> batchers = new CopyOnWriteArrayList<>();
+    // Online planners by engine name, each with its own cache
+    private static final Map<String, InProcessPlanner> planners = new ConcurrentHashMap<>();
+    private static final Map<String, SpeculativePlanner> online = new ConcurrentHashMap<>();
+    private static SpeculativePlanner offline;
+    private static BatchingPlanner offlineBatcher;
+    private static ExternalPlannerPool pool;
+
+    /**
+     * Reads the choice of search engines from the .ail file, for example:
+     * <pre>
+     * planner.domain = src/examples/gwendolen/project/domain.pddl
+     * planner.engine = gbfs
+     * planner.engine.agent.bob = ehc
+     * planner.engine.domain.shoppingdomain = bfs
+     * ail.planning.deadline.ms = 200
+     * planner.speculate = true
+     * planner.batch.ms = 5
+     * planner.lifted = true
+     * planner.hierarchical = true
+     * planner.telemetry.file = records/telemetry.txt
+     * </pre>
+     * The domain file defaults to the shopping domain. An agent's own setting comes first, then the setting of the domain, then the general one. Unknown
+     * engines are reported and ignored. With a deadline, each recovery gets that many milliseconds of planning
+     * and the default engine becomes the anytime search. With speculation, the recoveries of upcoming actions
+     * are planned in the background before they fail. With a batch window, recoveries starting within that
+     * many milliseconds of each other are solved together. Lifted planning searches the domain's action schemas
+     * instead of its grounding, over the objects the beliefs and goal mention. Hierarchical planning decomposes
+     * goals with the agent's own plans, leaving only what they do not reach to the search. Telemetry is written to
+     * the given file by writeTelemetry.
+     *
+     * @param config The configuration.
+     */
+    public static void configure(AILConfig config) {
+        engines.clear();
+        setDomainFile(config.getProperty(DOMAIN, DOMAIN_FILE).trim());
+        deadlineMillis = 0;
+        speculating = Boolean.parseBoolean(config.getProperty(SPECULATE, "false").trim());
+        lifted = Boolean.parseBoolean(config.getProperty(LIFTED, "false").trim());
+        hierarchical = Boolean.parseBoolean(config.getProperty(HIERARCHICAL, "false").trim());
+        telemetryFile = config.containsKey(TELEMETRY_FILE) ? config.getProperty(TELEMETRY_FILE).trim() : null;
+        if (config.containsKey(DEADLINE)) {
+            try {
+                deadlineMillis = Long.parseLong(config.getProperty(DEADLINE).trim());
+            } catch (NumberFormatException e) {
+                recoveryLogger.warning(DEADLINE + " must be a number of milliseconds... Planning without a deadline");
+            }
+        }
+        batchMillis = 0;
+        if (config.containsKey(BATCH)) {
+            try {
+                batchMillis = Long.parseLong(config.getProperty(BATCH).trim());
+            } catch (NumberFormatException e) {
+                recoveryLogger.warning(BATCH + " must be a number of milliseconds... Planning without batches");
+            }
+        }
+        for (BatchingPlanner batcher : batchers) {
+            batcher.setWindow(batchMillis);
+        }
+        for (String key : config.stringPropertyNames()) {
+            if (key.equals(ENGINE) || key.startsWith(AGENT_ENGINE) || key.startsWith(DOMAIN_ENGINE)) {
+                String engine = config.getProperty(key).trim();
+                try {
+                    RecoveryPlanners.create(engine);
+                    engines.put(key, engine);
+                } catch (IllegalArgumentException e) {
+                    recoveryLogger.warning(key + ": " + e.getMessage() + "... Using " + RecoveryPlanners.DEFAULT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the engine an agent plans with in a domain.
+     *
+     * @param agName The name of the agent.
+     * @param domain The grounded domain.
+     * @return The engine name.
+     */
+    public static String engineFor(String agName, PlanningDomain domain) {
+        String engine = engines.get(AGENT_ENGINE + agName);
+        if (engine == null) {
+            engine = engines.get(DOMAIN_ENGINE + domain.getDomain().getName().getImage());
+        }
+        if (engine == null) {
+            engine = engines.get(ENGINE);
+        }
+        if (engine == null) {
+            engine = deadlineMillis > 0 ? RecoveryPlanners.DEFAULT_WITH_DEADLINE : RecoveryPlanners.DEFAULT;
+        }
+        return engine;
+    }
+
+    /**
+     * Returns the planning domain file in use.
+     *
+     * @return The path of the domain file.
+     */
+    public static String domainFile() {
+        return domainFile;
+    }
+
+    /**
+     * Changes the planning domain file. FF is restarted with the new domain the next time it is needed.
+     *
+     * @param file The path of the domain file.
+     */
+    private static synchronized void setDomainFile(String file) {
+        if (file.equals(domainFile)) {
+            return;
+        }
+        domainFile = file;
+        if (offline != null) {
+            pool.close();
+            batchers.remove(offlineBatcher);
+            offline = null;
+            pool = null;
+        }
+    }
+
+    /**
+     * Checks whether recoveries plan over the domain's action schemas rather than its grounding.
+     *
+     * @return True if lifted planning is configured, otherwise false.
+     */
+    public static boolean isLifted() {
+        return lifted;
+    }
+
+    /**
+     * Checks whether recoveries decompose goals with the agent's plans before searching.
+     *
+     * @return True if hierarchical planning is configured, otherwise false.
+     */
+    public static boolean isHierarchical() {
+        return hierarchical;
+    }
+
+    /**
+     * Starts the clock of a recovery.
+     *
+     * @return The time by which the recovery must have its plans, which never passes if no deadline is
+     *         configured.
+     */
+    public static Deadline newDeadline() {
+        return Deadline.in(deadlineMillis);
+    }
+
+    /**
+     * Tells an agent that a recovery found no plan within its time, by adding the belief
+     * noPlanWithinBudget(Name). Gwendolen plans can react to it like any other belief, and should drop it
+     * once handled.
+     *
+     * @param ag The agent.
+     * @param name The action or goal whose recovery ran out of time.
+     */
+    public static void reportNoPlanWithinBudget(AILAgent ag, String name) {
+        recoveryLogger.warning(ag.getAgName() + " --> No plan within " + deadlineMillis + " ms for " + name);
+        RecoveryTelemetry.count(ag.getAgName(), RecoveryTelemetry.Counter.NO_PLAN_WITHIN_BUDGET);
+        Literal failure = new Literal(NO_PLAN_WITHIN_BUDGET);
+        failure.addTerm(new Predicate(name));
+        ag.addBel(failure, AILAgent.refertoself());
+    }
+
+    /**
+     * Reports that a recovery found no plan although it had time left, by logging the failure and counting it
+     * for the agent.
+     *
+     * @param ag The agent.
+     * @param name The name of the action or call being recovered.
+     */
+    public static void reportNoPlan(AILAgent ag, String name) {
+        recoveryLogger.warning(ag.getAgName() + " --> No plan found for " + name);
+        RecoveryTelemetry.count(ag.getAgName(), RecoveryTelemetry.Counter.NO_PLAN);
+    }
+
+    /**
+     * Starts planning, in the background, the recoveries an agent's upcoming actions will need, if speculation
+     * is configured. Called before each action, so that planning overlaps the agent's own work.
+     *
+     * @param ag The agent.
+     * @param choiceOfPlanner The choice of planner (1 for FF planner, 2 for PDDL4J Implementation).
+     * @return The number of recoveries whose planning was started.
+     */
+    public static int speculate(AILAgent ag, int choiceOfPlanner) {
+        if (!speculating || (choiceOfPlanner != 1 && choiceOfPlanner != 2)) {
+            return 0;
+        }
+        StateEncoder encoder;
+        try {
+            encoder = encoder();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        PlanningDomain domain = encoder.getDomain();
+        List<GroundAction> upcoming = SpeculativePlanner.upcomingActions(ag, domain);
+        if (upcoming.isEmpty()) {
+            return 0;
+        }
+        SpeculativePlanner planner = choiceOfPlanner == 1 ? offlinePlanner() : onlinePlanner(engineFor(ag.getAgName(), domain));
+        return planner.anticipate(domain, encoder.encode(ag.getBB()), upcoming);
+    }
+
+    /**
+     * Returns the work done so far by the searches of each engine.
+     *
+     * @return The statistics, by engine name.
+     */
+    public static Map<String, SearchStatistics> getStatistics() {
+        Map<String, SearchStatistics> statistics = new TreeMap<>();
+        for (Map.Entry<String, InProcessPlanner> planner : planners.entrySet()) {
+            statistics.put(planner.getKey(), planner.getValue().getStatistics());
+        }
+        if (liftedStatistics.getSearches() > 0) {
+            statistics.put("lifted", liftedStatistics);
+        }
+        if (hierarchicalStatistics.getSearches() > 0) {
+            statistics.put("hierarchical", hierarchicalStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Writes the recovery telemetry recorded so far to the configured file, if there is one. Called when the MAS
+     * shuts down.
+     */
+    public static void writeTelemetry() {
+        String file = telemetryFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            RecoveryTelemetry.dump(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
     /**
      * Runs a planner to generate a plan based on given beliefs and predicates.
@@ -27,99 +316,214 @@ public class RunPlanner {
      * @return The generated plan as a list of steps.
      */
     public static List<String> run(String agName, List<String> beliefs, List<String> predicate, int choiceOfPlanner) {
-        PDDLGenerator.generate(agName, beliefs, predicate);
+        try {
+            PlanningDomain domain = DomainCache.get(domainFile);
+            Problem problem = PDDLGenerator.buildProblem(domain.getDomain(), beliefs, predicate);
+            BitSet goal = domain.encodeGoal(problem);
+            if (goal == null) {
+                return choiceOfPlanner == 1 || choiceOfPlanner == 2 ? new ArrayList<String>() : null;
+            }
+            return run(agName, domain, domain.encodeInitialState(problem), goal, choiceOfPlanner, newDeadline());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Runs a planner on an encoded state and goal.
+     *
+     * @param agName The name of the agent, which chooses the search engine of online planning.
+     * @param domain The grounded domain.
+     * @param state The set of facts true in the agent's beliefs.
+     * @param goal The set of facts to achieve.
+     * @param choiceOfPlanner The choice of planner (1 for FF planner, 2 for PDDL4J Implementation).
+     * @param deadline The time by which the plan is needed.
+     * @return The generated plan as a list of steps, which is empty if no plan was found in time.
+     */
+    public static List<String> run(String agName, PlanningDomain domain, BitSet state, BitSet goal, int choiceOfPlanner,
+                                   Deadline deadline) {
         List<String> plan = new ArrayList<>();
         if (choiceOfPlanner == 1) {
-            try {
-                // Command to execute
-                String command = "src/examples/gwendolen/project/./ff -o src/examples/gwendolen/project/domain.pddl -f src/examples/gwendolen/project/"+agName+"problem.pddl";
-
-                // Create ProcessBuilder
-                ProcessBuilder processBuilder = new ProcessBuilder(command.split(" "));
-
-                // Redirect error stream to output stream
-                processBuilder.redirectErrorStream(true);
-
-                // Start the process
-                Process process = processBuilder.start();
-                String output;
-                try (// Read the output of the process
-                     java.util.Scanner scanner = new java.util.Scanner(process.getInputStream()).useDelimiter("\\A")) {
-                    output = scanner.hasNext() ? scanner.next() : "";}
-
-                // Wait for the process to finish
-                process.waitFor();
-
-                //System.out.println(output);
-                plan = extractSteps(output);
-                //System.out.println(plan);
-                return plan;
-            } catch (IOException | InterruptedException e) {e.printStackTrace();}
-            return null;
+            // The whole plan comes from one of the waiting FF processes
+            List<String> solution = offlinePlanner().plan(domain, state, goal, deadline);
+            if (solution != null) {
+                RecoveryTelemetry.planLength(solution.size());
+                plan.addAll(solution);
+            }
+            return plan;
         }
 
         if (choiceOfPlanner == 2) {
-            String args[] = new String[]{"-o", "src/examples/gwendolen/project/domain.pddl", "-f", "src/examples/gwendolen/project/"+agName+"problem.pddl", "-u", "7"};
-
-            // Synchronize access to ensure mutual exclusion
-            synchronized (lock) {
-                plan = runPlannerSafely(args);
-                return plan;
+            // Agents plan concurrently in the JVM and only need the first step, as they replan after acting
+            List<String> solution = onlinePlanner(engineFor(agName, domain)).plan(domain, state, goal, deadline);
+            if (solution != null && !solution.isEmpty()) {
+                RecoveryTelemetry.planLength(solution.size());
+                plan.add(solution.get(0));
             }
+            return plan;
         }
         return null;
     }
 
     /**
-     * Extracts plan steps from the output of the planner.
+     * Runs a planner on a problem of the lifted domain.
      *
-     * @param output The output of the planner.
-     * @return The list of plan steps.
+     * @param domain The lifted domain.
+     * @param state The facts true in the agent's beliefs.
+     * @param goal The facts to achieve.
+     * @param choiceOfPlanner The choice of planner (1 for FF planner, 2 for PDDL4J Implementation).
+     * @param deadline The time by which the plan is needed.
+     * @return The whole plan as a list of steps, each followed by its arguments, which is empty if no plan was
+     *         found in time.
      */
-    private static List<String> extractSteps(String output) {
-        List<String> steps = new ArrayList<>();
+    public static List<String> runLifted(LiftedDomain domain, Set<String> state, Set<String> goal, int choiceOfPlanner,
+                                         Deadline deadline) {
+        List<String> plan = new ArrayList<>();
+        List<String> solution = null;
+        if (choiceOfPlanner == 1) {
+            // FF grounds the problem itself, over the objects it declares
+            solution = ffPool().plan(domain, state, goal, deadline);
+        } else if (choiceOfPlanner == 2) {
+            SearchStatistics statistics = new SearchStatistics();
+            long started = System.nanoTime();
+            solution = new LiftedSearch().search(domain, state, goal, deadline, statistics);
+            RecoveryTelemetry.record(RecoveryTelemetry.Phase.SEARCH, System.nanoTime() - started);
+            liftedStatistics.add(statistics);
+        }
+        if (solution != null) {
+            RecoveryTelemetry.planLength(solution.size());
+            plan.addAll(solution);
+        }
+        return plan;
+    }
 
-        // Define a pattern to match lines starting with a number followed by a colon
-        Pattern pattern = Pattern.compile("\\d+:\\s+([A-Z]+)");
+    /**
+     * Creates a hierarchical planner for an agent, with the agent's current plans as its methods.
+     *
+     * @param ag The agent.
+     * @param encoder The encoder of beliefs for the domain.
+     * @param choiceOfPlanner The planner for what the methods do not reach (1 for FF planner, 2 for PDDL4J
+     *                        Implementation).
+     * @return The planner.
+     */
+    public static HierarchicalPlanner hierarchicalPlanner(AILAgent ag, StateEncoder encoder, int choiceOfPlanner) {
+        PlannerBackend flat = choiceOfPlanner == 1 ? offlinePlanner() : onlinePlanner(engineFor(ag.getAgName(), encoder.getDomain()));
+        return new HierarchicalPlanner(encoder, ag.getPL().getPlans(), flat, hierarchicalStatistics);
+    }
 
-        // Create a matcher with the input string
-        Matcher matcher = pattern.matcher(output);
+    /**
+     * Creates a monitor for executing a plan, which repairs it with the same planner that made it.
+     *
+     * @param ag The agent.
+     * @param encoder The encoder of beliefs for the domain.
+     * @param choiceOfPlanner The choice of planner (1 for FF planner, 2 for PDDL4J Implementation).
+     * @return The monitor.
+     */
+    public static ExecutionMonitor monitor(AILAgent ag, StateEncoder encoder, int choiceOfPlanner) {
+        PlannerBackend planner = choiceOfPlanner == 1 ? offlinePlanner() : onlinePlanner(engineFor(ag.getAgName(), encoder.getDomain()));
+        return new ExecutionMonitor(encoder, planner);
+    }
+
+    /**
+     * Returns the lifted form of the planning domain.
+     *
+     * @return The lifted domain for the current version of the domain file.
+     * @throws IOException If the domain file does not exist or cannot be parsed.
+     */
+    public static LiftedDomain liftedDomain() throws IOException {
+        return LiftedDomain.get(domainFile);
+    }
+
+    /**
+     * Returns the encoder of beliefs for the planning domain.
+     *
+     * @return The encoder for the current version of the domain file.
+     * @throws IOException If the domain file does not exist or cannot be parsed.
+     */
+    public static StateEncoder encoder() throws IOException {
+        return StateEncoder.get(domainFile);
+    }
+
+    /**
+     * Starts an online recovery, which keeps its plan from one step to the next.
+     *
+     * @param agName The name of the agent, which chooses the search engine.
+     * @param domain The grounded domain.
+     * @return A replanner backed by the online planner, with the configured deadline for the whole recovery.
+     */
+    public static IncrementalReplanner startOnlineRecovery(String agName, PlanningDomain domain) {
+        return new IncrementalReplanner(onlinePlanner(engineFor(agName, domain)), newDeadline());
+    }
 
-        // Find all matches
-        while (matcher.find()) {
-            String step = matcher.group(1);
-            steps.add(step);
+    /**
+     * Returns the online planner using an engine, creating it on first use.
+     *
+     * @param engine The engine name.
+     * @return The planner.
+     */
+    private static SpeculativePlanner onlinePlanner(String engine) {
+        SpeculativePlanner planner = online.get(engine);
+        if (planner == null) {
+            synchronized (online) {
+                planner = online.get(engine);
+                if (planner == null) {
+                    InProcessPlanner search = new InProcessPlanner(engine);
+                    // Problems are cut down to what matters for their goal before they reach the cache, so that
+                    // beliefs irrelevant to the goal do not cause misses, nor keep identical problems out of a batch
+                    planner = new SpeculativePlanner(new RelevanceFilter(batching(new PlanCache(search, CACHE_SIZE))));
+                    planners.put(engine, search);
+                    online.put(engine, planner);
+                }
+            }
         }
-        return steps;
+        return planner;
     }
 
     /**
-     * Method to run the planner safely within a synchronized block.
+     * Returns the pool of FF processes, starting it on first use so that online planning never launches FF.
      *
-     * @param args The arguments for the planner.
-     * @return A list of actions in the plan.
+     * @return The offline planner.
      */
-    private synchronized static List<String> runPlannerSafely(String[] args) {
-        List<String> plan = new ArrayList<>();
-        try {
-            // Parse planner arguments
-            Properties arguments = AStarPlanner.parseArguments(args);
-            // Instantiate A* planner
-            AStarPlanner planner = new AStarPlanner(arguments);
-
-            // Parse and encode the problem
-            CodedProblem problem = planner.parseAndEncode();
-
-            // Generate one-step plan
-            BitOp action = planner.oneStepPlan(arguments);
-            // Convert action to string representation
-            String actionString = problem.toShortString(action);
-            // Add action to the plan
-            plan.add(actionString);
-        } catch (Exception e) {
-            // Print stack trace if an exception occurs
-            e.printStackTrace();
+    private static synchronized SpeculativePlanner offlinePlanner() {
+        if (offline == null) {
+            pool = new ExternalPlannerPool(ffCommand(domainFile), FF_PROCESSES, FF_TIMEOUT_MS);
+            offlineBatcher = batching(new PlanCache(pool, CACHE_SIZE));
+            offline = new SpeculativePlanner(new RelevanceFilter(offlineBatcher));
         }
-        return plan;
+        return offline;
+    }
+
+    /**
+     * Returns the pool of FF processes itself, starting it on first use. The pool is read under the same lock
+     * as offlinePlanner and setDomainFile, which replaces it when the domain changes.
+     *
+     * @return The pool of FF processes.
+     */
+    private static synchronized ExternalPlannerPool ffPool() {
+        offlinePlanner();
+        return pool;
+    }
+
+    /**
+     * Returns the command running FF on a domain, reading problems from its standard input.
+     *
+     * @param domainFile The path of the domain file.
+     * @return The command and its arguments.
+     */
+    static List<String> ffCommand(String domainFile) {
+        return Arrays.asList(String.format(FF_COMMAND, domainFile).split(" "));
+    }
+
+    /**
+     * Puts a batching front end, using the configured window, in front of a planner.
+     *
+     * @param planner The planner.
+     * @return The front end.
+     */
+    private static BatchingPlanner batching(PlannerBackend planner) {
+        BatchingPlanner batcher = new BatchingPlanner(planner, batchMillis);
+        batchers.add(batcher);
+        return batcher;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package gwendolen.project;
+
+/**
+ * Counts the work done by recovery searches: nodes expanded and generated, the wall time spent, and how often
+ * the deadline ran out.
+ * A single search fills in its own instance; totals over many searches are kept by adding them up.
+ */
+public class SearchStatistics {
+    private long searches;
+    private long expanded;
+    private long generated;
+    private long nanos;
+    private long timeouts;
+
+    /**
+     * Records that a node was taken from the open list and its successors computed.
+     */
+    public void expanded() {
+        expanded++;
+    }
+
+    /**
+     * Records that a successor was produced.
+     */
+    public void generated() {
+        generated++;
+    }
+
+    /**
+     * Records the wall time of a finished search.
+     *
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void finished(long nanos) {
+        this.searches++;
+        this.nanos += nanos;
+    }
+
+    /**
+     * Records that a search was stopped by its deadline.
+     */
+    public void timedOut() {
+        timeouts++;
+    }
+
+    /**
+     * Adds the counts of another search to these.
+     *
+     * @param other The statistics of the other search.
+     */
+    public synchronized void add(SearchStatistics other) {
+        searches += other.searches;
+        expanded += other.expanded;
+        generated += other.generated;
+        nanos += other.nanos;
+        timeouts += other.timeouts;
+    }
+
+    public synchronized long getSearches() {
+        return searches;
+    }
+
+    public synchronized long getExpanded() {
+        return expanded;
+    }
+
+    public synchronized long getGenerated() {
+        return generated;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the wall time spent searching.
+     *
+     * @return The time, in milliseconds.
+     */
+    public synchronized double getMillis() {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d searches, %d expanded, %d generated, %.3f ms, %d out of time", searches, expanded, generated,
+                nanos / 1e6, timeouts);
+    }
+}
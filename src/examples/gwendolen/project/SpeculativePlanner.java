@@ -0,0 +1,241 @@
+package gwendolen.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ail.semantics.AILAgent;
+import ail.syntax.Deed;
+import ail.syntax.Intention;
+import ail.syntax.Predicate;
+import ail.syntax.Unifier;
+
+/**
+ * Plans recoveries before they are needed. The actions further down an agent's intentions are played forward
+ * from its current beliefs, and for each one whose preconditions will not hold the recovery plan is searched for
+ * on a background thread, which leaves it in the cache of the planner behind. When the failure does happen the
+ * plan is then a lookup, and a recovery asking while its speculation is still running waits for that search
+ * instead of starting its own.
+ */
+public class SpeculativePlanner implements PlannerBackend {
+    // Number of upcoming actions looked at in each agent's intentions
+    static final int LOOKAHEAD = 8;
+    // Number of speculations which may wait for the background thread before new ones are dropped
+    private static final int QUEUE_SIZE = 16;
+    // Time given to a speculation when recoveries have no deadline, so hopeless problems do not block the thread
+    private static final long SPECULATION_MS = 2000;
+
+    private final PlannerBackend planner;
+    private final ThreadPoolExecutor background;
+    // Speculations queued or running, by the relevant part of their problem
+    private final Map<List<Object>, Future<List<String>>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong speculations = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+
+    /**
+     * Creates a speculative planner in front of another planner.
+     *
+     * @param planner The planner, normally with a cache, which solves both speculative and real problems.
+     */
+    public SpeculativePlanner(PlannerBackend planner) {
+        this.planner = planner;
+        this.background = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "speculative-planner");
+                        t.setDaemon(true); // Never keep the MAS alive
+                        t.setPriority(Thread.MIN_PRIORITY); // Agents deliberating come first
+                        return t;
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        background.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+        Future<List<String>> speculation = pending.get(key(domain, state, goal));
+        if (speculation != null) {
+            joined.incrementAndGet();
+            try {
+                if (deadline.isBounded()) {
+                    speculation.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                } else {
+                    speculation.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // Plan without it
+            }
+        }
+        // A finished speculation has left its plan in the cache
+        return planner.plan(domain, state, goal, deadline);
+    }
+
+    /**
+     * Plays the upcoming actions forward from a state and starts planning the recovery of each one whose
+     * preconditions will not hold, as the agent will need it when it gets there.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts true in the agent's current beliefs.
+     * @param upcoming The actions the agent is expected to execute, in order.
+     * @return The number of speculations started.
+     */
+    public int anticipate(PlanningDomain domain, BitSet state, List<GroundAction> upcoming) {
+        int started = 0;
+        BitSet predicted = state;
+        for (GroundAction action : upcoming) {
+            if (predicted.intersects(action.getNegativePrecondition())) {
+                break; // The action will be refused, so what follows cannot be predicted
+            }
+            BitSet missing = StateEncoder.missing(predicted, action.getPrecondition());
+            if (!missing.isEmpty()) {
+                if (speculate(domain, predicted, missing)) {
+                    started++;
+                }
+                // Recovery achieves the missing facts before the action runs
+                predicted = (BitSet) predicted.clone();
+                predicted.or(missing);
+            }
+            predicted = action.apply(predicted);
+        }
+        return started;
+    }
+
+    /**
+     * Finds the actions an agent is going to execute: the actions of its intentions, current intention first,
+     * which are ground once their unifiers are applied and which the domain knows.
+     *
+     * @param ag The agent.
+     * @param domain The grounded domain.
+     * @return At most LOOKAHEAD actions, in the order they are expected.
+     */
+    public static List<GroundAction> upcomingActions(AILAgent ag, PlanningDomain domain) {
+        List<Intention> intentions = new ArrayList<>();
+        if (ag.getIntention() != null) {
+            intentions.add(ag.getIntention());
+        }
+        intentions.addAll(ag.getIntentions());
+
+        List<GroundAction> upcoming = new ArrayList<>();
+        for (Intention intention : intentions) {
+            List<Deed> deeds = intention.deeds();
+            List<Unifier> unifiers = intention.unifiers();
+            for (int i = 0; i < deeds.size() && upcoming.size() < LOOKAHEAD; i++) {
+                Deed deed = deeds.get(i);
+                if (!deed.isAction()) {
+                    continue;
+                }
+                Predicate action = (Predicate) deed.getContent().clone();
+                if (i < unifiers.size()) {
+                    action.apply(unifiers.get(i));
+                }
+                if (!action.isGround()) {
+                    continue; // Depends on what the agent learns first
+                }
+                StringBuilder name = new StringBuilder(action.getFunctor());
+                for (int arg = 0; arg < action.getTermsSize(); arg++) {
+                    name.append(' ').append(action.getTerm(arg));
+                }
+                GroundAction step = domain.getAction(name.toString());
+                if (step != null) {
+                    upcoming.add(step);
+                }
+            }
+        }
+        return upcoming;
+    }
+
+    /**
+     * Returns the number of speculations started.
+     *
+     * @return The number of speculations.
+     */
+    public long getSpeculations() {
+        return speculations.get();
+    }
+
+    /**
+     * Returns the number of speculations not started because the background thread was too far behind.
+     *
+     * @return The number of dropped speculations.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of recoveries which found their problem still being speculated on and waited for it.
+     *
+     * @return The number of joined speculations.
+     */
+    public long getJoined() {
+        return joined.get();
+    }
+
+    /**
+     * Queues the search for a recovery plan, unless the same problem is already queued or running.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts expected to be true when the recovery starts.
+     * @param goal The facts the recovery must achieve.
+     * @return True if a speculation was started, otherwise false.
+     */
+    private boolean speculate(final PlanningDomain domain, BitSet state, BitSet goal) {
+        final BitSet stateCopy = (BitSet) state.clone();
+        final BitSet goalCopy = (BitSet) goal.clone();
+        final List<Object> key = key(domain, stateCopy, goalCopy);
+        FutureTask<List<String>> task = new FutureTask<>(new Callable<List<String>>() {
+            public List<String> call() {
+                try {
+                    Deadline deadline = RunPlanner.newDeadline();
+                    return planner.plan(domain, stateCopy, goalCopy, deadline.isBounded() ? deadline : Deadline.in(SPECULATION_MS));
+                } finally {
+                    pending.remove(key);
+                }
+            }
+        });
+        if (pending.putIfAbsent(key, task) != null) {
+            return false;
+        }
+        try {
+            background.execute(task);
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            dropped.incrementAndGet();
+            return false;
+        }
+        speculations.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Identifies a problem by the part of it which matters for its goal, as the planner behind is asked.
+     *
+     * @param domain The grounded domain.
+     * @param state The set of facts true initially.
+     * @param goal The set of facts to achieve.
+     * @return The key of the problem.
+     */
+    private static List<Object> key(PlanningDomain domain, BitSet state, BitSet goal) {
+        PlanningDomain slice = domain.relevantTo(goal);
+        return Arrays.<Object>asList(slice, slice.restrict(state), goal);
+    }
+}
@@ -0,0 +1,212 @@
+package gwendolen.project;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ail.syntax.Literal;
+import ail.syntax.Predicate;
+import ail.syntax.PredicateTerm;
+import ail.syntax.Term;
+
+/**
+ * Encodes beliefs as the fact ids of a planning domain, so that belief bases and goals become sets of ids
+ * without printing and parsing every belief.
+ * Each fact of the domain is a literal spelt as in the domain file; a belief is looked up by hashing the
+ * literal itself, which ignores its annotations. Beliefs spelt in a different case fall back to a lookup by
+ * lower case name.
+ */
+public class StateEncoder {
+    private static final Map<String, StateEncoder> encoders = new ConcurrentHashMap<>();
+
+    private final PlanningDomain domain;
+    private final Map<Literal, Integer> ids = new HashMap<>();
+    private final Literal[] literals;
+    private final Set<String> predicates = new HashSet<>();
+    // Whether a functor, as spelt by some agent, names a predicate of the domain
+    private final Map<String, Boolean> knownFunctors = new ConcurrentHashMap<>();
+    private final int dummy;
+
+    /**
+     * Builds the encoder for a domain.
+     *
+     * @param domain The grounded domain.
+     */
+    public StateEncoder(PlanningDomain domain) {
+        this.domain = domain;
+        literals = new Literal[domain.numberOfFacts()];
+        for (int id = 0; id < literals.length; id++) {
+            String[] parts = domain.getFact(id).split(" ");
+            Literal literal = new Literal(domain.getSpelling(parts[0]));
+            for (int i = 1; i < parts.length; i++) {
+                literal.addTerm(new Predicate(domain.getSpelling(parts[i])));
+            }
+            literals[id] = literal;
+            ids.put(literal, id);
+            predicates.add(parts[0]);
+        }
+        dummy = domain.getFactId(PDDLGenerator.DUMMY_PREDICATE.toLowerCase());
+    }
+
+    /**
+     * Returns the encoder for a domain file, building it when the file is first used or has changed.
+     *
+     * @param domainFile The path of the domain file.
+     * @return The encoder.
+     * @throws IOException If the file does not exist or cannot be parsed.
+     */
+    public static StateEncoder get(String domainFile) throws IOException {
+        PlanningDomain domain = DomainCache.get(domainFile);
+        StateEncoder encoder = encoders.get(domainFile);
+        if (encoder == null || encoder.domain != domain) {
+            encoder = new StateEncoder(domain);
+            encoders.put(domainFile, encoder);
+        }
+        return encoder;
+    }
+
+    public PlanningDomain getDomain() {
+        return domain;
+    }
+
+    /**
+     * Returns the fact id of a ground belief.
+     *
+     * @param belief The belief.
+     * @return The fact id, or -1 if the belief is not a fact of the domain.
+     */
+    public int factId(PredicateTerm belief) {
+        if (!(belief instanceof Predicate) || (belief instanceof Literal && ((Literal) belief).negated())) {
+            return -1;
+        }
+        Integer id = ids.get(belief);
+        if (id != null) {
+            return id;
+        }
+        String functor = belief.getFunctor();
+        Boolean known = knownFunctors.get(functor);
+        if (known == null) {
+            known = predicates.contains(functor.toLowerCase());
+            knownFunctors.put(functor, known);
+        }
+        if (!known) {
+            return -1; // Most beliefs, such as perceptions, have nothing to do with the domain
+        }
+        Predicate predicate = (Predicate) belief;
+        StringBuilder key = new StringBuilder(functor.toLowerCase());
+        for (int i = 0; i < predicate.getTermsSize(); i++) {
+            key.append(' ').append(predicate.getTerm(i).toString().toLowerCase());
+        }
+        return domain.getFactId(key.toString());
+    }
+
+    /**
+     * Returns the fact id of a belief written as text, such as "hasPhone" or "at(home)".
+     *
+     * @param belief The belief.
+     * @return The fact id, or -1 if the belief is not a fact of the domain.
+     */
+    public int factId(String belief) {
+        int annotations = belief.indexOf('[');
+        if (annotations >= 0) {
+            belief = belief.substring(0, annotations);
+        }
+        StringBuilder key = new StringBuilder();
+        for (String part : belief.trim().split("[(),]")) {
+            if (!part.trim().isEmpty()) {
+                if (key.length() > 0) {
+                    key.append(' ');
+                }
+                key.append(part.trim().toLowerCase());
+            }
+        }
+        return domain.getFactId(key.toString());
+    }
+
+    /**
+     * Encodes the facts of the domain which hold in a collection of beliefs, such as a belief base.
+     * The dummy predicate always holds, as in every problem given to a planner.
+     *
+     * @param beliefs The beliefs.
+     * @return The set of facts true in the beliefs.
+     */
+    public BitSet encode(Iterable<? extends PredicateTerm> beliefs) {
+        long started = System.nanoTime();
+        BitSet state = new BitSet(literals.length);
+        for (PredicateTerm belief : beliefs) {
+            int id = factId(belief);
+            if (id >= 0) {
+                state.set(id);
+            }
+        }
+        if (dummy >= 0) {
+            state.set(dummy);
+        }
+        RecoveryTelemetry.record(RecoveryTelemetry.Phase.BELIEFS, System.nanoTime() - started);
+        return state;
+    }
+
+    /**
+     * Encodes a goal.
+     *
+     * @param goals The ground literals to achieve.
+     * @return The set of facts to achieve, or null if a goal is not a fact of the domain.
+     */
+    public BitSet encodeGoal(List<? extends Term> goals) {
+        BitSet goal = new BitSet(literals.length);
+        for (Term term : goals) {
+            int id = term instanceof PredicateTerm ? factId((PredicateTerm) term) : -1;
+            if (id < 0) {
+                return null;
+            }
+            goal.set(id);
+        }
+        return goal;
+    }
+
+    /**
+     * Encodes a goal written as text.
+     *
+     * @param goals The beliefs to achieve, such as "hasPhone" or "at(home)".
+     * @return The set of facts to achieve, or null if a goal is not a fact of the domain.
+     */
+    public BitSet encodeGoalStrings(List<String> goals) {
+        BitSet goal = new BitSet(literals.length);
+        for (String g : goals) {
+            int id = factId(g);
+            if (id < 0) {
+                return null;
+            }
+            goal.set(id);
+        }
+        return goal;
+    }
+
+    /**
+     * Computes the part of a goal which does not hold in a state.
+     *
+     * @param state The set of facts true in the state.
+     * @param goal The set of facts to achieve.
+     * @return The set of facts still to achieve.
+     */
+    public static BitSet missing(BitSet state, BitSet goal) {
+        BitSet missing = (BitSet) goal.clone();
+        missing.andNot(state);
+        return missing;
+    }
+
+    /**
+     * Returns the belief a fact stands for.
+     *
+     * @param id The fact id.
+     * @return The literal, spelt as in the domain file. It is shared, so it must not be modified.
+     */
+    public Literal literal(int id) {
+        return literals[id];
+    }
+}
@@ -0,0 +1,165 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher 
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+// 
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+// 
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+// 
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.semantics.AILAgent;
+import ail.util.AILConfig;
+import ail.util.AILPrettyPrinter;
+import eass.semantics.EASSAgent;
+
+/**
+ * Tests that plan guards are only evaluated again once the beliefs they read
+ * change.
+ *
+ */
+public class ApplicabilityNetworkQuickTests {
+	
+	@Test public void guardsFollowBeliefChanges() throws Exception {
+		Plan plan = plan(new Guard(new GBelief(pos(new VarTerm("R"), new VarTerm("Y")))));
+		AILAgent a = agent(plan);
+		a.addBel(pos("r1", 1), AILAgent.refertoself());
+		a.addBel(pos("r2", 2), AILAgent.refertoself());
+		ApplicabilityNetwork network = a.getApplicabilityNetwork();
+		
+		List<String> first = instantiations(a, plan);
+		Assert.assertEquals(1, first.size());
+		Assert.assertEquals(1, network.getEvaluations());
+		Assert.assertEquals(first, instantiations(a, plan));
+		Assert.assertEquals(1, network.getEvaluations());
+		
+		// Beliefs the guard does not read change nothing
+		a.addBel(new Literal("other"), AILAgent.refertoself());
+		Assert.assertEquals(first, instantiations(a, plan));
+		Assert.assertEquals(1, network.getEvaluations());
+		
+		a.addBel(pos("r1", 5), AILAgent.refertoself());
+		List<String> second = instantiations(a, plan);
+		Assert.assertEquals(2, second.size());
+		Assert.assertEquals(2, network.getEvaluations());
+		
+		a.delBel(pos("r1", 5));
+		Assert.assertEquals(first, instantiations(a, plan));
+		Assert.assertEquals(3, network.getEvaluations());
+		
+		// The same solutions as without the network
+		a.setApplicabilityNetwork(false);
+		Assert.assertEquals(first, instantiations(a, plan));
+	}
+	
+	@Test public void guardsReadingGoalsAreEvaluated() throws Exception {
+		Guard g = new Guard(new GBelief(pos(new VarTerm("R"), new VarTerm("Y"))));
+		g.add(new Guard(new Goal(handling(new VarTerm("R")), Goal.achieveGoal), false), true);
+		Plan plan = plan(g);
+		AILAgent a = agent(plan);
+		a.addBel(pos("r1", 1), AILAgent.refertoself());
+		
+		Assert.assertEquals(1, instantiations(a, plan).size());
+		Assert.assertEquals(1, instantiations(a, plan).size());
+		Assert.assertEquals(2, a.getApplicabilityNetwork().getEvaluations());
+	}
+	
+	@Test public void guardsFollowRuleChanges() throws Exception {
+		Plan plan = plan(new Guard(new GBelief(pos(new VarTerm("R"), new VarTerm("Y")))));
+		AILAgent a = agent(plan);
+		a.addBel(pos("r1", 1), AILAgent.refertoself());
+		Rule other = new Rule(new Predicate("other"));
+		a.addRule(other);
+		Assert.assertEquals(1, instantiations(a, plan).size());
+		
+		// Replacing a rule leaves as many rules, but pos(r1, 7) now follows from one
+		a.getRuleBase().remove(other);
+		a.addRule(new Rule(pos("r1", 7)));
+		Assert.assertEquals(2, instantiations(a, plan).size());
+	}
+	
+	@Test public void agentsReadTheOption() throws Exception {
+		AILConfig config = new AILConfig();
+		config.setProperty("ail.plans.network", "true");
+		AILAgent a = new EASSAgent("ag");
+		a.configure(config);
+		Assert.assertNotNull(a.getApplicabilityNetwork());
+	}
+	
+	/**
+	 * The plan +received(R): {g} <- +handling(R).
+	 */
+	private static Plan plan(Guard g) {
+		Literal received = new Literal("received");
+		received.addTerm(new VarTerm("R"));
+		ArrayList<Deed> prefix = new ArrayList<Deed>();
+		prefix.add(new Deed(Deed.Dnpy));
+		ArrayList<Guard> context = new ArrayList<Guard>();
+		context.add(g);
+		ArrayList<Deed> body = new ArrayList<Deed>();
+		body.add(new Deed(Deed.AILAddition, Deed.AILBel, handling(new VarTerm("R"))));
+		return new Plan(new Event(Event.AILAddition, Event.AILBel, received), prefix, context, body);
+	}
+	
+	private static Literal handling(Term r) {
+		Literal handling = new Literal("handling");
+		handling.addTerm(r);
+		return handling;
+	}
+	
+	private static AILAgent agent(Plan plan) throws Exception {
+		AILAgent a = new AILAgent("ag");
+		a.addPlan(plan);
+		a.setApplicabilityNetwork(true);
+		return a;
+	}
+	
+	private static Literal pos(String r, int y) {
+		return pos(new Predicate(r), new NumberTermImpl(y));
+	}
+	
+	private static Literal pos(Term r, Term y) {
+		Literal pos = new Literal("pos");
+		pos.addTerm(r);
+		pos.addTerm(y);
+		return pos;
+	}
+	
+	/**
+	 * The instantiations of a plan for a new event received(r1).
+	 */
+	private static List<String> instantiations(AILAgent a, Plan plan) {
+		Literal received = new Literal("received");
+		received.addTerm(new Predicate("r1"));
+		a.setIntention(new Intention(new Event(Event.AILAddition, Event.AILBel, received), AILAgent.refertoself(), new AILPrettyPrinter()));
+		List<String> result = new ArrayList<String>();
+		Iterator<ApplicablePlan> it = a.getPL().getPlanInstantions(plan, a);
+		while (it.hasNext()) {
+			result.add(it.next().getUnifier().toString());
+		}
+		return result;
+	}
+}
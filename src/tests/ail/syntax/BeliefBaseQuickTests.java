@@ -0,0 +1,130 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher 
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+// 
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+// 
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+// 
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.semantics.AILAgent;
+
+/**
+ * Tests of looking up beliefs by their first argument.
+ *
+ */
+public class BeliefBaseQuickTests {
+	
+	@Test public void relevantBeliefsShareFirstArgument() {
+		BeliefBase bb = new BeliefBase();
+		for (int i = 0; i < 5; i++) {
+			bb.add(sensor(new NumberTermImpl(i), new NumberTermImpl(10 * i)));
+			bb.add(sensor(new Predicate("s" + i), new NumberTermImpl(i)));
+		}
+		Literal any = sensor(new VarTerm("Id"), new NumberTermImpl(0));
+		bb.add(any);
+		
+		Assert.assertEquals("[sensor(3,30), sensor(Id,0)]", relevant(bb, sensor(new NumberTermImpl(3), new VarTerm("V"))).toString());
+		Assert.assertEquals("[sensor(Id,0), sensor(s2,2)]", relevant(bb, sensor(new Predicate("s2"), new VarTerm("V"))).toString());
+		Assert.assertEquals("[sensor(Id,0)]", relevant(bb, sensor(new Predicate("s7"), new VarTerm("V"))).toString());
+		Assert.assertEquals(11, relevant(bb, sensor(new VarTerm("Id"), new VarTerm("V"))).size());
+		
+		// An iterator already handed out is not changed by later updates
+		Iterator<PredicateTerm> it = bb.getRelevant(sensor(new NumberTermImpl(3), new VarTerm("V")), AILAgent.SelectionOrder.LINEAR);
+		Assert.assertTrue(bb.remove(sensor(new NumberTermImpl(3), new NumberTermImpl(30))));
+		Assert.assertTrue(bb.remove(any));
+		Assert.assertFalse(bb.remove(any));
+		Assert.assertEquals("sensor(3,30)", it.next().toString());
+		Assert.assertEquals("sensor(Id,0)", it.next().toString());
+		Assert.assertFalse(it.hasNext());
+		
+		Assert.assertTrue(relevant(bb, sensor(new NumberTermImpl(3), new VarTerm("V"))).isEmpty());
+		Assert.assertNotNull(bb.contains(sensor(new Predicate("s4"), new NumberTermImpl(4))));
+		Assert.assertNull(bb.contains(sensor(new Predicate("s4"), new NumberTermImpl(5))));
+		Assert.assertEquals(9, bb.size());
+	}
+	
+	@Test public void boundVariablesUseTheKeyOfTheirValue() {
+		BeliefBase bb = new BeliefBase();
+		bb.add(sensor(new StringTermImpl("abc"), new NumberTermImpl(1)));
+		bb.add(sensor(new NumberTermImpl(3), new NumberTermImpl(2)));
+		bb.add(sensor(new Predicate("s1"), new NumberTermImpl(3)));
+		
+		Unifier u = new Unifier();
+		u.unifies(new VarTerm("S"), new StringTermImpl("abc"));
+		u.unifies(new VarTerm("N"), new NumberTermImpl(3));
+		u.unifies(new VarTerm("P"), new Predicate("s1"));
+		String[] vars = {"S", "N", "P"};
+		for (String v: vars) {
+			Literal query = sensor(new VarTerm(v), new VarTerm("V"));
+			query.apply(u);
+			List<PredicateTerm> found = relevant(bb, query);
+			Assert.assertEquals(v, 1, found.size());
+			Assert.assertTrue(v, query.unifies(found.get(0), new Unifier()));
+		}
+	}
+	
+	@Test public void joinUsesBoundFirstArgument() {
+		AILAgent a = new AILAgent("ag");
+		for (int i = 0; i < 20; i++) {
+			Literal pos = new Literal("pos");
+			pos.addTerm(new Predicate("r" + i));
+			pos.addTerm(new NumberTermImpl(i));
+			a.addBel(pos, AILAgent.refertoself());
+			a.addBel(sensor(new Predicate("r" + i), new NumberTermImpl(i % 2)), AILAgent.refertoself());
+		}
+		
+		Literal pos = new Literal("pos");
+		pos.addTerm(new VarTerm("R"));
+		pos.addTerm(new NumberTermImpl(7));
+		Guard g = new Guard(new GBelief(pos));
+		g.add(new GBelief(sensor(new VarTerm("R"), new VarTerm("V"))));
+		
+		Iterator<Unifier> it = a.believes(g, new Unifier());
+		Assert.assertTrue(it.hasNext());
+		Unifier u = it.next();
+		Assert.assertEquals(new Predicate("r7"), u.get("R"));
+		Assert.assertEquals(new NumberTermImpl(1), u.get("V"));
+		Assert.assertFalse(it.hasNext());
+	}
+	
+	private static Literal sensor(Term id, Term val) {
+		Literal l = new Literal("sensor");
+		l.addTerm(id);
+		l.addTerm(val);
+		return l;
+	}
+	
+	private static List<PredicateTerm> relevant(BeliefBase bb, Literal l) {
+		List<PredicateTerm> list = new ArrayList<PredicateTerm>();
+		Iterator<PredicateTerm> it = bb.getRelevant(l, AILAgent.SelectionOrder.LINEAR);
+		while (it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
@@ -0,0 +1,122 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+//
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+//
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.semantics.AILAgent;
+
+/**
+ * Tests that compiled guards have the same solutions, in the same order, as
+ * guards evaluated by logicalConsequence.
+ *
+ */
+public class CompiledGuardQuickTests {
+
+	@Test public void conjunctionsAndNegations() throws Exception {
+		AILAgent a = agent();
+		// B pos(R, Y), ~ B blocked(R), B pos(S, Y)
+		for (int i = 0; i < 2; i++) {
+			Guard g = new Guard(new GBelief(pos(new VarTerm("R"), new VarTerm("Y"))));
+			g.add(new GBelief(blocked(new VarTerm("R"))), false);
+			g.add(new GBelief(pos(new VarTerm("S"), new VarTerm("Y"))));
+			List<String> solutions = compare(a, g);
+			Assert.assertEquals(3, solutions.size());
+		}
+
+		// ~ B blocked(r2) alone, and B pos(r3, 3) which no belief matches
+		Assert.assertEquals(0, compare(a, new Guard(new GBelief(blocked(new Predicate("r2"))), false)).size());
+		Assert.assertEquals(0, compare(a, new Guard(new GBelief(pos(new Predicate("r3"), new NumberTermImpl(3))))).size());
+		Assert.assertEquals(1, compare(a, new Guard()).size());
+	}
+
+	@Test public void rulesAndDisjunctionsAreInterpreted() throws Exception {
+		AILAgent a = agent();
+		// near(R) :- pos(R, 1).
+		a.addRule(new Rule(near(new VarTerm("R")), pos(new VarTerm("R"), new NumberTermImpl(1))));
+		a.addBel(near(new Predicate("r4")), AILAgent.refertoself());
+
+		Assert.assertEquals(3, compare(a, new Guard(new GBelief(near(new VarTerm("X"))))).size());
+		Guard or = new Guard(new GBelief(blocked(new VarTerm("X"))), Guard.GLogicalOp.or, new GBelief(near(new VarTerm("X"))));
+		Assert.assertEquals(3, compare(a, new Guard(or, Guard.GLogicalOp.and, new GBelief(pos(new VarTerm("X"), new VarTerm("Y"))))).size());
+	}
+
+	/**
+	 * Beliefs pos(r1, 1), pos(r2, 1), pos(r3, 2) and blocked(r2).
+	 */
+	private static AILAgent agent() throws Exception {
+		AILAgent a = new AILAgent("ag");
+		a.addBel(pos(new Predicate("r1"), new NumberTermImpl(1)), AILAgent.refertoself());
+		a.addBel(pos(new Predicate("r2"), new NumberTermImpl(1)), AILAgent.refertoself());
+		a.addBel(pos(new Predicate("r3"), new NumberTermImpl(2)), AILAgent.refertoself());
+		a.addBel(blocked(new Predicate("r2")), AILAgent.refertoself());
+		return a;
+	}
+
+	/**
+	 * Checks a guard's compiled solutions against those of a copy evaluated
+	 * by logicalConsequence.
+	 */
+	private static List<String> compare(AILAgent a, Guard g) {
+		Guard interpreted = g.clone();
+		List<String> expected = strings(interpreted.logicalConsequence(a, new Unifier(), interpreted.getVarNames(), AILAgent.SelectionOrder.LINEAR));
+		List<String> solutions = strings(CompiledGuard.of(g).solutions(a, new Unifier(), g.getVarNames()));
+		Assert.assertEquals(expected, solutions);
+		Assert.assertEquals(expected, strings(a.believes(g, new Unifier())));
+		return solutions;
+	}
+
+	private static List<String> strings(Iterator<Unifier> it) {
+		List<String> result = new ArrayList<String>();
+		while (it.hasNext()) {
+			result.add(it.next().toString());
+		}
+		return result;
+	}
+
+	private static Literal pos(Term r, Term y) {
+		Literal pos = new Literal("pos");
+		pos.addTerm(r);
+		pos.addTerm(y);
+		return pos;
+	}
+
+	private static Literal blocked(Term r) {
+		Literal blocked = new Literal("blocked");
+		blocked.addTerm(r);
+		return blocked;
+	}
+
+	private static Literal near(Term r) {
+		Literal near = new Literal("near");
+		near.addTerm(r);
+		return near;
+	}
+}
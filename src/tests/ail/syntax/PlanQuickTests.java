@@ -26,6 +26,9 @@ package ail.syntax;
 import gwendolen.parser.GwendolenAILVisitor;
 import gwendolen.parser.GwendolenLexer;
 import gwendolen.parser.GwendolenParser;
+import java.util.ArrayList;
+import java.util.Iterator;
+
 import junit.framework.Assert;
 
 import org.antlr.v4.runtime.CharStreams;
@@ -81,4 +84,52 @@ public class PlanQuickTests {
 		
 	}
 
+	
+	@Test public void instantiationsLeaveThePlanUnchanged() throws Exception {
+		Literal received = new Literal("received");
+		received.addTerm(new VarTerm("R"));
+		Literal pos = new Literal("pos");
+		pos.addTerm(new VarTerm("R"));
+		pos.addTerm(new VarTerm("Y"));
+		Literal handling = new Literal("handling");
+		handling.addTerm(new VarTerm("Y"));
+		ArrayList<Deed> prefix = new ArrayList<Deed>();
+		prefix.add(new Deed(Deed.Dnpy));
+		ArrayList<Guard> context = new ArrayList<Guard>();
+		context.add(new Guard(new GBelief(pos)));
+		ArrayList<Deed> body = new ArrayList<Deed>();
+		body.add(new Deed(Deed.AILAddition, Deed.AILBel, handling));
+		Plan plan = new Plan(new Event(Event.AILAddition, Event.AILBel, received), prefix, context, body);
+		AILAgent a = new AILAgent("ag");
+		a.addPlan(plan);
+		String original = plan.toString();
+		for (int y = 1; y <= 2; y++) {
+			Literal b = new Literal("pos");
+			b.addTerm(new Predicate("r1"));
+			b.addTerm(new NumberTermImpl(y));
+			a.addBel(b, AILAgent.refertoself());
+		}
+		
+		// The intention already binds Y, so the plan's Y must be renamed
+		Literal event = new Literal("received");
+		event.addTerm(new Predicate("r1"));
+		Intention i = new Intention(new Event(Event.AILAddition, Event.AILBel, event), AILAgent.refertoself(), new AILPrettyPrinter());
+		i.hdU().unifies(new VarTerm("Y"), new Predicate("other"));
+		a.setIntention(i);
+		
+		Iterator<ApplicablePlan> aps = a.getPL().getPlanInstantions(plan, a);
+		ApplicablePlan ap1 = aps.next();
+		ApplicablePlan ap2 = aps.next();
+		Assert.assertFalse(aps.hasNext());
+		Assert.assertNotSame(ap1.getPrefix(), ap2.getPrefix());
+		Assert.assertFalse(ap1.getPrefix().get(0).getContent().getVarNames().contains("Y"));
+		Assert.assertEquals(original, plan.toString());
+		
+		// A different event does not match
+		Literal other = new Literal("sent");
+		other.addTerm(new Predicate("r1"));
+		a.setIntention(new Intention(new Event(Event.AILAddition, Event.AILBel, other), AILAgent.refertoself(), new AILPrettyPrinter()));
+		Assert.assertFalse(a.getPL().getPlanInstantions(plan, a).hasNext());
+	}
+
 }
@@ -0,0 +1,130 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2024 Louise A. Dennis, and  Michael Fisher
+//
+// This file is part of the Agent Infrastructure Layer (AIL)
+//
+// The AIL is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// The AIL is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with the AIL; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+//
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ail.syntax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.semantics.AILAgent;
+import ail.util.AILConfig;
+import eass.semantics.EASSAgent;
+
+/**
+ * Tests of tabled rules.
+ *
+ */
+public class RuleTablesQuickTests {
+
+	@Test public void leftRecursionTerminates() throws Exception {
+		AILAgent a = agent();
+		// path(X, Y) :- path(X, Z), edge(Z, Y).
+		a.addRule(new Rule(path(new VarTerm("X"), new VarTerm("Y")),
+				new LogExpr(path(new VarTerm("X"), new VarTerm("Z")), LogExpr.LogicalOp.and, edge(new VarTerm("Z"), new VarTerm("Y")))));
+		// path(X, Y) :- edge(X, Y).
+		a.addRule(new Rule(path(new VarTerm("X"), new VarTerm("Y")), edge(new VarTerm("X"), new VarTerm("Y"))));
+
+		Assert.assertEquals("[a, b, c, d]", reachable(a, "a").toString());
+		Assert.assertEquals("[]", reachable(a, "d").toString());
+		Assert.assertEquals("[a, b, c, d]", reachable(a, "c").toString());
+	}
+
+	@Test public void tablesFollowBeliefChanges() throws Exception {
+		AILAgent a = agent();
+		// path(X, Y) :- edge(X, Y).
+		a.addRule(new Rule(path(new VarTerm("X"), new VarTerm("Y")), edge(new VarTerm("X"), new VarTerm("Y"))));
+		// path(X, Y) :- edge(X, Z), path(Z, Y).
+		a.addRule(new Rule(path(new VarTerm("X"), new VarTerm("Y")),
+				new LogExpr(edge(new VarTerm("X"), new VarTerm("Z")), LogExpr.LogicalOp.and, path(new VarTerm("Z"), new VarTerm("Y")))));
+		RuleTables tables = a.getRuleBase().getTables();
+
+		Assert.assertEquals("[a, b, c, d]", reachable(a, "a").toString());
+		int evaluations = tables.getEvaluations();
+		Assert.assertEquals("[a, b, c, d]", reachable(a, "a").toString());
+		Assert.assertEquals(evaluations, tables.getEvaluations());
+
+		// Beliefs the rules do not read change nothing
+		a.addBel(new Literal("other"), AILAgent.refertoself());
+		Assert.assertEquals("[a, b, c, d]", reachable(a, "a").toString());
+		Assert.assertEquals(evaluations, tables.getEvaluations());
+
+		a.addBel(edge(new Predicate("d"), new Predicate("e")), AILAgent.refertoself());
+		Assert.assertEquals("[a, b, c, d, e]", reachable(a, "a").toString());
+		Assert.assertTrue(tables.getEvaluations() > evaluations);
+	}
+
+	@Test public void agentsReadTheOption() throws Exception {
+		AILConfig config = new AILConfig();
+		config.setProperty("ail.rules.tabled", "true");
+		AILAgent a = new EASSAgent("ag");
+		a.configure(config);
+		Assert.assertNotNull(a.getRuleBase().getTables());
+	}
+
+	/**
+	 * An agent with tabled rules and the edges a-b, b-c, c-a and c-d.
+	 */
+	private static AILAgent agent() throws Exception {
+		AILAgent a = new AILAgent("ag");
+		a.getRuleBase().setTabled(true);
+		String[][] edges = {{"a", "b"}, {"b", "c"}, {"c", "a"}, {"c", "d"}};
+		for (String[] e: edges) {
+			a.addBel(edge(new Predicate(e[0]), new Predicate(e[1])), AILAgent.refertoself());
+		}
+		return a;
+	}
+
+	/**
+	 * The nodes a guard B path(from, Y) finds, sorted.
+	 */
+	private static List<String> reachable(AILAgent a, String from) {
+		Guard g = new Guard(new GBelief(path(new Predicate(from), new VarTerm("Y"))));
+		List<String> result = new ArrayList<String>();
+		Iterator<Unifier> it = a.believes(g, new Unifier());
+		while (it.hasNext()) {
+			result.add(it.next().get("Y").toString());
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static Literal edge(Term x, Term y) {
+		Literal edge = new Literal("edge");
+		edge.addTerm(x);
+		edge.addTerm(y);
+		return edge;
+	}
+
+	private static Literal path(Term x, Term y) {
+		Literal path = new Literal("path");
+		path.addTerm(x);
+		path.addTerm(y);
+		return path;
+	}
+}
@@ -234,4 +234,48 @@ public class UnificationQuickTests {
 		Assert.assertTrue(((ListTerm) t).getHead().getFunctor().equals("H5"));
 	}
 	
+	/**
+	 * Hashed bindings behave, and print, as the canonical ones do, and renamed variables can still be found.
+	 */
+	@Test public void hashedBindingsMatchCanonical() {
+		Unifier hashed = bindings(true);
+		Unifier canonical = bindings(false);
+		Assert.assertEquals(canonical.toString(), hashed.toString());
+		Assert.assertEquals(canonical, hashed);
+		Assert.assertEquals(0, hashed.compareTo(canonical));
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(new Predicate("c" + i), hashed.get(new VarTerm("V" + i)));
+		}
+		Assert.assertEquals(canonical.toString(), hashed.clone().toString());
+
+		hashed.renameVar("V7", "W7");
+		canonical.renameVar("V7", "W7");
+		Assert.assertNull(hashed.get(new VarTerm("V7")));
+		Assert.assertEquals(new Predicate("c7"), hashed.get(new VarTerm("W7")));
+		Assert.assertEquals(canonical.toString(), hashed.toString());
+
+		// Variables joined in a cluster all take the value given to one of them
+		Assert.assertTrue(hashed.unifies(new VarTerm("X"), new VarTerm("Y")));
+		Assert.assertTrue(hashed.unifies(new VarTerm("Y"), new Predicate("d")));
+		Assert.assertEquals(new Predicate("d"), hashed.get(new VarTerm("X")));
+	}
+
+	/**
+	 * Binds V0 to V49 to constants, in reverse order.
+	 * @param hashed
+	 * @return
+	 */
+	private static Unifier bindings(boolean hashed) {
+		Unifier.setHashedBindings(hashed);
+		try {
+			Unifier u = new Unifier();
+			for (int i = 49; i >= 0; i--) {
+				Assert.assertTrue(u.unifies(new VarTerm("V" + i), new Predicate("c" + i)));
+			}
+			return u;
+		} finally {
+			Unifier.setHashedBindings(true);
+		}
+	}
+	
 }
@@ -0,0 +1,108 @@
+// ----------------------------------------------------------------------------
+// Copyright (C) 2012 Louise A. Dennis, and  Michael Fisher
+//
+// This file is part of Agent JPF (AJPF)
+//
+// AJPF is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 3 of the License, or (at your option) any later version.
+//
+// AJPF is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with AJPF; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+//
+// To contact the authors:
+// http://www.csc.liv.ac.uk/~lad
+//
+//----------------------------------------------------------------------------
+
+package ajpf.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.syntax.BeliefBase;
+import ail.syntax.Literal;
+import ail.syntax.Predicate;
+
+/**
+ * Tests that the indexed lookups used outside JPF keep the canonical form of
+ * VerifyMap and VerifySet.
+ *
+ */
+public class VerifyCollectionsQuickTests {
+
+	@Test public void mapKeepsCanonicalOrder() {
+		VerifyMap<String, Integer> map = new VerifyMap<String, Integer>();
+		for (String k: Arrays.asList("d", "a", "c", "b", "e")) {
+			Assert.assertNull(map.put(k, k.charAt(0) - 'a'));
+		}
+		Assert.assertEquals(Integer.valueOf(2), map.put("c", 20));
+		Assert.assertEquals("[a=0, b=1, c=20, d=3, e=4]", map.toString());
+
+		Assert.assertEquals(Integer.valueOf(3), map.get("d"));
+		Assert.assertNull(map.get("f"));
+		Assert.assertNull(map.get(Integer.valueOf(1)));
+		Assert.assertTrue(map.containsKey("e"));
+		Assert.assertEquals(Integer.valueOf(0), map.remove("a"));
+		Assert.assertNull(map.remove("a"));
+		Assert.assertFalse(map.containsKey("a"));
+		Assert.assertEquals("[b=1, c=20, d=3, e=4]", map.toString());
+		Assert.assertEquals(map, map.clone());
+
+		// Annotations print, so sort, differently but do not affect equality
+		VerifyMap<Predicate, Integer> terms = new VerifyMap<Predicate, Integer>();
+		for (String p: Arrays.asList("red", "green", "blue")) {
+			terms.put(new Predicate(p), p.length());
+		}
+		Literal annotated = new Literal("green");
+		annotated.addAnnot(BeliefBase.TSelf);
+		Assert.assertEquals(Integer.valueOf(5), terms.get(annotated));
+		Assert.assertTrue(terms.containsKey(annotated));
+		Assert.assertEquals(Integer.valueOf(5), terms.remove(annotated));
+		Assert.assertFalse(terms.containsKey(new Predicate("green")));
+		Assert.assertEquals("[blue=4, red=3]", terms.toString());
+	}
+
+	@Test public void setFindsEqualElements() {
+		VerifySet<Predicate> set = new VerifySet<Predicate>();
+		for (String p: Arrays.asList("red", "blue", "green", "blue")) {
+			set.add(new Predicate(p));
+		}
+		Assert.assertEquals("[blue, green, red]", set.toString());
+
+		// Annotations print, so sort, differently but do not affect equality
+		Literal annotated = new Literal("green");
+		annotated.addAnnot(BeliefBase.TSelf);
+		Assert.assertTrue(set.contains(annotated));
+		Assert.assertFalse(set.add(annotated));
+		Assert.assertTrue(set.containsAll(Arrays.asList(new Predicate("red"), new Predicate("blue"))));
+
+		Assert.assertTrue(set.remove(annotated));
+		Assert.assertFalse(set.contains(new Predicate("green")));
+		Assert.assertEquals("[blue, red]", set.toString());
+
+		Iterator<Predicate> it = set.iterator();
+		it.next();
+		it.remove();
+		Assert.assertFalse(set.contains(new Predicate("blue")));
+		Assert.assertTrue(set.add(new Predicate("blue")));
+
+		List<Predicate> keep = new ArrayList<Predicate>();
+		keep.add(new Predicate("red"));
+		Assert.assertTrue(set.retainAll(keep));
+		Assert.assertFalse(set.contains(new Predicate("blue")));
+		Assert.assertTrue(set.contains(new Predicate("red")));
+	}
+}
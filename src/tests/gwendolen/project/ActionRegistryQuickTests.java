@@ -0,0 +1,67 @@
+package gwendolen.project;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.syntax.Literal;
+import ail.syntax.Predicate;
+import ail.syntax.Term;
+
+/**
+ * Tests of the actions read from the planning domain.
+ */
+public class ActionRegistryQuickTests {
+
+    /**
+     * Actions keep the spelling of the domain file and the dummy predicate is not a belief.
+     */
+    @Test public void actionsReadFromDomain() throws Exception {
+        ActionRegistry registry = ActionRegistry.get("src/examples/gwendolen/project/domain.pddl");
+
+        ActionSchema buyPhone = registry.lookup("buyphone");
+        Assert.assertSame(buyPhone, registry.get(registry.idOf("BuyPhone")));
+        Assert.assertEquals(new Literal("hasMoney"), buyPhone.getPrecondition().get(0));
+        Assert.assertEquals(new Literal("hasPhone"), buyPhone.getAddEffects().get(0));
+        Assert.assertEquals(new Literal("hasMoney"), buyPhone.getDeleteEffects().get(0));
+
+        Assert.assertTrue(registry.lookup("dochores").getPrecondition().isEmpty());
+        Assert.assertNull(registry.lookup("print"));
+        Assert.assertEquals(-1, registry.idOf("print"));
+    }
+
+    /**
+     * The literals of actions with parameters are instantiated with the action's arguments.
+     */
+    @Test public void parametersGrounded() throws Exception {
+        File file = File.createTempFile("domain", ".pddl");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("(define (domain travel) (:requirements :strips)\n"
+                + " (:constants Home Gym)\n"
+                + " (:predicates (at ?p) (road ?from ?to))\n"
+                + " (:action goTo :parameters (?from ?to)\n"
+                + "  :precondition (and (at ?from) (road ?from ?to))\n"
+                + "  :effect (and (at ?to) (not (at ?from)))))\n");
+        writer.close();
+
+        ActionSchema goTo = ActionRegistry.get(file.getPath()).lookup("goto");
+        Assert.assertEquals(2, goTo.arity());
+        List<Term> args = new ArrayList<>();
+        args.add(new Predicate("Home"));
+        args.add(new Predicate("Gym"));
+
+        Literal atGym = new Literal("at");
+        atGym.addTerm(new Predicate("Gym"));
+        Assert.assertEquals(atGym, goTo.ground(goTo.getAddEffects(), args).get(0));
+        Literal road = new Literal("road");
+        road.addTerm(new Predicate("Home"));
+        road.addTerm(new Predicate("Gym"));
+        Assert.assertEquals(road, goTo.ground(goTo.getPrecondition(), args).get(1));
+        Assert.assertTrue(goTo.getAddEffects().get(0).toString().contains("TO"));
+    }
+}
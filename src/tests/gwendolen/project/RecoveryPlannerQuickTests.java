@@ -0,0 +1,340 @@
+package gwendolen.project;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.semantics.AILAgent;
+import ail.syntax.Goal;
+import ail.syntax.Literal;
+import ail.syntax.Plan;
+import ail.syntax.Predicate;
+import ail.util.AILConfig;
+import gwendolen.parser.GwendolenAILVisitor;
+import gwendolen.parser.GwendolenLexer;
+import gwendolen.parser.GwendolenParser;
+import gwendolen.syntax.ast.Abstract_GPlan;
+
+/**
+ * Tests of the search engines used for online recovery.
+ */
+public class RecoveryPlannerQuickTests {
+    private static final String DOMAIN = "src/examples/gwendolen/project/domain.pddl";
+
+    /**
+     * Every built in engine finds a plan which works in the domain, and counts its work.
+     */
+    @Test public void enginesFindValidPlans() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        PlanningDomain domain = encoder.getDomain();
+        BitSet init = encoder.encode(Arrays.asList(new Literal("atHome")));
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent")));
+
+        for (String engine : Arrays.asList("astar", "wastar", "wastar:5", "gbfs", "ehc", "bfs")) {
+            SearchStatistics statistics = new SearchStatistics();
+            List<GroundAction> plan = RecoveryPlanners.create(engine).search(domain, init, goal, Deadline.none(), statistics);
+            Assert.assertNotNull(engine, plan);
+            BitSet state = init;
+            for (GroundAction action : plan) {
+                Assert.assertTrue(engine, action.isApplicable(state));
+                state = action.apply(state);
+            }
+            Assert.assertTrue(engine, AStarSearch.satisfies(state, goal));
+            Assert.assertTrue(engine, statistics.getExpanded() > 0);
+            Assert.assertTrue(engine, statistics.getGenerated() >= statistics.getExpanded());
+        }
+        // The optimal engines find the shortest plan
+        Assert.assertEquals(4, RecoveryPlanners.create("astar").search(domain, init, goal, Deadline.none(), new SearchStatistics()).size());
+        Assert.assertEquals(4, RecoveryPlanners.create("bfs").search(domain, init, goal, Deadline.none(), new SearchStatistics()).size());
+    }
+
+    /**
+     * Both heuristics are zero on the goal and count the steps of the texting chain.
+     */
+    @Test public void heuristicsEstimateDistance() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        PlanningDomain domain = encoder.getDomain();
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent"), new Literal("parentsHappy")));
+        BitSet init = encoder.encode(Arrays.<Literal>asList());
+
+        Assert.assertEquals(4, Heuristic.MAX.estimate(domain.getActions(), domain.numberOfFacts(), init, goal));
+        Assert.assertEquals(4, Heuristic.RELAXED_PLAN.estimate(domain.getActions(), domain.numberOfFacts(), init, goal));
+        Assert.assertEquals(0, Heuristic.RELAXED_PLAN.estimate(domain.getActions(), domain.numberOfFacts(), goal, goal));
+
+        BitSet car = encoder.encodeGoal(Arrays.asList(new Literal("atGym")));
+        Assert.assertEquals(Integer.MAX_VALUE, Heuristic.RELAXED_PLAN.estimate(domain.getActions(), domain.numberOfFacts(), init, car));
+    }
+
+    /**
+     * An agent's own engine comes before the domain's, which comes before the general one, and unknown engines
+     * are ignored.
+     */
+    @Test public void engineChosenFromConfiguration() throws Exception {
+        PlanningDomain domain = StateEncoder.get(DOMAIN).getDomain();
+        AILConfig config = new AILConfig();
+        config.setProperty("planner.engine", "gbfs");
+        config.setProperty("planner.engine.domain.shoppingdomain", "bfs");
+        config.setProperty("planner.engine.agent.bob", "wastar:3");
+        config.setProperty("planner.engine.agent.alice", "nosuchengine");
+        try {
+            RunPlanner.configure(config);
+            Assert.assertEquals("wastar:3", RunPlanner.engineFor("bob", domain));
+            Assert.assertEquals("bfs", RunPlanner.engineFor("alice", domain));
+
+            config.remove("planner.engine.domain.shoppingdomain");
+            RunPlanner.configure(config);
+            Assert.assertEquals("gbfs", RunPlanner.engineFor("charlie", domain));
+        } finally {
+            RunPlanner.configure(new AILConfig());
+        }
+        Assert.assertEquals(RecoveryPlanners.DEFAULT, RunPlanner.engineFor("bob", domain));
+    }
+
+    /**
+     * With a deadline too short for an optimal plan, the anytime engine returns the best plan found in time.
+     */
+    @Test public void anytimeReturnsBestPlanAtDeadline() throws Exception {
+        File file = File.createTempFile("lights", ".pddl");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        StringBuilder lights = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            lights.append(" l").append(i);
+        }
+        writer.write("(define (domain lights) (:requirements :strips)\n"
+                + " (:constants" + lights + ")\n"
+                + " (:predicates (on ?l) (ready))\n"
+                + " (:action switchOn :parameters (?l) :precondition (ready) :effect (on ?l))\n"
+                + " (:action switchOff :parameters (?l) :precondition (on ?l) :effect (not (on ?l))))\n");
+        writer.close();
+        PlanningDomain domain = DomainCache.get(file.getPath());
+        BitSet init = new BitSet();
+        init.set(domain.getFactId("ready"));
+        BitSet allOn = new BitSet();
+        for (int i = 0; i < 20; i++) {
+            allOn.set(domain.getFactId("on l" + i));
+        }
+
+        SearchStatistics statistics = new SearchStatistics();
+        long start = System.currentTimeMillis();
+        List<GroundAction> plan = PlanningService.getInstance().plan(new AnytimeSearch(), domain, init, allOn, Deadline.in(300), statistics);
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        Assert.assertEquals(20, plan.size());
+        Assert.assertEquals(1, statistics.getTimeouts());
+
+        // Optimal A* has nothing to return when it runs out of time
+        Assert.assertNull(new AStarSearch().search(domain, init, allOn, Deadline.in(50), new SearchStatistics()));
+    }
+
+    /**
+     * Searches stop at once when there is no time left, and recoveries which run out of time are reported to the
+     * agent as a belief.
+     */
+    @Test public void noPlanWithinBudget() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        PlanningDomain domain = encoder.getDomain();
+        BitSet init = encoder.encode(Arrays.<Literal>asList());
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent")));
+        Deadline expired = Deadline.in(1);
+        Thread.sleep(5);
+
+        for (String engine : Arrays.asList("astar", "gbfs", "ehc", "bfs", "anytime")) {
+            Assert.assertNull(engine, RecoveryPlanners.create(engine).search(domain, init, goal, expired, new SearchStatistics()));
+        }
+        IncrementalReplanner replanner = new IncrementalReplanner(new InProcessPlanner(), expired);
+        Assert.assertNull(replanner.nextStep(domain, init, goal));
+        Assert.assertTrue(replanner.isOutOfTime());
+
+        AILAgent ag = new AILAgent("dave");
+        RunPlanner.reportNoPlanWithinBudget(ag, "textfriend");
+        Literal failure = new Literal(RunPlanner.NO_PLAN_WITHIN_BUDGET);
+        failure.addTerm(new Predicate("textfriend"));
+        Assert.assertNotNull(ag.getBB().contains(failure));
+
+        // Failures with time left are counted apart from those out of time
+        long noPlan = RecoveryTelemetry.getCount("dave", RecoveryTelemetry.Counter.NO_PLAN);
+        RunPlanner.reportNoPlan(ag, "textfriend");
+        Assert.assertEquals(noPlan + 1, RecoveryTelemetry.getCount("dave", RecoveryTelemetry.Counter.NO_PLAN));
+    }
+
+    /**
+     * A deadline in the configuration bounds every recovery and makes the anytime engine the default.
+     */
+    @Test public void deadlineFromConfiguration() throws Exception {
+        PlanningDomain domain = StateEncoder.get(DOMAIN).getDomain();
+        AILConfig config = new AILConfig();
+        config.setProperty("ail.planning.deadline.ms", "250");
+        config.setProperty("planner.engine.agent.bob", "gbfs");
+        try {
+            RunPlanner.configure(config);
+            Assert.assertEquals("anytime", RunPlanner.engineFor("alice", domain));
+            Assert.assertEquals("gbfs", RunPlanner.engineFor("bob", domain));
+            Assert.assertTrue(RunPlanner.newDeadline().isBounded());
+            Assert.assertTrue(RunPlanner.newDeadline().remainingMillis() <= 250);
+        } finally {
+            RunPlanner.configure(new AILConfig());
+        }
+        Assert.assertFalse(RunPlanner.newDeadline().isBounded());
+    }
+
+    /**
+     * Lifted search plans in a domain with no constants, whose objects all come from the beliefs, and the
+     * problems written for external planners declare those objects.
+     */
+    @Test public void liftedSearchUsesObjectsFromBeliefs() throws Exception {
+        File file = File.createTempFile("rooms", ".pddl");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("(define (domain rooms) (:requirements :strips)\n"
+                + " (:predicates (at ?r) (connected ?a ?b) (in ?d ?r) (on ?d) (dummyPredicate))\n"
+                + " (:action move :parameters (?from ?to) :precondition (and (at ?from) (connected ?from ?to))\n"
+                + "   :effect (and (at ?to) (not (at ?from))))\n"
+                + " (:action switchOn :parameters (?d ?r) :precondition (and (at ?r) (in ?d ?r)) :effect (on ?d)))\n");
+        writer.close();
+        LiftedDomain domain = LiftedDomain.get(file.getPath());
+        // Nothing can be grounded without constants
+        Assert.assertTrue(DomainCache.get(file.getPath()).getActions().isEmpty());
+
+        List<Literal> beliefs = new ArrayList<>();
+        beliefs.add(fact("at", "r0"));
+        for (int i = 0; i < 30; i++) {
+            beliefs.add(fact("connected", "r" + i, "r" + (i + 1)));
+        }
+        beliefs.add(fact("in", "lamp", "r30"));
+        Set<String> state = domain.encode(beliefs);
+        Set<String> goal = domain.encodeGoal(Arrays.asList(fact("on", "lamp")));
+
+        SearchStatistics statistics = new SearchStatistics();
+        List<String> plan = new LiftedSearch().search(domain, state, goal, Deadline.none(), statistics);
+        Assert.assertEquals(31, plan.size());
+        Assert.assertEquals("move r0 r1", plan.get(0));
+        Assert.assertEquals("switchon lamp r30", plan.get(30));
+        Assert.assertEquals(1, statistics.getSearches());
+
+        // Unreachable goals are found out without searching
+        Assert.assertNull(new LiftedSearch().search(domain, state, domain.encodeGoal(Arrays.asList(fact("on", "fan"))),
+                Deadline.none(), new SearchStatistics()));
+        Assert.assertNull(domain.encodeGoal(Arrays.asList(fact("on", "lamp", "r1"))));
+
+        StringWriter problem = new StringWriter();
+        PDDLGenerator.write(problem, domain, state, goal);
+        Assert.assertTrue(problem.toString().contains("(:objects lamp r0 r1 r10 "));
+        Assert.assertTrue(problem.toString().contains("(connected r29 r30)"));
+    }
+
+    private static Literal fact(String predicate, String... args) {
+        Literal literal = new Literal(predicate);
+        for (String arg : args) {
+            literal.addTerm(new Predicate(arg));
+        }
+        return literal;
+    }
+
+    /**
+     * The agent's plans for achieve goals decompose facts into actions, and the flat planner is only asked for
+     * facts which no plan is for.
+     */
+    @Test public void hierarchicalPlannerUsesAgentPlans() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        List<Plan> plans = Arrays.asList(
+                plan("+!onPhone [achieve] : {B hasPhone} <- usephone;"),
+                plan("+!hasPhone [achieve] : {B hasMoney} <- buyphone;"),
+                plan("+!hasMoney [achieve] : {True} <- print(\"working\"), earnsalary;"),
+                plan("+!messageSent [achieve] : {B onPhone} <- textfriend;"),
+                plan("+!start [perform] : {B messageSent, ~ B inCar} <- print(\"yay\");"));
+        final List<BitSet> flatGoals = new ArrayList<>();
+        PlannerBackend flat = new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                flatGoals.add(goal);
+                return new InProcessPlanner().plan(domain, state, goal, deadline);
+            }
+        };
+        SearchStatistics totals = new SearchStatistics();
+        HierarchicalPlanner planner = new HierarchicalPlanner(encoder, plans, flat, totals);
+        BitSet empty = encoder.encode(new ArrayList<Literal>());
+
+        // The flat planner would earn money by doing chores; the agent's plan earns a salary
+        Assert.assertEquals(Arrays.asList("earnsalary", "buyphone", "usephone"),
+                planner.establish(encoder.encodeGoal(Arrays.asList(new Literal("onPhone"))), empty, Deadline.none()));
+        Assert.assertTrue(flatGoals.isEmpty());
+
+        // No plan is for parentsHappy
+        Assert.assertEquals(Arrays.asList("dochores"),
+                planner.establish(encoder.encodeGoal(Arrays.asList(new Literal("parentsHappy"))), empty, Deadline.none()));
+        Assert.assertEquals(1, flatGoals.size());
+
+        // The context of the plan for start is reached through the plans for its beliefs
+        Goal start = new Goal("start", Goal.performGoal);
+        Assert.assertEquals(Arrays.asList("earnsalary", "buyphone", "usephone", "textfriend"),
+                planner.enable(start, empty, Deadline.none()));
+        Assert.assertTrue(planner.enable(start, encoder.encode(Arrays.asList(new Literal("messageSent"))), Deadline.none()).isEmpty());
+        // Nothing undoes inCar
+        Assert.assertNull(planner.enable(start, encoder.encode(Arrays.asList(new Literal("inCar"))), Deadline.none()));
+
+        Assert.assertEquals(5, totals.getSearches());
+        Assert.assertTrue(totals.getExpanded() > 0);
+    }
+
+    private static Plan plan(String source) {
+        GwendolenLexer lexer = new GwendolenLexer(CharStreams.fromString(source));
+        lexer.pushMode(GwendolenLexer.PLANS_MODE);
+        GwendolenParser parser = new GwendolenParser(new CommonTokenStream(lexer));
+        return ((Abstract_GPlan) new GwendolenAILVisitor().visitPlan(parser.plan())).toMCAPL();
+    }
+
+    /**
+     * The monitor checks a plan before its first step, and when a belief the rest of the plan needs is lost only
+     * that belief is planned for again, keeping the rest of the plan.
+     */
+    @Test public void monitorRepairsWherePlanDiverges() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent")));
+        final boolean[] robbed = {false};
+        ActionClass action = new ActionClass() {
+            @Override
+            public boolean startAction(AILAgent ag, String step) {
+                boolean done = super.startAction(ag, step);
+                if (step.equals("dochores") && !robbed[0]) {
+                    robbed[0] = true;
+                    ag.delBel(new Literal("hasMoney"));
+                }
+                return done;
+            }
+        };
+
+        AILAgent ag = new AILAgent("erin");
+        ExecutionMonitor monitor = new ExecutionMonitor(encoder, new InProcessPlanner());
+        Assert.assertTrue(monitor.execute(ag, action, Arrays.asList("DOCHORES", "BUYPHONE", "USEPHONE", "TEXTFRIEND"),
+                goal, Deadline.none()));
+        Assert.assertNotNull(ag.getBB().contains(new Literal("messageSent")));
+        Assert.assertEquals(5, monitor.getDispatched());
+        Assert.assertEquals(1, monitor.getRepairs());
+        Assert.assertEquals(0, monitor.getReplans());
+
+        // A plan which cannot start is repaired before anything is dispatched
+        ag = new AILAgent("frank");
+        monitor = new ExecutionMonitor(encoder, new InProcessPlanner());
+        Assert.assertTrue(monitor.execute(ag, new ActionClass(), Arrays.asList("BUYPHONE", "USEPHONE", "TEXTFRIEND"),
+                goal, Deadline.none()));
+        Assert.assertEquals(4, monitor.getDispatched());
+        Assert.assertEquals(1, monitor.getRepairs());
+    }
+
+    /**
+     * Names which are neither built in engines nor planner classes are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownEngineRejected() {
+        RecoveryPlanners.create("java.lang.String");
+    }
+}
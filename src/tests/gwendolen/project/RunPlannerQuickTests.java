@@ -0,0 +1,463 @@
+package gwendolen.project;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ail.semantics.AILAgent;
+import ail.syntax.BeliefBase;
+import ail.syntax.Literal;
+import ail.syntax.NumberTermImpl;
+import ail.util.AILConfig;
+
+/**
+ * Tests of the planners used for failure recovery.
+ */
+public class RunPlannerQuickTests {
+    private static final String DOMAIN = "src/examples/gwendolen/project/domain.pddl";
+
+    /**
+     * The online planner returns the first step of a plan for the texting domain.
+     */
+    @Test public void onlinePlanFirstStep() {
+        List<String> beliefs = new ArrayList<>();
+        beliefs.add("hasMoney");
+        List<String> goals = new ArrayList<>();
+        goals.add("messageSent");
+
+        List<String> plan = RunPlanner.run("tester", beliefs, goals, 2);
+        Assert.assertEquals(1, plan.size());
+        Assert.assertEquals("buyphone", plan.get(0).toLowerCase());
+    }
+
+    /**
+     * Beliefs which the domain does not declare are ignored by the online planner.
+     */
+    @Test public void onlineIgnoresUndeclaredBeliefs() {
+        List<String> beliefs = new ArrayList<>();
+        beliefs.add("hasPhone");
+        beliefs.add("position(3,4)");
+        List<String> goals = new ArrayList<>();
+        goals.add("(onPhone & hasPhone)");
+
+        List<String> plan = RunPlanner.run("tester", beliefs, goals, 2);
+        Assert.assertEquals(1, plan.size());
+        Assert.assertEquals("usephone", plan.get(0).toLowerCase());
+    }
+
+    /**
+     * The grounded domain is shared until the domain file changes.
+     */
+    @Test public void domainCachedUntilModified() throws Exception {
+        File file = File.createTempFile("domain", ".pddl");
+        file.deleteOnExit();
+        Files.copy(new File("src/examples/gwendolen/project/domain.pddl").toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        PlanningDomain first = DomainCache.get(file.getPath());
+        Assert.assertSame(first, DomainCache.get(file.getPath()));
+        Assert.assertTrue(first.getFactId("hasmoney") >= 0);
+
+        file.setLastModified(file.lastModified() - 10000);
+        Assert.assertNotSame(first, DomainCache.get(file.getPath()));
+    }
+
+    /**
+     * Agents planning at the same time each get the plan for their own problem.
+     */
+    @Test public void concurrentAgentsPlanIndependently() throws Exception {
+        ExecutorService agents = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> plans = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            final boolean hasPhone = i % 2 == 0;
+            plans.add(agents.submit(new Callable<List<String>>() {
+                public List<String> call() {
+                    List<String> beliefs = new ArrayList<>();
+                    beliefs.add(hasPhone ? "hasPhone" : "hasMoney");
+                    List<String> goals = new ArrayList<>();
+                    goals.add("messageSent");
+                    return RunPlanner.run("agent", beliefs, goals, 2);
+                }
+            }));
+        }
+        for (int i = 0; i < plans.size(); i++) {
+            Assert.assertEquals(i % 2 == 0 ? "usephone" : "buyphone", plans.get(i).get().get(0));
+        }
+        agents.shutdown();
+    }
+
+    /**
+     * The offline planner streams the problem to a waiting FF process and returns the whole plan.
+     */
+    @Test public void offlinePlanFromFF() {
+        List<String> beliefs = new ArrayList<>();
+        beliefs.add("hasMoney");
+        List<String> goals = new ArrayList<>();
+        goals.add("messageSent");
+
+        List<String> plan = RunPlanner.run("tester", beliefs, goals, 1);
+        Assert.assertEquals(Arrays.asList("BUYPHONE", "USEPHONE", "TEXTFRIEND"), plan);
+        Assert.assertFalse(new File("src/examples/gwendolen/project/testerproblem.pddl").exists());
+    }
+
+    /**
+     * A stub process can stand in for FF, and every request gets a fresh process.
+     */
+    @Test public void poolParsesStubPlanner() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        ExternalPlannerPool pool = new ExternalPlannerPool(Arrays.asList("sh", "-c",
+                "cat > /dev/null; echo 'ff: found legal plan as follows'; echo; echo 'step    0: DOCHORES'; echo '        1: BUYPHONE'; echo; echo 'time spent: 0.00 seconds'"),
+                1, 10000);
+        try {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(Arrays.asList("DOCHORES", "BUYPHONE"), pool.plan(encoder.getDomain(),
+                        encoder.encode(new ArrayList<Literal>()), encoder.encodeGoal(Arrays.asList(new Literal("hasPhone"))), Deadline.none()));
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Steps of lifted problems keep their arguments, and the problem declares the objects of the beliefs.
+     */
+    @Test public void poolReadsStepArguments() throws Exception {
+        LiftedDomain domain = LiftedDomain.get(DOMAIN);
+        ExternalPlannerPool pool = new ExternalPlannerPool(Arrays.asList("sh", "-c",
+                "grep '(:objects' > /dev/null || exit 1; echo 'ff: found legal plan as follows'; echo 'step    0: DOCHORES'; echo '        1: VISIT SHOP-2 HOME'"),
+                1, 10000);
+        try {
+            Set<String> state = new HashSet<>(Arrays.asList("at shop-2"));
+            Assert.assertEquals(Arrays.asList("DOCHORES", "VISIT SHOP-2 HOME"),
+                    pool.plan(domain, state, new HashSet<>(Arrays.asList("hasphone")), Deadline.none()));
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * A planner which does not answer in time is killed and reported as finding no plan.
+     */
+    @Test public void poolKillsSlowPlanner() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        ExternalPlannerPool pool = new ExternalPlannerPool(Arrays.asList("sh", "-c", "cat > /dev/null; exec sleep 30"), 1, 200);
+        try {
+            long start = System.currentTimeMillis();
+            Assert.assertNull(pool.plan(encoder.getDomain(), encoder.encode(new ArrayList<Literal>()),
+                    encoder.encodeGoal(Arrays.asList(new Literal("hasPhone"))), Deadline.none()));
+            Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * A pool which has been closed, for instance because the domain changed, finds no plan rather than
+     * starting another planner.
+     */
+    @Test public void closedPoolFindsNoPlan() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        ExternalPlannerPool pool = new ExternalPlannerPool(Arrays.asList("sh", "-c",
+                "cat > /dev/null; echo 'ff: found legal plan as follows'; echo 'step    0: DOCHORES'"), 1, 10000);
+        pool.close();
+        Assert.assertNull(pool.plan(encoder.getDomain(), encoder.encode(new ArrayList<Literal>()),
+                encoder.encodeGoal(Arrays.asList(new Literal("hasPhone"))), Deadline.none()));
+    }
+
+    /**
+     * Problems differing only in beliefs the domain does not mention, or reached by following a cached plan,
+     * are answered from the cache.
+     */
+    @Test public void planCacheReusesPlans() throws Exception {
+        final List<Integer> calls = new ArrayList<>();
+        PlanCache cache = new PlanCache(new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                calls.add(1);
+                return new ArrayList<>(Arrays.asList("DOCHORES", "BUYPHONE", "USEPHONE", "TEXTFRIEND"));
+            }
+        }, 16);
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        PlanningDomain domain = encoder.getDomain();
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent")));
+
+        Assert.assertEquals(4, cache.plan(domain, encoder.encode(beliefs()), goal, Deadline.none()).size());
+        Assert.assertEquals(4, cache.plan(domain, encoder.encode(beliefs("position(3,4)")), goal, Deadline.none()).size());
+        Assert.assertEquals(Arrays.asList("USEPHONE", "TEXTFRIEND"),
+                cache.plan(domain, encoder.encode(beliefs("parentsHappy", "hasPhone", "position(3,4)")), goal, Deadline.none()));
+        Assert.assertEquals(1, calls.size());
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    /**
+     * Plans which do not reach the goal in the domain are never cached.
+     */
+    @Test public void planCacheRejectsInvalidPlans() throws Exception {
+        final List<Integer> calls = new ArrayList<>();
+        PlanCache cache = new PlanCache(new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                calls.add(1);
+                return new ArrayList<>(Arrays.asList("TEXTFRIEND"));
+            }
+        }, 16);
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent")));
+
+        cache.plan(encoder.getDomain(), encoder.encode(beliefs()), goal, Deadline.none());
+        cache.plan(encoder.getDomain(), encoder.encode(beliefs()), goal, Deadline.none());
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals(0, cache.getHits());
+    }
+
+    /**
+     * Online recovery follows its plan without searching again, skips steps which are no longer needed and
+     * only searches once the plan cannot be repaired.
+     */
+    @Test public void replannerKeepsPlanBetweenSteps() throws Exception {
+        final List<Integer> calls = new ArrayList<>();
+        IncrementalReplanner replanner = new IncrementalReplanner(new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                calls.add(1);
+                return new ArrayList<>(Arrays.asList("DOCHORES", "BUYPHONE", "USEPHONE", "TEXTFRIEND"));
+            }
+        });
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        PlanningDomain domain = encoder.getDomain();
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("messageSent")));
+
+        Assert.assertEquals("dochores", replanner.nextStep(domain, encoder.encode(beliefs()), goal));
+        // The agent was given a phone instead of money, so buying one is skipped
+        Assert.assertEquals("usephone", replanner.nextStep(domain, encoder.encode(beliefs("hasPhone")), goal));
+        Assert.assertEquals("textfriend", replanner.nextStep(domain, encoder.encode(beliefs("hasPhone", "onPhone")), goal));
+        Assert.assertEquals(1, replanner.getSearches());
+
+        // Nothing left of the old plan works once the phone is lost
+        Assert.assertEquals("dochores", replanner.nextStep(domain, encoder.encode(beliefs()), goal));
+        Assert.assertEquals(2, replanner.getSearches());
+    }
+
+    /**
+     * Planners are only given the actions which can help reach the goal and the beliefs those actions mention.
+     */
+    @Test public void relevanceFilterSlicesProblem() throws Exception {
+        final List<PlanningDomain> domains = new ArrayList<>();
+        final List<BitSet> states = new ArrayList<>();
+        RelevanceFilter filter = new RelevanceFilter(new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                domains.add(domain);
+                states.add(state);
+                return new ArrayList<>(Arrays.asList("DOCHORES", "BUYPHONE"));
+            }
+        });
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        BitSet goal = encoder.encodeGoal(Arrays.asList(new Literal("hasPhone")));
+
+        filter.plan(encoder.getDomain(), encoder.encode(beliefs("onPhone", "hasCar", "parentsHappy")), goal, Deadline.none());
+        filter.plan(encoder.getDomain(), encoder.encode(beliefs("atGym")), goal, Deadline.none());
+        List<String> actions = new ArrayList<>();
+        for (GroundAction action : domains.get(0).getActions()) {
+            actions.add(action.getName());
+        }
+        Assert.assertEquals(Arrays.asList("buyphone", "dochores", "earnsalary"), actions);
+        Assert.assertSame(domains.get(0), domains.get(1));
+        // Only the dummy predicate is left of either set of beliefs
+        Assert.assertEquals(encoder.encode(beliefs()), states.get(0));
+        Assert.assertEquals(states.get(0), states.get(1));
+        filter.plan(encoder.getDomain(), encoder.encode(beliefs("onPhone", "hasMoney")), goal, Deadline.none());
+        Assert.assertEquals(encoder.encode(beliefs("hasMoney")), states.get(2));
+    }
+
+    /**
+     * Recoveries of upcoming actions are planned in the background, and a recovery arriving while its plan is
+     * still being searched for waits for it rather than searching again.
+     */
+    @Test public void speculationPlansAhead() throws Exception {
+        final List<Integer> calls = new ArrayList<>();
+        SpeculativePlanner speculative = new SpeculativePlanner(new PlanCache(new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                calls.add(1);
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new ArrayList<>(Arrays.asList("DOCHORES", "BUYPHONE"));
+            }
+        }, 16));
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        PlanningDomain domain = encoder.getDomain();
+        BitSet state = encoder.encode(beliefs());
+
+        // Using the phone needs one, after which texting is expected to work
+        List<GroundAction> upcoming = Arrays.asList(domain.getAction("usephone"), domain.getAction("textfriend"));
+        Assert.assertEquals(1, speculative.anticipate(domain, state, upcoming));
+        List<String> plan = speculative.plan(domain, state, encoder.encodeGoal(Arrays.asList(new Literal("hasPhone"))), Deadline.none());
+        Assert.assertEquals(Arrays.asList("DOCHORES", "BUYPHONE"), plan);
+        Assert.assertEquals(1, calls.size());
+        Assert.assertEquals(1, speculative.getJoined());
+        Assert.assertEquals(1, speculative.getSpeculations());
+
+        // Nothing is missing once the agent has a phone
+        Assert.assertEquals(0, speculative.anticipate(domain, encoder.encode(beliefs("hasPhone")), upcoming));
+    }
+
+    /**
+     * Recoveries starting together are solved as one batch, in which each distinct problem is searched for once
+     * and its plan handed to every agent which asked.
+     */
+    @Test public void batchSolvesIdenticalProblemsOnce() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        final PlanningDomain domain = encoder.getDomain();
+        final BitSet state = encoder.encode(beliefs());
+        final BitSet phone = encoder.encodeGoal(Arrays.asList(new Literal("hasPhone")));
+        final BitSet money = encoder.encodeGoal(Arrays.asList(new Literal("hasMoney")));
+        final List<BitSet> calls = new ArrayList<>();
+        final BatchingPlanner batcher = new BatchingPlanner(new PlanCache(new PlannerBackend() {
+            public List<String> plan(PlanningDomain domain, BitSet state, BitSet goal, Deadline deadline) {
+                synchronized (calls) {
+                    calls.add(goal);
+                }
+                return new ArrayList<>(goal.equals(phone) ? Arrays.asList("DOCHORES", "BUYPHONE") : Arrays.asList("EARNSALARY"));
+            }
+        }, 16), 200);
+
+        ExecutorService agents = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> plans = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final BitSet goal = i < 6 ? phone : money;
+            plans.add(agents.submit(new Callable<List<String>>() {
+                public List<String> call() {
+                    return batcher.plan(domain, state, goal, Deadline.none());
+                }
+            }));
+        }
+        for (int i = 0; i < plans.size(); i++) {
+            Assert.assertEquals(i < 6 ? Arrays.asList("DOCHORES", "BUYPHONE") : Arrays.asList("EARNSALARY"), plans.get(i).get());
+        }
+        agents.shutdown();
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals(1, batcher.getBatches());
+        Assert.assertEquals(6, batcher.getShared());
+
+        // Without a window problems go straight through
+        batcher.setWindow(0);
+        Assert.assertEquals(Arrays.asList("EARNSALARY"), batcher.plan(domain, state, money, Deadline.none()));
+        Assert.assertEquals(1, batcher.getBatches());
+    }
+
+    /**
+     * Beliefs are encoded whatever their annotations or case, and beliefs the domain does not mention are
+     * left out.
+     */
+    @Test public void beliefsEncodedAsFacts() throws Exception {
+        StateEncoder encoder = StateEncoder.get(DOMAIN);
+        Literal annotated = new Literal("hasPhone");
+        annotated.addAnnot(BeliefBase.TSelf);
+        BitSet state = encoder.encode(Arrays.asList(annotated, new Literal("HASMONEY"), new Literal("position")));
+
+        Assert.assertTrue(state.get(encoder.factId(new Literal("hasPhone"))));
+        Assert.assertTrue(state.get(encoder.factId("hasMoney")));
+        Assert.assertEquals(-1, encoder.factId(new Literal("position")));
+        // The dummy predicate always holds
+        Assert.assertEquals(3, state.cardinality());
+        Assert.assertNull(encoder.encodeGoal(Arrays.asList(new Literal("position"))));
+        Assert.assertEquals(encoder.encodeGoal(Arrays.asList(new Literal("messageSent"))),
+                encoder.encodeGoalStrings(Arrays.asList("messageSent[source(self)]")));
+    }
+
+    /**
+     * The domain file can be configured, and every agent's recoveries then use it.
+     */
+    @Test public void domainFromConfiguration() throws Exception {
+        File file = File.createTempFile("domain", ".pddl");
+        file.deleteOnExit();
+        Files.copy(new File(DOMAIN).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        AILConfig config = new AILConfig();
+        config.setProperty("planner.domain", file.getPath());
+        try {
+            RunPlanner.configure(config);
+            Assert.assertEquals(file.getPath(), RunPlanner.domainFile());
+            Assert.assertSame(StateEncoder.get(file.getPath()), RunPlanner.encoder());
+        } finally {
+            RunPlanner.configure(new AILConfig());
+        }
+        Assert.assertEquals(DOMAIN, RunPlanner.domainFile());
+        Assert.assertSame(StateEncoder.get(DOMAIN), RunPlanner.encoder());
+    }
+
+    /**
+     * A recovery is timed phase by phase and counted for its agent, and the figures are available over JMX
+     * and as a report.
+     */
+    @Test public void telemetryRecordsRecoveryPhases() throws Exception {
+        AILAgent ag = new AILAgent("grace");
+        ag.addBel(new Literal("hasMoney"), AILAgent.refertoself());
+        ActionClass action = new ActionClass();
+        action.typeOfPlanning = 2;
+        Assert.assertTrue(action.startAction(ag, "usephone"));
+
+        Assert.assertEquals(1, RecoveryTelemetry.getCount("grace", RecoveryTelemetry.Counter.RECOVERIES));
+        Assert.assertEquals(0, RecoveryTelemetry.getCount("grace", RecoveryTelemetry.Counter.FAILED_RECOVERIES));
+        Assert.assertEquals(1, RecoveryTelemetry.getCount("grace", RecoveryTelemetry.Counter.STEPS));
+        Assert.assertTrue(RecoveryTelemetry.getCount("grace", RecoveryTelemetry.Counter.CACHE_HITS)
+                + RecoveryTelemetry.getCount("grace", RecoveryTelemetry.Counter.CACHE_MISSES) > 0);
+        Assert.assertTrue(RecoveryTelemetry.getPhase("grace", RecoveryTelemetry.Phase.BELIEFS).getCount() > 0);
+        Assert.assertEquals(1, RecoveryTelemetry.getPhase("grace", RecoveryTelemetry.Phase.EXECUTION).getCount());
+        Assert.assertEquals(1, RecoveryTelemetry.getPlanLengths("grace").getMax());
+        // Outside a recovery nothing is put down to the agent
+        Assert.assertEquals(RecoveryTelemetry.BACKGROUND, RecoveryTelemetry.currentAgent());
+
+        RecoveryTelemetry.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Map<?, ?> counters = (Map<?, ?>) server.getAttribute(new ObjectName(RecoveryTelemetry.OBJECT_NAME), "Counters");
+        Assert.assertNotNull(counters);
+        Assert.assertTrue(((String) server.invoke(new ObjectName(RecoveryTelemetry.OBJECT_NAME), "report", null, null))
+                .contains("agent grace"));
+
+        RecoveryTelemetry.Histogram histogram = new RecoveryTelemetry.Histogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.add(value);
+        }
+        Assert.assertEquals(100, histogram.getMax());
+        Assert.assertEquals(50.5, histogram.getMean(), 1e-9);
+        // Percentiles are bounded by their power of two bucket
+        Assert.assertEquals(63, histogram.getPercentile(50));
+        Assert.assertEquals(100, histogram.getPercentile(99));
+    }
+
+    /**
+     * Parses beliefs written as text.
+     *
+     * @param beliefs The beliefs, such as "hasPhone" or "position(3,4)", whose arguments are numbers.
+     * @return The literals.
+     */
+    private static List<Literal> beliefs(String... beliefs) {
+        List<Literal> literals = new ArrayList<>();
+        for (String belief : beliefs) {
+            String[] parts = belief.split("[(),]");
+            Literal literal = new Literal(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                literal.addTerm(new NumberTermImpl(parts[i]));
+            }
+            literals.add(literal);
+        }
+        return literals;
+    }
+}